@@ -23,4 +23,5 @@ mkdir $TEMPDIR/outbox/processed
 mkdir $TEMPDIR/outbox/failed
 mkdir $TEMPDIR/outbox/rejected
 mkdir $TEMPDIR/bag-pack-outbox
+mkdir $TEMPDIR/bagpack-work
 echo "OK"
@@ -19,26 +19,49 @@ package nl.knaw.dans.vaultingest;
 import io.dropwizard.core.Application;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.util.Duration;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.lib.util.ClientProxyBuilder;
 import nl.knaw.dans.lib.util.PingHealthCheck;
-import nl.knaw.dans.lib.util.PropertiesBasedDirectoryComparator;
-import nl.knaw.dans.lib.util.inbox.Inbox;
 import nl.knaw.dans.vaultcatalog.client.ApiClient;
 import nl.knaw.dans.vaultcatalog.client.DefaultApi;
 import nl.knaw.dans.vaultingest.client.BagValidatorImpl;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClientImpl;
+import nl.knaw.dans.vaultingest.config.BagBackupConfig;
+import nl.knaw.dans.vaultingest.config.BagPackConfig;
 import nl.knaw.dans.vaultingest.config.DdVaultIngestConfig;
+import nl.knaw.dans.vaultingest.config.ExecutionConfig;
+import nl.knaw.dans.vaultingest.config.InboxConfig;
+import nl.knaw.dans.vaultingest.config.SchedulingConfig;
 import nl.knaw.dans.vaultingest.core.WriteBagPackTaskFactory;
 import nl.knaw.dans.vaultingest.core.bagpack.BagPackWriterFactory;
+import nl.knaw.dans.vaultingest.core.bagpack.CompressionPolicy;
+import nl.knaw.dans.vaultingest.core.concurrent.ConcurrencyLimitedExecutorService;
+import nl.knaw.dans.vaultingest.core.concurrent.DatasetOrderedExecutorService;
+import nl.knaw.dans.vaultingest.core.concurrent.DepositPipeline;
+import nl.knaw.dans.vaultingest.core.concurrent.FairShareSchedulingPolicy;
+import nl.knaw.dans.vaultingest.core.concurrent.FifoSchedulingPolicy;
+import nl.knaw.dans.vaultingest.core.concurrent.SchedulingPolicy;
+import nl.knaw.dans.vaultingest.core.concurrent.ShortestPayloadFirstSchedulingPolicy;
+import nl.knaw.dans.vaultingest.core.concurrent.VirtualThreads;
 import nl.knaw.dans.vaultingest.core.deposit.CsvLanguageResolver;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.deposit.DepositReconciler;
 import nl.knaw.dans.vaultingest.core.deposit.FileCountryResolver;
+import nl.knaw.dans.vaultingest.core.diskspace.DiskSpaceAdmissionControl;
+import nl.knaw.dans.vaultingest.core.diskspace.DiskSpaceHealthCheck;
+import nl.knaw.dans.vaultingest.core.inbox.CreationTimestampIndex;
+import nl.knaw.dans.vaultingest.core.inbox.DepositInbox;
+import nl.knaw.dans.vaultingest.core.inbox.DepositLeases;
 import nl.knaw.dans.vaultingest.core.util.IdMinter;
+import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 
 import java.io.IOException;
-import java.time.Instant;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
 
 @Slf4j
 public class DdVaultIngestApplication extends Application<DdVaultIngestConfig> {
@@ -67,6 +90,7 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestConfig> {
             configuration.getVaultIngest().getSpatialCoverageCountryTermsPath()
         );
         var xmlReader = new XmlReader();
+        XPathEvaluator.registerMetrics(environment.metrics());
         var validateDansBagProxy = new ClientProxyBuilder<nl.knaw.dans.validatedansbag.invoker.ApiClient, nl.knaw.dans.validatedansbag.client.resources.DefaultApi>()
             .apiClient(new nl.knaw.dans.validatedansbag.invoker.ApiClient())
             .basePath(configuration.getValidateDansBag().getValidateUrl())
@@ -74,13 +98,21 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestConfig> {
             .defaultApiCtor(nl.knaw.dans.validatedansbag.client.resources.DefaultApi::new)
             .build();
         var depositValidator = new BagValidatorImpl(validateDansBagProxy);
-        var depositManager = new DepositManager(xmlReader);
+        var depositManager = new DepositManager(xmlReader, configuration.getVaultIngest().getBagBackup().getMode());
 
+        // Created here rather than by the BagPack writers, because the disk space admission control needs its volume
+        Files.createDirectories(configuration.getVaultIngest().getBagPack().getWorkDir());
+        var metadataThreads = configuration.getVaultIngest().getBagPack().getMetadataThreads();
+        var zipThreads = configuration.getVaultIngest().getBagPack().getZipThreads();
         var rdaBagWriterFactory = new BagPackWriterFactory(
             configuration.getVaultIngest().getContactPerson(),
             environment.getObjectMapper(),
             languageResolver,
-            countryResolver
+            countryResolver,
+            environment.lifecycle().executorService("vault-ingest-metadata-%d").minThreads(metadataThreads).maxThreads(metadataThreads).build(),
+            environment.lifecycle().executorService("vault-ingest-zip-%d").minThreads(zipThreads).maxThreads(zipThreads).build(),
+            new CompressionPolicy(configuration.getVaultIngest().getBagPack().getCompression(), environment.metrics()),
+            configuration.getVaultIngest().getBagPack().getWorkDir()
         );
 
         var vaultCatalogProxy = new ClientProxyBuilder<ApiClient, DefaultApi>()
@@ -92,6 +124,21 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestConfig> {
         var vaultCatalogClient = new VaultCatalogClientImpl(vaultCatalogProxy);
         var idMinter = new IdMinter();
 
+        var sharingConfig = configuration.getVaultIngest().getInbox().getSharing();
+        DepositLeases leases = null;
+        if (sharingConfig.isEnabled()) {
+            leases = new DepositLeases(
+                sharingConfig.getLeaseDir(),
+                sharingConfig.getInstanceId() != null ? sharingConfig.getInstanceId() : InetAddress.getLocalHost().getHostName(),
+                sharingConfig.getLeaseDuration().toJavaDuration(),
+                sharingConfig.getHeartbeatInterval().toJavaDuration(),
+                environment.metrics());
+            environment.lifecycle().manage(leases);
+        }
+
+        var pipelineConfig = configuration.getVaultIngest().getExecution().getPipeline();
+        var pipeline = pipelineConfig.isEnabled() ? new DepositPipeline(pipelineConfig, environment.lifecycle(), environment.metrics()) : null;
+
         var writeBagPackTaskFactory = new WriteBagPackTaskFactory(
             configuration.getVaultIngest().getOcflStorageRoot(),
             configuration.getVaultIngest().getDataSupplier(),
@@ -103,20 +150,75 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestConfig> {
             depositValidator,
             idMinter,
             depositManager,
-            configuration.getVaultIngest().getBagPackOutputDir()
+            configuration.getVaultIngest().getBagPackOutputDir(),
+            configuration.getVaultIngest().getBagPack().getMode(),
+            pipeline,
+            leases
         );
 
-        environment.lifecycle().manage(Inbox.builder()
-            .inbox(configuration.getVaultIngest().getInbox().getPath())
-            .interval(Math.toIntExact(configuration.getVaultIngest().getInbox().getPollingInterval().toMilliseconds()))
-            .inboxItemComparator(new PropertiesBasedDirectoryComparator<>("deposit.properties", "creation.timestamp", Instant::parse))
-            .taskFactory(writeBagPackTaskFactory)
-            .executorService(environment.lifecycle().executorService("vault-ingest-worker-%d").minThreads(1).maxThreads(1).build())
-            .build());
+        var diskSpaceConfig = configuration.getVaultIngest().getExecution().getDiskSpace();
+        DiskSpaceAdmissionControl diskSpaceAdmissionControl = null;
+        if (diskSpaceConfig.isEnabled()) {
+            // The volumes are looked up right away, so the directories must exist even if nothing has been processed yet
+            Files.createDirectories(configuration.getVaultIngest().getOutbox().getProcessed());
+            Files.createDirectories(configuration.getVaultIngest().getBagPackOutputDir());
+            diskSpaceAdmissionControl = new DiskSpaceAdmissionControl(
+                configuration.getVaultIngest().getInbox().getPath(),
+                configuration.getVaultIngest().getOutbox().getProcessed(),
+                configuration.getVaultIngest().getBagPackOutputDir(),
+                configuration.getVaultIngest().getBagPack().getWorkDir(),
+                configuration.getVaultIngest().getBagPack().getMode() == BagPackConfig.Mode.IN_PLACE && configuration.getVaultIngest().getBagBackup().getMode() == BagBackupConfig.Mode.COPY,
+                diskSpaceConfig,
+                environment.metrics());
+            environment.healthChecks().register("DiskSpace", new DiskSpaceHealthCheck(diskSpaceAdmissionControl));
+        }
+
+        var depositExecutor = new DatasetOrderedExecutorService(
+            createWorkers(configuration.getVaultIngest().getExecution(), environment),
+            createSchedulingPolicy(configuration.getVaultIngest().getExecution().getScheduling()),
+            diskSpaceAdmissionControl,
+            diskSpaceAdmissionControl == null ? null : environment.lifecycle().scheduledExecutorService("vault-ingest-admission-%d").build(),
+            environment.metrics());
+
+        var inboxConfig = configuration.getVaultIngest().getInbox();
+        // Must be managed before the inbox, so that it has finished before the first deposit is started
+        environment.lifecycle().manage(new DepositReconciler(inboxConfig.getPath(), configuration.getVaultIngest().getBagPackOutputDir(),
+            configuration.getVaultIngest().getBagPack().getWorkDir(), depositManager, leases));
+        var index = new CreationTimestampIndex(environment.metrics());
+        if (leases != null) {
+            // A deposit that another instance claimed first is handed out again on the next scan, in case that instance crashes
+            leases.addConflictListener(index::remove);
+        }
+        environment.lifecycle().manage(new DepositInbox(
+            inboxConfig.getPath(),
+            inboxConfig.getMode(),
+            (inboxConfig.getMode() == InboxConfig.Mode.WATCH ? inboxConfig.getRescanInterval() : inboxConfig.getPollingInterval()).toJavaDuration(),
+            index,
+            writeBagPackTaskFactory,
+            depositExecutor,
+            leases));
 
         environment.healthChecks().register(
             "DansBagValidator",
             new PingHealthCheck("DansBagValidator", validateDansBagProxy.getApiClient().getHttpClient(), configuration.getValidateDansBag().getPingUrl()));
 
     }
+
+    private ExecutorService createWorkers(ExecutionConfig config, Environment environment) {
+        var workers = config.getWorkers();
+        if (config.getThreadMode() == ExecutionConfig.ThreadMode.VIRTUAL) {
+            var virtualThreads = VirtualThreads.newVirtualThreadPerTaskExecutor("vault-ingest-worker-");
+            environment.lifecycle().manage(new ExecutorServiceManager(virtualThreads, Duration.seconds(5), "vault-ingest-worker"));
+            return new ConcurrencyLimitedExecutorService(virtualThreads, workers, environment.metrics());
+        }
+        return environment.lifecycle().executorService("vault-ingest-worker-%d").minThreads(workers).maxThreads(workers).build();
+    }
+
+    private SchedulingPolicy createSchedulingPolicy(SchedulingConfig config) {
+        return switch (config.getPolicy()) {
+            case FIFO -> new FifoSchedulingPolicy();
+            case SHORTEST_PAYLOAD_FIRST -> new ShortestPayloadFirstSchedulingPolicy(config.getAgingRate().toBytes());
+            case FAIR_SHARE -> new FairShareSchedulingPolicy(config.getWeights());
+        };
+    }
 }
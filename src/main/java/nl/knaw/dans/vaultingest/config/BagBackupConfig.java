@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+public class BagBackupConfig {
+    public enum Mode {
+        /**
+         * Hard-link the payload files and copy only the tag files, which are the only files changed when the bag is enriched. Falls back to COPY if the file system does not support hard
+         * links.
+         */
+        HARD_LINK,
+        /**
+         * Copy the complete bag.
+         */
+        COPY
+    }
+
+    @NotNull
+    private Mode mode = Mode.HARD_LINK;
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+@Data
+public class BagPackConfig {
+    public enum Mode {
+        /**
+         * Generate the metadata files into the work directory and add them to the BagPack while zipping, leaving the bag in the deposit untouched. No backup of the bag is needed.
+         */
+        OVERLAY,
+        /**
+         * Write the metadata files into the bag before zipping it, and restore the original bag from a backup (see bagBackup) afterwards.
+         */
+        IN_PLACE
+    }
+
+    @NotNull
+    private Mode mode = Mode.IN_PLACE;
+
+    /**
+     * The directory for the temporary files of the BagPack writers. It must not be the bagPackOutputDir, which is read by the DVE. It is created at startup if it does not exist. Defaults to a
+     * directory under java.io.tmpdir, which must be overridden if several instances run on the same host, because leftovers are deleted at startup.
+     */
+    @NotNull
+    private Path workDir = Path.of(System.getProperty("java.io.tmpdir"), "dd-vault-ingest", "bagpack-work");
+
+    /**
+     * The number of threads on which the metadata files of the deposits are generated; the metadata files of one deposit are generated concurrently.
+     */
+    @Min(1)
+    private int metadataThreads = 4;
+
+    /**
+     * The number of threads on which the files of the deposits are compressed when zipping them, shared by the deposits that are zipped at the same time.
+     */
+    @Min(1)
+    private int zipThreads = 4;
+
+    @NotNull
+    @Valid
+    private CompressionConfig compression = new CompressionConfig();
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import io.dropwizard.util.DataSize;
+import lombok.Data;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+public class CompressionConfig {
+    /**
+     * The DEFLATE level (1-9) for the entries that are compressed.
+     */
+    @Min(1)
+    @Max(9)
+    private int level = 6;
+
+    /**
+     * Extensions (without the dot, case-insensitive) of files that are already compressed, and therefore stored without probing them first.
+     */
+    @NotNull
+    private List<String> storedExtensions = List.of(
+        "jpg", "jpeg", "jp2", "png", "gif", "webp",
+        "mp3", "m4a", "ogg", "flac",
+        "mp4", "m4v", "mov", "avi", "mkv", "webm",
+        "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar",
+        "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub");
+
+    /**
+     * The number of bytes at the start of a file that are deflated to find out whether the file is worth compressing. Files of at most this size are always compressed.
+     */
+    @NotNull
+    private DataSize probeSize = DataSize.kibibytes(8);
+
+    /**
+     * A file is stored if its probe does not deflate to less than this fraction of its size.
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    private double storeRatio = 0.95;
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import lombok.Data;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+
+@Data
+public class DiskSpaceConfig {
+    /**
+     * Whether to hold back deposits for which there is not enough free space.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The free space that must remain on each of the volumes of the inbox, outbox and bagPackOutputDir after a deposit has been processed.
+     */
+    @NotNull
+    private DataSize minimumFreeSpace = DataSize.gibibytes(1);
+
+    /**
+     * The space a deposit needs on a volume, as a multiple of its payload size, to allow for metadata files and zip overhead.
+     */
+    @DecimalMin("1.0")
+    private double overheadFactor = 1.1;
+
+    /**
+     * How long to wait before checking again whether a deposit that was held back can be started.
+     */
+    @NotNull
+    private Duration recheckInterval = Duration.seconds(30);
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+public class ExecutionConfig {
+    public enum ThreadMode {
+        /**
+         * A fixed pool of platform threads, one per worker.
+         */
+        PLATFORM,
+        /**
+         * A new virtual thread per deposit, at most workers at a time. Requires Java 21 or later.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * The number of deposits that may be processed concurrently. Deposits that belong to the same dataset are always processed one after the other.
+     */
+    @Min(1)
+    private int workers = 1;
+
+    @NotNull
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
+    @NotNull
+    @Valid
+    private SchedulingConfig scheduling = new SchedulingConfig();
+
+    @NotNull
+    @Valid
+    private PipelineConfig pipeline = new PipelineConfig();
+
+    @NotNull
+    @Valid
+    private DiskSpaceConfig diskSpace = new DiskSpaceConfig();
+}
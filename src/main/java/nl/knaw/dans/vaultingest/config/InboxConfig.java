@@ -18,12 +18,35 @@ package nl.knaw.dans.vaultingest.config;
 import io.dropwizard.util.Duration;
 import lombok.Data;
 
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.nio.file.Path;
 
 @Data
 public class InboxConfig {
+    /**
+     * How new deposits are found. In both modes the deposits are ordered by an in-memory index of their creation timestamps.
+     */
+    public enum Mode {
+        /**
+         * List the inbox directory every polling interval.
+         */
+        POLLING,
+        /**
+         * Get notified of new deposits by the file system, with a full rescan every rescan interval.
+         */
+        WATCH
+    }
+
     @NotNull
     private Path path;
+    @NotNull
+    private Mode mode = Mode.POLLING;
+    @NotNull
     private Duration pollingInterval = Duration.seconds(5);
+    @NotNull
+    private Duration rescanInterval = Duration.minutes(5);
+    @NotNull
+    @Valid
+    private SharingConfig sharing = new SharingConfig();
 }
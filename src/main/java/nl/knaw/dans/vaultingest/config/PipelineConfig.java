@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+@Data
+public class PipelineConfig {
+    /**
+     * If false, each deposit is processed from start to finish by a single worker.
+     */
+    private boolean enabled = false;
+
+    @NotNull
+    @Valid
+    private PipelineStageConfig validate = new PipelineStageConfig();
+
+    @NotNull
+    @Valid
+    private PipelineStageConfig register = new PipelineStageConfig();
+
+    @NotNull
+    @Valid
+    private PipelineStageConfig convert = new PipelineStageConfig();
+
+    @NotNull
+    @Valid
+    private PipelineStageConfig zip = new PipelineStageConfig();
+
+    @NotNull
+    @Valid
+    private PipelineStageConfig handOff = new PipelineStageConfig();
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+
+@Data
+public class PipelineStageConfig {
+    @Min(1)
+    private int threads = 1;
+
+    /**
+     * The number of deposits that may wait for this stage. When the queue is full, the previous stage blocks until room becomes available.
+     */
+    @Min(1)
+    private int queueSize = 2;
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import io.dropwizard.util.DataSize;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+public class SchedulingConfig {
+    public enum Policy {
+        /**
+         * Start deposits in order of creation timestamp.
+         */
+        FIFO,
+        /**
+         * Start deposits with the smallest payload first; waiting deposits gain priority at agingRate per minute.
+         */
+        SHORTEST_PAYLOAD_FIRST,
+        /**
+         * Share the workers between depositors, in proportion to their weights.
+         */
+        FAIR_SHARE
+    }
+
+    @NotNull
+    private Policy policy = Policy.FIFO;
+
+    /**
+     * For SHORTEST_PAYLOAD_FIRST: a deposit that has waited one minute competes as if its payload were this much smaller.
+     */
+    @NotNull
+    private DataSize agingRate = DataSize.gibibytes(10);
+
+    /**
+     * For FAIR_SHARE: weight per depositor (depositor.userId). Depositors not listed have weight 1.
+     */
+    @NotNull
+    private Map<String, Double> weights = new HashMap<>();
+}
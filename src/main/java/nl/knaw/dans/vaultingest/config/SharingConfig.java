@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.dropwizard.util.Duration;
+import lombok.Data;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+@Data
+public class SharingConfig {
+    /**
+     * Whether other instances of the service take deposits from the same inbox.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Identifies this instance in the lease files; must be unique among the instances and stay the same across restarts, so that an instance can take back its own leases after a crash.
+     * Defaults to the host name.
+     */
+    private String instanceId;
+
+    /**
+     * Directory, shared by all instances, in which the leases on datasets are kept. Must not be inside the inbox.
+     */
+    private Path leaseDir;
+
+    /**
+     * A lease that has not been renewed for this long is considered abandoned by a crashed instance, and may be taken over.
+     */
+    @NotNull
+    private Duration leaseDuration = Duration.minutes(5);
+
+    /**
+     * How often an instance renews the leases it holds. Must be well below the lease duration.
+     */
+    @NotNull
+    private Duration heartbeatInterval = Duration.minutes(1);
+
+    @JsonIgnore
+    @AssertTrue(message = "leaseDir must be set when sharing is enabled, and heartbeatInterval must be shorter than leaseDuration")
+    public boolean isValid() {
+        return !enabled || (leaseDir != null && heartbeatInterval.toNanoseconds() < leaseDuration.toNanoseconds());
+    }
+}
@@ -44,6 +44,18 @@ public class VaultIngestConfig {
     @Valid
     private OutboxWithRejectedConfig outbox;
 
+    @NotNull
+    @Valid
+    private ExecutionConfig execution = new ExecutionConfig();
+
+    @NotNull
+    @Valid
+    private BagPackConfig bagPack = new BagPackConfig();
+
+    @NotNull
+    @Valid
+    private BagBackupConfig bagBackup = new BagBackupConfig();
+
     @NotNull
     @Valid
     private LanguageConfig languages;
@@ -23,24 +23,37 @@ import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
 import nl.knaw.dans.vaultingest.client.BagValidator;
 import nl.knaw.dans.vaultingest.client.InvalidDepositException;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+import nl.knaw.dans.vaultingest.config.BagPackConfig;
+import nl.knaw.dans.vaultingest.core.bagpack.BagPackWriter;
 import nl.knaw.dans.vaultingest.core.bagpack.BagPackWriterFactory;
+import nl.knaw.dans.vaultingest.core.concurrent.AsyncTask;
+import nl.knaw.dans.vaultingest.core.concurrent.DatasetKeyed;
+import nl.knaw.dans.vaultingest.core.concurrent.DepositPipeline;
+import nl.knaw.dans.vaultingest.core.concurrent.DepositPipeline.Stage;
+import nl.knaw.dans.vaultingest.core.concurrent.Schedulable;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.deposit.DepositSummary;
+import nl.knaw.dans.vaultingest.core.deposit.ProgressJournal;
+import nl.knaw.dans.vaultingest.core.deposit.ProgressJournal.Step;
+import nl.knaw.dans.vaultingest.core.inbox.DepositLeases;
 import nl.knaw.dans.vaultingest.core.util.IdMinter;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.UUID;
-
-import static java.util.Objects.requireNonNull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @RequiredArgsConstructor
-public class WriteBagPackTask implements Runnable {
+public class WriteBagPackTask implements AsyncTask, DatasetKeyed, Schedulable {
     @NonNull
     private final Path depositDir;
 
@@ -69,70 +82,281 @@ public class WriteBagPackTask implements Runnable {
     private final DepositManager depositManager;
     @NonNull
     private final Path dveOutbox;
+    @NonNull
+    private final BagPackConfig.Mode bagPackMode;
+    @NonNull
+    private final DepositSummary summary;
+
+    // Null if each deposit is processed from start to finish by one worker
+    private final DepositPipeline pipeline;
+
+    // Null if the inbox is not shared with other instances
+    private final DepositLeases leases;
 
     private Deposit deposit;
 
+    private BagPackWriter bagPackWriter;
+
+    private ProgressJournal journal;
+
+    // Whether an earlier attempt to process this deposit was interrupted
+    private boolean resumed;
+
     private UUID depositId;
 
+    @Override
+    public String getDatasetKey() {
+        return summary.getDatasetKey();
+    }
+
+    @Override
+    public long getPayloadSize() {
+        return summary.getPayloadSize();
+    }
+
+    @Override
+    public String getDepositorId() {
+        return summary.getDepositorId();
+    }
+
     public void run() {
+        if (!claim()) {
+            return;
+        }
+        log.info("[{}] START processing deposit", getDepositId(depositDir));
         try {
-            log.info("[{}] START processing deposit", getDepositId(depositDir));
-            var bagDir = getBagDir(depositDir);
+            validate();
+            register();
+            convert();
+            zip();
+            handOff();
+        }
+        catch (Exception e) {
+            handleFailure(e);
+        }
+        finally {
+            closeBagPackWriter();
+            releaseLease();
+        }
+        log.info("[{}] END processing deposit", getDepositId(depositDir));
+    }
+
+    /**
+     * Processes the deposit in the stages of the pipeline, or, if there is no pipeline, on the current thread.
+     *
+     * @return a stage that completes when the deposit has been processed
+     */
+    @Override
+    public CompletionStage<Void> start() {
+        if (pipeline == null) {
+            run();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!claim()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        log.info("[{}] START processing deposit", getDepositId(depositDir));
+        // Started from a completed stage, so that a stage that rejects the first step also ends up in handle()
+        return CompletableFuture.completedFuture((Void) null)
+            .thenCompose(v -> pipeline.run(Stage.VALIDATE, this::validate))
+            .thenCompose(v -> pipeline.run(Stage.REGISTER, this::register))
+            .thenCompose(v -> pipeline.run(Stage.CONVERT, this::convert))
+            .thenCompose(v -> pipeline.run(Stage.ZIP, this::zip))
+            .thenCompose(v -> pipeline.run(Stage.HAND_OFF, this::handOff))
+            .handle((v, e) -> {
+                var cause = unwrap(e);
+                if (cause instanceof RejectedExecutionException) {
+                    // The service is stopping; the deposit and its journal are left in the inbox, so that processing resumes after the restart
+                    log.info("[{}] Processing of deposit interrupted by shutdown: {}", getDepositId(depositDir), cause.getMessage());
+                }
+                else if (cause != null) {
+                    handleFailure(cause);
+                }
+                closeBagPackWriter();
+                releaseLease();
+                log.info("[{}] END processing deposit", getDepositId(depositDir));
+                return null;
+            });
+    }
+
+    private boolean claim() {
+        if (leases == null) {
+            return true;
+        }
+        if (!leases.tryClaim(getDatasetKey(), depositDir)) {
+            log.info("[{}] Dataset {} is being processed by another instance; skipping", getDepositId(depositDir), getDatasetKey());
+            return false;
+        }
+        if (!Files.exists(depositDir)) {
+            // Processed by another instance in the meantime
+            leases.release(getDatasetKey());
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseLease() {
+        if (leases != null) {
+            leases.release(getDatasetKey());
+        }
+    }
+
+    private void closeBagPackWriter() {
+        if (bagPackWriter != null) {
+            try {
+                bagPackWriter.close();
+            }
+            catch (IOException e) {
+                log.warn("[{}] Could not delete temporary files of BagPack writer", getDepositId(depositDir), e);
+            }
+        }
+    }
 
-            bagValidator.validate(getDepositId(depositDir), bagDir);
+    private void validate() throws InvalidDepositException, IOException {
+        resumed = ProgressJournal.exists(depositDir);
+        journal = ProgressJournal.open(depositDir);
+        if (resumed) {
+            log.info("[{}] Resuming interrupted processing of deposit", getDepositId(depositDir));
+        }
+        if (journal.isDone(Step.VALIDATED)) {
+            return;
+        }
+        var bagDir = getBagDir(depositDir);
+        bagValidator.validate(getDepositId(depositDir), bagDir);
+        journal.record(Step.VALIDATED);
+    }
 
-            log.debug("[{}] Loading deposit info", getDepositId(depositDir));
-            deposit = depositManager.loadDeposit(depositDir, dataSupplier);
-            processDeposit();
+    private void register() throws InvalidDepositException, IOException {
+        if (bagPackMode == BagPackConfig.Mode.OVERLAY) {
+            // The bag is left untouched, so it needs no backup
+            log.debug("[{}] Not backing up bag; metadata is added to the BagPack only", getDepositId(depositDir));
+        }
+        else if (!journal.isDone(Step.BACKED_UP) && !journal.isDone(Step.ZIPPED)) {
+            if (resumed) {
+                // The copy may have been interrupted
+                depositManager.discardOriginalBagBackup(depositDir);
+            }
+            depositManager.backUpOriginalBag(depositDir);
+            journal.record(Step.BACKED_UP, Map.of(ProgressJournal.BAG_DIR, getBagDir(depositDir).getFileName().toString()));
+        }
+        else if (journal.isDone(Step.BACKED_UP) && !journal.isDone(Step.METADATA_WRITTEN)) {
+            // Writing the metadata may have been interrupted
+            depositManager.restoreTagFiles(depositDir);
+        }
 
-            depositManager.saveDepositProperties(deposit);
-            log.debug("[{}] Saved deposit properties", getDepositId(depositDir));
-            depositManager.updateDepositState(depositDir, Deposit.State.ACCEPTED, "Deposit accepted");
+        log.debug("[{}] Loading deposit info", getDepositId(depositDir));
+        deposit = depositManager.readDeposit(depositDir, dataSupplier);
 
-            restoreOriginalBag();
-            Files.move(depositDir, outboxProcessed.resolve(depositDir.getFileName()));
-            log.info("[{}] Moved deposit to outbox", getDepositId(depositDir));
+        if (journal.isDone(Step.REGISTERED)) {
+            deposit.setNbn(journal.get(ProgressJournal.NBN));
+            deposit.setObjectVersion(Integer.valueOf(journal.get(ProgressJournal.OBJECT_VERSION)));
+            return;
         }
-        catch (InvalidDepositException e) {
+        createSkeletonRecordInVaultCatalog();
+        journal.record(Step.REGISTERED, Map.of(
+            ProgressJournal.NBN, deposit.getNbn(),
+            ProgressJournal.OBJECT_VERSION, deposit.getObjectVersion().toString()));
+    }
+
+    private void convert() {
+        try {
+            bagPackWriter = rdaBagWriterFactory.createBagPackWriter(deposit);
+            if (journal.isDone(Step.ZIPPED)) {
+                return;
+            }
+            if (bagPackMode == BagPackConfig.Mode.OVERLAY) {
+                // Kept in temporary files of the writer only, so it must be generated again when resuming
+                bagPackWriter.generateMetadata();
+            }
+            else if (!journal.isDone(Step.METADATA_WRITTEN)) {
+                bagPackWriter.writeMetadata();
+                journal.record(Step.METADATA_WRITTEN);
+            }
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Error writing bag: " + e.getMessage(), e);
+        }
+    }
+
+    private void zip() {
+        try {
+            if (!journal.isDone(Step.ZIPPED)) {
+                // The name is recorded before zipping, so that a BagPack that was completed just before a crash is not created a second time under another name
+                var bagPackName = journal.get(ProgressJournal.BAG_PACK);
+                if (bagPackName == null) {
+                    bagPackName = outputFilename(deposit.getBagId(), deposit.getObjectVersion());
+                    journal.put(ProgressJournal.BAG_PACK, bagPackName);
+                }
+                var bagPack = dveOutbox.resolve(bagPackName);
+                // The BagPack is moved into place atomically, so if it exists, it is complete
+                if (!Files.exists(bagPack)) {
+                    bagPackWriter.zipTo(bagPack);
+                }
+                journal.record(Step.ZIPPED);
+            }
+            deposit.setState(Deposit.State.ACCEPTED, "Deposit accepted");
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Error writing bag: " + e.getMessage(), e);
+        }
+    }
+
+    private void handOff() throws IOException {
+        depositManager.saveDepositProperties(deposit);
+        log.debug("[{}] Saved deposit properties", getDepositId(depositDir));
+        depositManager.updateDepositState(depositDir, Deposit.State.ACCEPTED, "Deposit accepted");
+
+        depositManager.restoreOriginalBag(depositDir, journal);
+        var target = outboxProcessed.resolve(depositDir.getFileName());
+        Files.move(depositDir, target);
+        journal.relocate(target);
+        journal.record(Step.MOVED);
+        log.info("[{}] Moved deposit to outbox", getDepositId(depositDir));
+    }
+
+    private void handleFailure(Throwable e) {
+        if (e instanceof InvalidDepositException) {
             log.warn("[{}] REJECTED deposit: {}", getDepositId(depositDir), e.getMessage());
             try {
                 depositManager.updateDepositState(depositDir, Deposit.State.REJECTED, e.getMessage());
-                if (deposit != null) {
-                    restoreOriginalBag();
-                }
+                restoreOriginalBagAndDeleteJournal();
                 Files.move(depositDir, outboxRejected.resolve(depositDir.getFileName()));
             }
             catch (IOException ioException) {
                 log.error("[{}] Failed to move deposit to outbox-rejected", getDepositId(depositDir), ioException);
             }
         }
-        catch (Exception e) {
+        else {
             log.error("[{}] FAILED deposit: {}", getDepositId(depositDir), e.getMessage(), e);
             try {
                 depositManager.updateDepositState(depositDir, Deposit.State.FAILED, e.getMessage());
-                restoreOriginalBag();
+                restoreOriginalBagAndDeleteJournal();
                 Files.move(depositDir, outboxFailed.resolve(depositDir.getFileName()));
             }
             catch (IOException ioException) {
                 log.error("[{}] Failed to handle failed deposit", getDepositId(depositDir), ioException);
             }
         }
-        log.info("[{}] END processing deposit", getDepositId(depositDir));
     }
 
-    private void restoreOriginalBag() {
-        requireNonNull(deposit, "deposit cannot be null");
-        requireNonNull(deposit.getBagDir(), "deposit bagDir cannot be null");
-        requireNonNull(deposit.getOriginalBagDir(), "deposit originalBagDir cannot be null");
-        requireNonNull(depositDir, "depositDir cannot be null");
-
-        try {
-            FileUtils.deleteDirectory(deposit.getBagDir().toFile());
-            Files.move(deposit.getOriginalBagDir(), deposit.getBagDir());
+    private void restoreOriginalBagAndDeleteJournal() throws IOException {
+        // The journal may exist even if opening it failed, or it was not opened yet when resuming
+        if (journal == null && ProgressJournal.exists(depositDir)) {
+            journal = ProgressJournal.open(depositDir);
         }
-        catch (IOException e) {
-            log.error("[{}] Failed to restore original bag", getDepositId(depositDir), e);
+        if (journal != null) {
+            depositManager.restoreOriginalBag(depositDir, journal);
         }
+        // A deposit that is submitted again, after it has been fixed, must be processed from the start
+        ProgressJournal.delete(depositDir);
+    }
+
+    private Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
     }
 
     private UUID getDepositId(Path path) {
@@ -142,15 +366,10 @@ public class WriteBagPackTask implements Runnable {
         return depositId;
     }
 
-    private void processDeposit() throws InvalidDepositException, IOException {
-        createSkeletonRecordInVaultCatalog();
-        convertToBagPack();
-    }
-
     private void createSkeletonRecordInVaultCatalog() throws IOException, InvalidDepositException {
         if (deposit.isUpdate()) {
             log.debug("[{}] Deposit is an update", deposit.getId());
-            var dataset = vaultCatalogClient.findDataset(convertToSwordToken(deposit.getIsVersionOf()))
+            var dataset = vaultCatalogClient.findDataset(DepositManager.toSwordToken(deposit.getIsVersionOf()))
                 .orElseThrow(() -> new InvalidDepositException(String.format("Dataset with sword token %s not found in vault catalog", deposit.getSwordToken())));
             checkDataSupplier(dataset);
             checkCreatedTimestamp(dataset);
@@ -164,18 +383,6 @@ public class WriteBagPackTask implements Runnable {
         }
     }
 
-    private String convertToSwordToken(String isVersionOf) {
-        if (isVersionOf.startsWith("sword:")) {
-            return isVersionOf;
-        }
-        else if (isVersionOf.startsWith("urn:uuid:")) {
-            return "sword:" + isVersionOf.substring("urn:uuid:".length());
-        }
-        else {
-            throw new IllegalArgumentException("Is-Version-Of value must start with 'sword:' or 'urn:uuid:'");
-        }
-    }
-
     private void checkDataSupplier(DatasetDto dataset) throws InvalidDepositException {
         if (!StringUtils.equals(deposit.getDataSupplier(), dataset.getDataSupplier())) {
             throw new InvalidDepositException(String.format(
@@ -206,16 +413,6 @@ public class WriteBagPackTask implements Runnable {
         return numbers.size() + 1;
     }
 
-    private void convertToBagPack() {
-        try {
-            rdaBagWriterFactory.createBagPackWriter(deposit).writeTo(dveOutbox.resolve(outputFilename(deposit.getBagId(), deposit.getObjectVersion())));
-            deposit.setState(Deposit.State.ACCEPTED, "Deposit accepted");
-        }
-        catch (Exception e) {
-            throw new IllegalStateException("Error writing bag: " + e.getMessage(), e);
-        }
-    }
-
     private String outputFilename(@NonNull String bagId, @NonNull Integer objectVersion) {
         // strip anything before all colons (if present), and also the colon itself (i.e.,s remove "sword:" or "urn:uuid:" if present)
         bagId = bagId.toLowerCase().replaceAll(".*:", "");
@@ -225,7 +422,7 @@ public class WriteBagPackTask implements Runnable {
 
     private Path getBagDir(Path path) throws InvalidDepositException {
         try (var list = Files.list(path)) {
-            var dirs = list.filter(Files::isDirectory).toList();
+            var dirs = list.filter(Files::isDirectory).filter(dir -> !DepositManager.isOriginalBagBackup(dir)).toList();
             if (dirs.isEmpty()) {
                 throw new InvalidDepositException("No bag directory found in deposit path: " + path);
             }
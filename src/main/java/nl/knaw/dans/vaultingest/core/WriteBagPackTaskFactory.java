@@ -19,8 +19,11 @@ import lombok.AllArgsConstructor;
 import nl.knaw.dans.lib.util.inbox.InboxTaskFactory;
 import nl.knaw.dans.vaultingest.client.BagValidator;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+import nl.knaw.dans.vaultingest.config.BagPackConfig;
 import nl.knaw.dans.vaultingest.core.bagpack.BagPackWriterFactory;
+import nl.knaw.dans.vaultingest.core.concurrent.DepositPipeline;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.inbox.DepositLeases;
 import nl.knaw.dans.vaultingest.core.util.IdMinter;
 
 import java.nio.file.Path;
@@ -38,9 +41,15 @@ public class WriteBagPackTaskFactory implements InboxTaskFactory {
     private final IdMinter idMinter;
     private final DepositManager depositManager;
     private final Path dveOutbox;
+    private final BagPackConfig.Mode bagPackMode;
+    // Null if each deposit is processed from start to finish by one worker
+    private final DepositPipeline pipeline;
+    // Null if the inbox is not shared with other instances
+    private final DepositLeases leases;
 
     public Runnable createInboxTask(Path path) {
         return new WriteBagPackTask(path,
-            outboxProcessed, outboxFailed, outboxRejected, ocflStorageRoot, dataSupplier, rdaBagWriterFactory, vaultCatalogClient, bagValidator, idMinter, depositManager, dveOutbox);
+            outboxProcessed, outboxFailed, outboxRejected, ocflStorageRoot, dataSupplier, rdaBagWriterFactory, vaultCatalogClient, bagValidator, idMinter, depositManager, dveOutbox, bagPackMode,
+            depositManager.readSummary(path), pipeline, leases);
     }
 }
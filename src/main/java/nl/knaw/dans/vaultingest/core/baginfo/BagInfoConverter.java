@@ -21,8 +21,6 @@ import nl.knaw.dans.vaultingest.core.deposit.DepositBag;
 import nl.knaw.dans.vaultingest.core.mappings.Descriptions;
 import nl.knaw.dans.vaultingest.core.mappings.Titles;
 
-import java.io.IOException;
-
 public class BagInfoConverter {
     public static final String KEY_CONTACT_NAME = "Contact-Name";
     public static final String KEY_CONTACT_EMAIL = "Contact-Email";
@@ -32,7 +30,7 @@ public class BagInfoConverter {
     public static final String KEY_INTERNAL_SENDER_IDENTIFIER = "Internal-Sender-Identifier";
     public static final String KEY_HAS_ORGANIZATIONAL_IDENTIFIER = "Has-Organizational-Identifier";
 
-    public void convert(Deposit deposit, ContactPersonConfig contactPersonConfig, DepositBag depositBag) throws IOException {
+    public void convert(Deposit deposit, ContactPersonConfig contactPersonConfig, DepositBag depositBag) {
         // BAGINFO001A
         depositBag.putBagInfoValue(KEY_CONTACT_NAME, contactPersonConfig.getName());
         depositBag.putBagInfoValue(KEY_CONTACT_EMAIL, contactPersonConfig.getEmail());
@@ -54,7 +52,7 @@ public class BagInfoConverter {
         depositBag.putBagInfoValue(KEY_INTERNAL_SENDER_IDENTIFIER, Titles.getTitle(deposit.getDdm()));
     }
 
-    private void copyHasOrganizationalIdentifierToExternalIdentifier(DepositBag depositBag) throws IOException {
+    private void copyHasOrganizationalIdentifierToExternalIdentifier(DepositBag depositBag) {
         var hasOrgIds = depositBag.getBagInfoValues(KEY_HAS_ORGANIZATIONAL_IDENTIFIER);
         var externalDescriptions = depositBag.getBagInfoValues(KEY_EXTERNAL_IDENTIFIER);
 
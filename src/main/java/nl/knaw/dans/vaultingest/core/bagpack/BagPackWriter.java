@@ -19,9 +19,9 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
-import nl.knaw.dans.lib.util.ZipUtil;
 import nl.knaw.dans.vaultingest.config.ContactPersonConfig;
 import nl.knaw.dans.vaultingest.core.baginfo.BagInfoConverter;
+import nl.knaw.dans.vaultingest.core.concurrent.TaskGroupExecutorService;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
@@ -30,26 +30,56 @@ import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
 import nl.knaw.dans.vaultingest.core.util.MultiDigestInputStream;
+import nl.knaw.dans.vaultingest.core.util.MultiDigestOutputStream;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * Enriching a DANS Bag with metadata so that it becomes an RDA "BagPack".
+ *
+ * <p>
+ * The metadata files can either be written into the bag ({@link #writeMetadata()}), or be generated into temporary files ({@link #generateMetadata()}), leaving the bag untouched. In the
+ * latter case, {@link #zipTo(Path)} combines the files of the bag with the generated and modified files, so that no copy of the original bag is needed to restore it afterwards. The temporary
+ * files are kept in a directory of the writer in the work directory, which is deleted by {@link #close()}.
+ * </p>
+ *
+ * <p>
+ * The metadata files only depend on the deposit, so they are generated concurrently on the metadata executor. The tag manifests are modified after all of them have been generated.
+ * </p>
  */
 @Slf4j
 @RequiredArgsConstructor
-public class BagPackWriter {
+public class BagPackWriter implements Closeable {
     @NonNull
     private final Deposit deposit;
 
@@ -77,48 +107,309 @@ public class BagPackWriter {
     @NonNull
     private final BagInfoConverter bagInfoConverter;
 
-    private final Map<Path, Map<SupportedAlgorithm, String>> changedChecksums = new HashMap<>();
+    @NonNull
+    private final Executor metadataExecutor;
+
+    // Compresses the files of the bag when zipping; shared by the deposits that are zipped at the same time
+    @NonNull
+    private final Executor zipExecutor;
+
+    @NonNull
+    private final CompressionPolicy compressionPolicy;
+
+    // Outside the bagPackOutputDir, so that the DVE never sees the temporary files, including the compressed files of the zip threads
+    @NonNull
+    private final Path workDir;
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface MetadataTask {
+        void run() throws IOException;
+    }
+
+    private final Map<Path, Map<SupportedAlgorithm, String>> changedChecksums = new ConcurrentHashMap<>();
+    // Generated and modified tag files, by path relative to the bag, if the bag is not modified in place; their content is in the overlay directory
+    private final Set<Path> overlay = ConcurrentHashMap.newKeySet();
+    // The directory of this writer in the work directory, created when first needed
+    private Path tempDir;
     private Set<SupportedAlgorithm> tagManifestAlgorithms;
+    private boolean inPlace;
 
     public void writeTo(Path bagPack) throws IOException {
-        this.tagManifestAlgorithms = deposit.getBag().getTagManifestAlgorithms();
+        writeMetadata();
+        zipTo(bagPack);
+    }
 
-        log.debug("[{}] Adding metadata/datacite.xml", deposit.getId());
-        var resource = dataciteConverter.convert(deposit);
-        var dataciteXml = dataciteSerializer.serialize(resource);
-        checksummedWriteToOutput(Path.of("metadata/datacite.xml"), dataciteXml);
+    /**
+     * Adds the BagPack metadata files to the bag and updates bag-info.txt and the tag manifests accordingly.
+     *
+     * @throws IOException if the bag could not be written
+     */
+    public void writeMetadata() throws IOException {
+        generate(true);
+    }
 
-        log.debug("[{}] Adding metadata/oai-ore[.rdf|.jsonld]", deposit.getId());
-        var oaiOre = oaiOreConverter.convert(deposit, contactPersonConfig);
-        var rdf = oaiOreSerializer.serializeAsRdf(oaiOre);
-        var jsonld = oaiOreSerializer.serializeAsJsonLd(oaiOre);
-        checksummedWriteToOutput(Path.of("metadata/oai-ore.rdf"), rdf);
-        checksummedWriteToOutput(Path.of("metadata/oai-ore.jsonld"), jsonld);
+    /**
+     * Generates the BagPack metadata files, bag-info.txt and the tag manifests into temporary files, without writing to the bag.
+     *
+     * @throws IOException if the bag could not be read
+     */
+    public void generateMetadata() throws IOException {
+        generate(false);
+    }
 
-        log.debug("[{}] Adding metadata/pid-mapping.txt", deposit.getId());
-        var pidMappings = pidMappingConverter.convert(deposit);
-        var pidMappingsSerialized = pidMappingSerializer.serialize(pidMappings);
-        checksummedWriteToOutput(Path.of("metadata/pid-mapping.txt"), pidMappingsSerialized);
+    private void generate(boolean inPlace) throws IOException {
+        this.inPlace = inPlace;
+        this.tagManifestAlgorithms = deposit.getBag().getTagManifestAlgorithms();
+        changedChecksums.clear();
+        overlay.clear();
+        if (!inPlace) {
+            Files.createDirectories(getOverlayDir());
+        }
 
-        log.debug("[{}] Adding to bag-info.txt", deposit.getId());
+        // The bag-info values are added up front, so that the bag is only read while the metadata files are generated
         bagInfoConverter.convert(deposit, contactPersonConfig, deposit.getBag());
-        var bagInfoPath = deposit.getBagDir().resolve("bag-info.txt");
-        var baginfoContent = FileUtils.readFileToString(bagInfoPath.toFile(), StandardCharsets.UTF_8);
-        // A bit clumsy, but the easiest way to ensure checksum is calculated for bag-info.txt
-        checksummedWriteToOutput(bagInfoPath, baginfoContent);
+
+        awaitAll(
+            runAsync("metadata/datacite.xml", () -> {
+                var resource = dataciteConverter.convert(deposit);
+                checksummedWriteToOutput(Path.of("metadata/datacite.xml"), output -> dataciteSerializer.serialize(resource, output));
+            }),
+            // Both files are written while the graph is being generated, so that the whole graph is never in memory
+            runAsync("metadata/oai-ore[.rdf|.jsonld]", () -> checksummedWriteToOutput(Path.of("metadata/oai-ore.rdf"), rdfOutput ->
+                checksummedWriteToOutput(Path.of("metadata/oai-ore.jsonld"), jsonLdOutput -> {
+                    try (var rdfWriter = oaiOreSerializer.createRdfWriter(rdfOutput);
+                        var jsonLdWriter = oaiOreSerializer.createJsonLdWriter(jsonLdOutput)) {
+                        oaiOreConverter.convert(deposit, contactPersonConfig, part -> {
+                            rdfWriter.write(part);
+                            jsonLdWriter.write(part);
+                        });
+                    }
+                    catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                }))),
+            runAsync("metadata/pid-mapping.txt", () -> {
+                var pidMappings = pidMappingConverter.convert(deposit);
+                checksummedWriteToOutput(Path.of("metadata/pid-mapping.txt"), output -> pidMappingSerializer.serialize(pidMappings, output));
+            }),
+            runAsync("bag-info.txt", this::writeBagInfo));
 
         // must be last, because all other files must have been written
         log.debug("[{}] Modifying tagmanifest-*.txt files", deposit.getId());
         modifyTagManifests(); // Add checksums for new metadata files
+    }
+
+    private CompletableFuture<Void> runAsync(String description, MetadataTask task) {
+        return CompletableFuture.runAsync(() -> {
+            log.debug("[{}] Adding {}", deposit.getId(), description);
+            try {
+                task.run();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, metadataExecutor);
+    }
 
+    // Waits for all tasks, also if one of them fails, so that none of them is still writing when this method returns
+    private void awaitAll(CompletableFuture<?>... tasks) throws IOException {
+        try {
+            CompletableFuture.allOf(tasks).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Zips the bag, as enriched by {@link #writeMetadata()} or {@link #generateMetadata()}, to the given BagPack file. The BagPack has the bag directory as its single top-level entry.
+     *
+     * <p>
+     * While the payload files are zipped, they are verified against the checksums in the payload manifests of the bag.
+     * </p>
+     *
+     * @param bagPack the BagPack file to create
+     * @throws FixityException if a payload file is missing or does not match its manifest checksums
+     * @throws IOException     if the BagPack could not be written
+     */
+    public void zipTo(Path bagPack) throws IOException {
         log.debug("[{}] Creating ZIP file", deposit.getId());
         var tempZipFile = bagPack.resolveSibling(bagPack.getFileName() + ".tmp");
         log.debug("[{}] Zipping directory {} to {}", deposit.getId(), deposit.getBagDir(), tempZipFile);
-        ZipUtil.zipDirectory(deposit.getBagDir(), tempZipFile, true);
+        try {
+            zip(tempZipFile);
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempZipFile);
+            throw e;
+        }
         log.debug("[{}] Moving {} to {}", deposit.getId(), tempZipFile, bagPack);
         Files.move(tempZipFile, bagPack, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    private void zip(Path zipFile) throws IOException {
+        var bagDir = deposit.getBagDir();
+        var baseName = bagDir.getFileName().toString();
+        var remaining = new HashSet<>(overlay);
+        var statistics = new CompressionPolicy.Statistics();
+        var payloadChecksums = deposit.getBag().getPayloadManifestChecksums();
+
+        // The files are compressed in parallel, each thread into its own temporary file in the work directory, and then copied into the zip file in one go. The
+        // ParallelScatterZipCreator shuts down its executor when it is done, so it gets a task group of this zip rather than the shared executor itself.
+        var executor = new TaskGroupExecutorService(zipExecutor);
+        var backingStores = Collections.synchronizedList(new ArrayList<ScatterGatherBackingStore>());
+        try (var zip = new ZipArchiveOutputStream(zipFile.toFile())) {
+            zip.setUseZip64(Zip64Mode.AsNeeded);
+            var scatterZipCreator = new ParallelScatterZipCreator(executor, () -> {
+                var backingStore = new FileBasedScatterGatherBackingStore(Files.createTempFile(getTempDir(), "zip-", ".scatter").toFile());
+                backingStores.add(backingStore);
+                return backingStore;
+            }, compressionPolicy.getLevel());
+
+            List<Path> paths;
+            try (var walk = Files.walk(bagDir)) {
+                paths = walk.toList();
+            }
+            checkPayloadFilesPresent(paths, payloadChecksums.keySet());
+
+            // Directories have no content to compress, so they are written directly, ahead of the files
+            var files = new ArrayList<Path>();
+            for (var path : paths) {
+                if (!remaining.contains(bagDir.relativize(path)) && Files.isDirectory(path)) {
+                    // ZipArchiveEntry adds the trailing slash for directories
+                    zip.putArchiveEntry(new ZipArchiveEntry(path.toFile(), getEntryName(baseName, bagDir.relativize(path))));
+                    zip.closeArchiveEntry();
+                }
+                else {
+                    files.add(path);
+                }
+            }
+
+            for (var path : files) {
+                var relativePath = bagDir.relativize(path);
+                var entryName = getEntryName(baseName, relativePath);
+                if (remaining.remove(relativePath)) {
+                    addEntry(scatterZipCreator, entryName, getOverlayDir().resolve(relativePath), statistics);
+                }
+                else {
+                    // The compression method is decided on the compressing thread, because it may have to read the start of the file
+                    var expectedChecksums = payloadChecksums.get(relativePath);
+                    scatterZipCreator.addArchiveEntry(() -> {
+                        var entry = new ZipArchiveEntry(path.toFile(), entryName);
+                        try {
+                            entry.setMethod(compressionPolicy.getMethod(path, statistics));
+                        }
+                        catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return ZipArchiveEntryRequest.createZipArchiveEntryRequest(entry, () -> openInputStream(path, expectedChecksums));
+                    });
+                }
+            }
+            // New files, not present in the bag
+            for (var relativePath : remaining) {
+                addEntry(scatterZipCreator, getEntryName(baseName, relativePath), getOverlayDir().resolve(relativePath), statistics);
+            }
+
+            scatterZipCreator.writeTo(zip);
+            compressionPolicy.record(statistics);
+            log.info("[{}] Zipped {} bytes stored and {} bytes deflated; storing saved an estimated {} ms of CPU time", deposit.getId(), statistics.getStoredBytes(), statistics.getDeflatedBytes(),
+                statistics.getEstimatedCpuTimeSaved().toMillis());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while zipping " + bagDir);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Could not zip " + bagDir, e.getCause());
+        }
+        finally {
+            // Already done by writeTo, unless zipping failed before that; stops only the compression tasks of this zip
+            executor.shutdownNow();
+            closeBackingStores(backingStores);
+        }
+    }
+
+    // Closing a backing store deletes its file; writeTo has done so already, unless zipping failed before that
+    private void closeBackingStores(List<ScatterGatherBackingStore> backingStores) {
+        synchronized (backingStores) {
+            for (var backingStore : backingStores) {
+                try {
+                    backingStore.close();
+                }
+                catch (IOException e) {
+                    log.warn("[{}] Could not delete temporary zip file", deposit.getId(), e);
+                }
+            }
+        }
+    }
+
+    // Generated files are small text files, which are always deflated
+    private void addEntry(ParallelScatterZipCreator scatterZipCreator, String entryName, Path file, CompressionPolicy.Statistics statistics) throws IOException {
+        var size = Files.size(file);
+        statistics.add(ZipArchiveEntry.DEFLATED, size);
+        var entry = new ZipArchiveEntry(entryName);
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        entry.setSize(size);
+        entry.setTime(System.currentTimeMillis());
+        scatterZipCreator.addArchiveEntry(entry, () -> openInputStream(file, null));
+    }
+
+    private void checkPayloadFilesPresent(List<Path> paths, Set<Path> payloadFiles) throws FixityException {
+        var missing = new HashSet<>(payloadFiles);
+        paths.forEach(path -> missing.remove(deposit.getBagDir().relativize(path)));
+        if (!missing.isEmpty()) {
+            throw new FixityException("Payload files listed in manifest are missing: " + missing);
+        }
+    }
+
+    // Payload files are verified against their manifest checksums in the same read that compresses them
+    private static InputStream openInputStream(Path path, Map<SupportedAlgorithm, String> expectedChecksums) {
+        try {
+            var input = Files.newInputStream(path);
+            return expectedChecksums == null ? input : new FixityVerifyingInputStream(input, path, expectedChecksums);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algorithm not supported", e);
+        }
+    }
+
+    private String getEntryName(String baseName, Path relativePath) {
+        var name = relativePath.toString().replace(File.separatorChar, '/');
+        return name.isEmpty() ? baseName : baseName + "/" + name;
+    }
+
+    // bag-info.txt is written by the bagit library, which only writes to a directory
+    private void writeBagInfo() throws IOException {
+        if (inPlace) {
+            deposit.getBag().writeBagInfo();
+        }
+        else {
+            deposit.getBag().writeBagInfo(getOverlayDir());
+        }
+        checksumWrittenFile(Path.of("bag-info.txt"));
+    }
+
     private void modifyTagManifests() throws IOException {
         for (var algorithm : tagManifestAlgorithms) {
             var tagManifest = deposit.getBag().getTagManifest(algorithm);
@@ -134,20 +425,87 @@ public class BagPackWriter {
             }
             tagManifest.setFileToChecksumMap(fileToChecksum);
         }
-        deposit.getBag().writeTagManifests();
-    }
 
-    private void checksummedWriteToOutput(Path path, String content) throws IOException {
-        try (var input = new MultiDigestInputStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), tagManifestAlgorithms)) {
-            try (var outputStream = FileUtils.openOutputStream(deposit.getBagDir().resolve(path).toFile())) {
-                IOUtils.copy(input, outputStream);
-                var result = input.getChecksums();
-                log.debug("[{}] Checksums for {}: {}", deposit.getId(), path, result);
-                changedChecksums.put(path, result);
+        if (inPlace) {
+            deposit.getBag().writeTagManifests();
+            return;
+        }
+        // Written apart first, because the bagit library writes all tag manifests to the directory, and only the names of the written files are needed
+        var stagingDir = Files.createTempDirectory(getTempDir(), "tagmanifests-");
+        try {
+            deposit.getBag().writeTagManifests(stagingDir);
+            try (var list = Files.list(stagingDir)) {
+                for (var file : list.toList()) {
+                    Files.move(file, getOverlayDir().resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                    overlay.add(file.getFileName());
+                }
             }
         }
+        finally {
+            FileUtils.deleteDirectory(stagingDir.toFile());
+        }
+    }
+
+    // Computes the checksums of a file that was written by other means
+    private void checksumWrittenFile(Path path) throws IOException {
+        Map<SupportedAlgorithm, String> result;
+        try (var input = new MultiDigestInputStream(Files.newInputStream(getOutputFile(path)), tagManifestAlgorithms)) {
+            input.transferTo(OutputStream.nullOutputStream());
+            result = input.getChecksums();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algorithm not supported", e);
+        }
+        addChangedFile(path, result);
+    }
+
+    // Writes the content to the bag, or to the overlay, computing its checksums on the way
+    private void checksummedWriteToOutput(Path path, ContentWriter content) throws IOException {
+        Map<SupportedAlgorithm, String> result;
+        try (var output = new MultiDigestOutputStream(new BufferedOutputStream(FileUtils.openOutputStream(getOutputFile(path).toFile())), tagManifestAlgorithms)) {
+            content.writeTo(output);
+            result = output.getChecksums();
+        }
         catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException("Algorithm not supported", e);
         }
+        addChangedFile(path, result);
+    }
+
+    private void addChangedFile(Path path, Map<SupportedAlgorithm, String> checksums) {
+        if (!inPlace) {
+            overlay.add(path);
+        }
+        log.debug("[{}] Checksums for {}: {}", deposit.getId(), path, checksums);
+        changedChecksums.put(path, checksums);
+    }
+
+    private Path getOutputFile(Path path) throws IOException {
+        return inPlace ? deposit.getBagDir().resolve(path) : getOverlayDir().resolve(path);
+    }
+
+    private Path getOverlayDir() throws IOException {
+        return getTempDir().resolve("overlay");
+    }
+
+    private synchronized Path getTempDir() throws IOException {
+        if (tempDir == null) {
+            tempDir = Files.createTempDirectory(workDir, deposit.getId() + "-");
+        }
+        return tempDir;
+    }
+
+    /**
+     * Deletes the temporary files of this writer. The metadata must be generated again before zipping.
+     *
+     * @throws IOException if the files could not be deleted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (tempDir != null) {
+            FileUtils.deleteDirectory(tempDir.toFile());
+            tempDir = null;
+        }
+        overlay.clear();
     }
 }
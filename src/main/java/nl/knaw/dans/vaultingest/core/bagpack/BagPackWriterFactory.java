@@ -28,6 +28,9 @@ import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
 
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
 public class BagPackWriterFactory {
     private final ContactPersonConfig contactPersonConfig;
 
@@ -40,8 +43,18 @@ public class BagPackWriterFactory {
     private final OaiOreConverter oaiOreConverter;
     private final BagInfoConverter bagInfoConverter;
 
-    public BagPackWriterFactory(ContactPersonConfig contactPersonConfig, ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver) {
+    private final Executor metadataExecutor;
+    private final Executor zipExecutor;
+    private final CompressionPolicy compressionPolicy;
+    private final Path workDir;
+
+    public BagPackWriterFactory(ContactPersonConfig contactPersonConfig, ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver, Executor metadataExecutor, Executor zipExecutor, CompressionPolicy compressionPolicy,
+        Path workDir) {
         this.contactPersonConfig = contactPersonConfig;
+        this.metadataExecutor = metadataExecutor;
+        this.zipExecutor = zipExecutor;
+        this.compressionPolicy = compressionPolicy;
+        this.workDir = workDir;
         this.dataciteSerializer = new DataciteSerializer();
         this.pidMappingSerializer = new PidMappingSerializer();
         this.oaiOreSerializer = new OaiOreSerializer(objectMapper);
@@ -61,7 +74,11 @@ public class BagPackWriterFactory {
             dataciteConverter,
             pidMappingConverter,
             oaiOreConverter,
-            bagInfoConverter
+            bagInfoConverter,
+            metadataExecutor,
+            zipExecutor,
+            compressionPolicy,
+            workDir
         );
     }
 }
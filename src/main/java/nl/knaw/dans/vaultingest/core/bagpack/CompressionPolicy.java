@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.bagpack;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import lombok.NonNull;
+import nl.knaw.dans.vaultingest.config.CompressionConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Decides per file whether it is deflated or stored in a BagPack. Deflating a file that is already compressed, such as a JPEG image, an MP4 video or a ZIP file, costs CPU time without making it
+ * noticeably smaller. Such files are recognized by their extension or, failing that, by deflating the first few KB of the file and checking how much smaller that got.
+ */
+public class CompressionPolicy {
+    private final int level;
+    private final Set<String> storedExtensions;
+    private final int probeSize;
+    private final double storeRatio;
+
+    private final Counter storedBytes;
+    private final Counter deflatedBytes;
+    private final Counter estimatedCpuTimeSaved;
+
+    public CompressionPolicy(@NonNull CompressionConfig config, @NonNull MetricRegistry metricRegistry) {
+        this.level = config.getLevel();
+        this.storedExtensions = config.getStoredExtensions().stream()
+            .map(e -> e.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+        this.probeSize = (int) config.getProbeSize().toBytes();
+        this.storeRatio = config.getStoreRatio();
+        this.storedBytes = metricRegistry.counter(name(getClass(), "stored-bytes"));
+        this.deflatedBytes = metricRegistry.counter(name(getClass(), "deflated-bytes"));
+        this.estimatedCpuTimeSaved = metricRegistry.counter(name(getClass(), "estimated-cpu-time-saved-ms"));
+    }
+
+    /**
+     * @return the DEFLATE level for the entries that are deflated
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Decides how to compress the given file.
+     *
+     * @param file       the file
+     * @param statistics the statistics of the BagPack the file is added to
+     * @return {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @throws IOException if the file could not be read
+     */
+    public int getMethod(Path file, Statistics statistics) throws IOException {
+        var size = Files.size(file);
+        int method;
+        if (storedExtensions.contains(getExtension(file))) {
+            method = ZipEntry.STORED;
+        }
+        else if (size <= probeSize) {
+            method = ZipEntry.DEFLATED;
+        }
+        else {
+            method = isIncompressible(file, statistics) ? ZipEntry.STORED : ZipEntry.DEFLATED;
+        }
+        statistics.add(method, size);
+        return method;
+    }
+
+    /**
+     * Adds the statistics of a completed BagPack to the metrics.
+     *
+     * @param statistics the statistics of the BagPack
+     */
+    public void record(Statistics statistics) {
+        storedBytes.inc(statistics.getStoredBytes());
+        deflatedBytes.inc(statistics.getDeflatedBytes());
+        estimatedCpuTimeSaved.inc(statistics.getEstimatedCpuTimeSaved().toMillis());
+    }
+
+    private boolean isIncompressible(Path file, Statistics statistics) throws IOException {
+        var probe = new byte[probeSize];
+        int length;
+        try (var input = Files.newInputStream(file)) {
+            length = input.readNBytes(probe, 0, probeSize);
+        }
+
+        var started = System.nanoTime();
+        var deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(probe, 0, length);
+            deflater.finish();
+            var output = new byte[4096];
+            long deflated = 0;
+            while (!deflater.finished()) {
+                deflated += deflater.deflate(output);
+            }
+            statistics.probeBytes.add(length);
+            statistics.probeNanos.add(System.nanoTime() - started);
+            return deflated > storeRatio * length;
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static String getExtension(Path file) {
+        var name = file.getFileName().toString();
+        var dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The number of bytes stored and deflated for one BagPack. Updated concurrently by the threads that compress its entries.
+     */
+    public static class Statistics {
+        private final LongAdder storedBytes = new LongAdder();
+        private final LongAdder deflatedBytes = new LongAdder();
+        private final LongAdder probeBytes = new LongAdder();
+        private final LongAdder probeNanos = new LongAdder();
+
+        /**
+         * Adds an entry that was compressed without asking the policy, such as a generated metadata file.
+         *
+         * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+         * @param size   the uncompressed size of the entry
+         */
+        public void add(int method, long size) {
+            (method == ZipEntry.STORED ? storedBytes : deflatedBytes).add(size);
+        }
+
+        public long getStoredBytes() {
+            return storedBytes.sum();
+        }
+
+        public long getDeflatedBytes() {
+            return deflatedBytes.sum();
+        }
+
+        /**
+         * Estimates the CPU time that deflating the stored bytes would have taken, from the time it took to deflate the probes.
+         *
+         * @return the estimated CPU time saved; zero if no file was probed
+         */
+        public Duration getEstimatedCpuTimeSaved() {
+            var probed = probeBytes.sum();
+            if (probed == 0) {
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos((long) ((double) probeNanos.sum() / probed * getStoredBytes()));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.bagpack;
+
+import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
+import nl.knaw.dans.vaultingest.core.util.MultiDigestInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Verifies a payload file against its manifest checksums while it is being read, so that the file is read only once to zip and to verify it. The checksums are compared when the stream is closed
+ * after it has been read to the end.
+ */
+class FixityVerifyingInputStream extends MultiDigestInputStream {
+    private final Path path;
+    private final Map<SupportedAlgorithm, String> expectedChecksums;
+    private boolean endOfStream;
+
+    FixityVerifyingInputStream(InputStream inputStream, Path path, Map<SupportedAlgorithm, String> expectedChecksums) throws NoSuchAlgorithmException {
+        super(inputStream, expectedChecksums.keySet());
+        this.path = path;
+        this.expectedChecksums = expectedChecksums;
+    }
+
+    @Override
+    public int read() throws IOException {
+        var b = super.read();
+        endOfStream |= b < 0;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        var n = super.read(b, off, len);
+        endOfStream |= n < 0;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        // A stream that is closed early, because reading it failed, has not been digested completely
+        if (!endOfStream) {
+            return;
+        }
+        var actualChecksums = getChecksums();
+        for (var entry : expectedChecksums.entrySet()) {
+            var actual = actualChecksums.get(entry.getKey());
+            if (!entry.getValue().equalsIgnoreCase(actual)) {
+                throw new FixityException(String.format("Checksum mismatch for %s: %s in manifest is %s, but file has %s", path, entry.getKey().getBagitName(), entry.getValue(), actual));
+            }
+        }
+    }
+}
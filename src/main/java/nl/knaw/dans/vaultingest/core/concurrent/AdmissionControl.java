@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import java.time.Duration;
+
+/**
+ * Decides whether a task that is ready to run may be started now. A task that is not admitted stays ready and is offered again after the retry interval.
+ */
+public interface AdmissionControl {
+
+    /**
+     * Tries to admit a task. If the task is admitted, {@link #release(Runnable)} is called when it has finished.
+     *
+     * @param task the task
+     * @return true if the task may be started
+     */
+    boolean tryAdmit(Runnable task);
+
+    /**
+     * Called when a task was not admitted, to decide whether tasks of lower priority may be started before it. By default they may not, so that the task cannot be starved by them. A task that
+     * cannot be admitted whatever the other tasks do, should not block them.
+     *
+     * @param task the task that was not admitted
+     * @return true if tasks of lower priority may be started before the task
+     */
+    default boolean mayBeOvertaken(Runnable task) {
+        return false;
+    }
+
+    /**
+     * Called when an admitted task has finished.
+     *
+     * @param task the task
+     */
+    void release(Runnable task);
+
+    /**
+     * @return how long to wait before offering a task that was not admitted again
+     */
+    Duration getRetryInterval();
+}
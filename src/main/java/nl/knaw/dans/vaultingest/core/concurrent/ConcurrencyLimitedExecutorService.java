@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Limits the number of tasks that run at the same time on an executor that does not limit this itself, such as one that starts a virtual thread per task. A task that is submitted while the limit
+ * is reached waits in its own thread for a permit, so submitting never blocks.
+ */
+public class ConcurrencyLimitedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int limit;
+
+    public ConcurrencyLimitedExecutorService(@NonNull ExecutorService delegate, int limit, @NonNull MetricRegistry metricRegistry) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.delegate = delegate;
+        this.limit = limit;
+        this.permits = new Semaphore(limit, true);
+        metricRegistry.register(name(getClass(), "running"), (Gauge<Integer>) this::getRunningCount);
+        metricRegistry.register(name(getClass(), "waiting"), (Gauge<Integer>) permits::getQueueLength);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                command.run();
+            }
+            finally {
+                permits.release();
+            }
+        });
+    }
+
+    public int getRunningCount() {
+        return limit - permits.availablePermits();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Executes tasks on a pool of workers, while guaranteeing that tasks with the same dataset key (see {@link DatasetKeyed}) are executed one after the other, in the order in which they were
+ * submitted. Tasks for different datasets run concurrently. Tasks that are not {@link DatasetKeyed} are not ordered with respect to any other task. An {@link AsyncTask} is considered finished
+ * when the stage returned by {@link AsyncTask#start()} completes, not when the worker that started it returns.
+ *
+ * <p>
+ * Which of the tasks that are ready to run is started first when a worker becomes available is decided by a {@link SchedulingPolicy}. Optionally, an {@link AdmissionControl} may hold
+ * back the first ready task, for example until there is enough free disk space for it. Tasks of lower priority are not started past a task that is held back, so that a large task cannot be starved by
+ * smaller ones, unless the admission control reports that the task may be overtaken, because waiting for the other tasks to finish would not help it.
+ * </p>
+ */
+@Slf4j
+public class DatasetOrderedExecutorService extends AbstractExecutorService {
+    private final ExecutorService workers;
+    private final SchedulingPolicy schedulingPolicy;
+    private final AdmissionControl admissionControl;
+    private final ScheduledExecutorService retryScheduler;
+
+    // Tasks that may start as soon as a worker is available, in order of priority
+    private final PriorityBlockingQueue<Submission> ready = new PriorityBlockingQueue<>(11, Comparator
+        .comparingDouble((Submission s) -> s.priority)
+        .thenComparingLong(s -> s.sequenceNumber));
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Per dataset key, the submissions waiting for the running task of that dataset to finish. A key is present as long as a task for it is queued or running.
+    private final Map<String, Queue<Submission>> waitingByDatasetKey = new HashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger heldBack = new AtomicInteger();
+    private final Timer queueWaitTimer;
+    private final Timer datasetKeyWaitTimer;
+
+    public DatasetOrderedExecutorService(@NonNull ExecutorService workers, @NonNull MetricRegistry metricRegistry) {
+        this(workers, new FifoSchedulingPolicy(), metricRegistry);
+    }
+
+    public DatasetOrderedExecutorService(@NonNull ExecutorService workers, @NonNull SchedulingPolicy schedulingPolicy, @NonNull MetricRegistry metricRegistry) {
+        this(workers, schedulingPolicy, null, null, metricRegistry);
+    }
+
+    /**
+     * @param workers          the workers that run the tasks
+     * @param schedulingPolicy decides which ready task is started first
+     * @param admissionControl decides whether a ready task may be started now; null to start tasks as soon as a worker is available
+     * @param retryScheduler   used to offer a task that was held back again; may be null if admissionControl is null
+     * @param metricRegistry   the registry for the metrics of this executor
+     */
+    public DatasetOrderedExecutorService(@NonNull ExecutorService workers, @NonNull SchedulingPolicy schedulingPolicy, AdmissionControl admissionControl, ScheduledExecutorService retryScheduler,
+        @NonNull MetricRegistry metricRegistry) {
+        if (admissionControl != null && retryScheduler == null) {
+            throw new IllegalArgumentException("A retry scheduler is required when using admission control");
+        }
+        this.workers = workers;
+        this.schedulingPolicy = schedulingPolicy;
+        this.admissionControl = admissionControl;
+        this.retryScheduler = retryScheduler;
+        this.queueWaitTimer = metricRegistry.timer(name(getClass(), "queue-wait"));
+        this.datasetKeyWaitTimer = metricRegistry.timer(name(getClass(), "dataset-key-wait"));
+        metricRegistry.register(name(getClass(), "queue-depth"), (Gauge<Integer>) queueDepth::get);
+        metricRegistry.register(name(getClass(), "active-dataset-keys"), (Gauge<Integer>) this::getActiveDatasetKeyCount);
+        metricRegistry.register(name(getClass(), "held-back"), (Gauge<Integer>) heldBack::get);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        var datasetKey = command instanceof DatasetKeyed keyed ? keyed.getDatasetKey() : null;
+        var submission = new Submission(datasetKey, command, System.nanoTime());
+        queueDepth.incrementAndGet();
+
+        if (datasetKey == null) {
+            dispatch(submission);
+            return;
+        }
+
+        boolean runNow;
+        synchronized (waitingByDatasetKey) {
+            var waiting = waitingByDatasetKey.get(datasetKey);
+            if (waiting == null) {
+                waitingByDatasetKey.put(datasetKey, new ArrayDeque<>());
+                runNow = true;
+            }
+            else {
+                waiting.add(submission);
+                runNow = false;
+            }
+        }
+
+        if (runNow) {
+            dispatch(submission);
+        }
+        else {
+            log.debug("Task for dataset {} must wait for earlier task(s) of the same dataset to finish", datasetKey);
+        }
+    }
+
+    private void dispatch(Submission submission) {
+        submission.dispatched = System.nanoTime();
+        submission.priority = schedulingPolicy.getPriority(submission.schedulable());
+        submission.sequenceNumber = sequence.getAndIncrement();
+        ready.add(submission);
+        try {
+            // Each dispatch starts exactly one ready task, but not necessarily this one
+            workers.execute(this::runNext);
+        }
+        catch (RejectedExecutionException e) {
+            ready.remove(submission);
+            queueDepth.decrementAndGet();
+            releaseDatasetKey(submission.datasetKey);
+            throw e;
+        }
+    }
+
+    private void runNext() {
+        var notAdmitted = new ArrayList<Submission>();
+        Submission admitted = null;
+        for (var submission = ready.poll(); submission != null; submission = ready.poll()) {
+            if (admissionControl == null || admissionControl.tryAdmit(submission.task)) {
+                admitted = submission;
+                break;
+            }
+            notAdmitted.add(submission);
+            if (!admissionControl.mayBeOvertaken(submission.task)) {
+                // Tasks of lower priority must wait for it
+                break;
+            }
+        }
+
+        // Put them back with their original priority
+        ready.addAll(notAdmitted);
+        if (admitted != null) {
+            run(admitted);
+        }
+        else if (!notAdmitted.isEmpty()) {
+            // Let this worker turn be taken again later
+            heldBack.incrementAndGet();
+            try {
+                retryScheduler.schedule(this::retryHeldBack, admissionControl.getRetryInterval().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e) {
+                heldBack.decrementAndGet();
+                log.warn("Could not schedule retry of held back task; executor is shutting down");
+            }
+        }
+    }
+
+    private void retryHeldBack() {
+        heldBack.decrementAndGet();
+        try {
+            workers.execute(this::runNext);
+        }
+        catch (RejectedExecutionException e) {
+            log.warn("Could not retry held back task; executor is shutting down");
+        }
+    }
+
+    private void run(Submission submission) {
+        var started = System.nanoTime();
+        schedulingPolicy.onStart(submission.schedulable(), submission.priority);
+        queueDepth.decrementAndGet();
+        queueWaitTimer.update(started - submission.submitted, TimeUnit.NANOSECONDS);
+
+        if (submission.datasetKey != null) {
+            var keyWait = submission.dispatched - submission.submitted;
+            datasetKeyWaitTimer.update(keyWait, TimeUnit.NANOSECONDS);
+            log.debug("Starting task for dataset {} after waiting {} ms for earlier tasks of the same dataset", submission.datasetKey, TimeUnit.NANOSECONDS.toMillis(keyWait));
+        }
+
+        if (submission.task instanceof AsyncTask asyncTask) {
+            // The task is finished, and the next task of the dataset may start, only when the returned stage completes
+            try {
+                asyncTask.start().whenComplete((result, e) -> release(submission));
+            }
+            catch (RuntimeException e) {
+                release(submission);
+                throw e;
+            }
+            return;
+        }
+
+        try {
+            submission.task.run();
+        }
+        finally {
+            release(submission);
+        }
+    }
+
+    private void release(Submission submission) {
+        if (admissionControl != null) {
+            admissionControl.release(submission.task);
+        }
+        releaseDatasetKey(submission.datasetKey);
+    }
+
+    private void releaseDatasetKey(String datasetKey) {
+        if (datasetKey == null) {
+            return;
+        }
+
+        Submission next;
+        synchronized (waitingByDatasetKey) {
+            var waiting = waitingByDatasetKey.get(datasetKey);
+            next = waiting == null ? null : waiting.poll();
+            if (next == null) {
+                waitingByDatasetKey.remove(datasetKey);
+            }
+        }
+
+        if (next != null) {
+            try {
+                dispatch(next);
+            }
+            catch (RejectedExecutionException e) {
+                log.warn("Could not start next task for dataset {}; executor is shutting down", datasetKey);
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getHeldBackCount() {
+        return heldBack.get();
+    }
+
+    public int getActiveDatasetKeyCount() {
+        synchronized (waitingByDatasetKey) {
+            return waitingByDatasetKey.size();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return workers.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    private static class Submission {
+        private final String datasetKey;
+        private final Runnable task;
+        private final long submitted;
+        private volatile long dispatched;
+        private volatile double priority;
+        private volatile long sequenceNumber;
+
+        private Submission(String datasetKey, Runnable task, long submitted) {
+            this.datasetKey = datasetKey;
+            this.task = task;
+            this.submitted = submitted;
+        }
+
+        private Schedulable schedulable() {
+            return task instanceof Schedulable schedulable ? schedulable : null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultingest.config.PipelineConfig;
+import nl.knaw.dans.vaultingest.config.PipelineStageConfig;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Processes deposits in stages, each with its own bounded queue and thread pool, so that the network-bound, disk-bound and CPU-bound parts of different deposits can overlap. When the queue of a
+ * stage is full, the thread handing a deposit to that stage blocks, so that a slow stage holds back the stages before it.
+ */
+@Slf4j
+public class DepositPipeline {
+    public enum Stage {
+        VALIDATE,
+        REGISTER,
+        CONVERT,
+        ZIP,
+        HAND_OFF
+    }
+
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final Map<Stage, StageExecutor> stages = new EnumMap<>(Stage.class);
+
+    public DepositPipeline(@NonNull PipelineConfig config, @NonNull LifecycleEnvironment lifecycle, @NonNull MetricRegistry metricRegistry) {
+        addStage(Stage.VALIDATE, config.getValidate(), lifecycle, metricRegistry);
+        addStage(Stage.REGISTER, config.getRegister(), lifecycle, metricRegistry);
+        addStage(Stage.CONVERT, config.getConvert(), lifecycle, metricRegistry);
+        addStage(Stage.ZIP, config.getZip(), lifecycle, metricRegistry);
+        addStage(Stage.HAND_OFF, config.getHandOff(), lifecycle, metricRegistry);
+    }
+
+    /**
+     * Runs a step of a deposit in the given stage.
+     *
+     * @param stage the stage
+     * @param step  the step
+     * @return a future that completes when the step is done; if the step fails, the future completes exceptionally with a {@link CompletionException} wrapping the cause. If the stage is shut
+     * down, or the calling thread is interrupted while waiting for room in the stage, the cause is a {@link RejectedExecutionException} and the step has not been run.
+     */
+    public CompletableFuture<Void> run(@NonNull Stage stage, @NonNull Step step) {
+        var stageExecutor = stages.get(stage);
+        return CompletableFuture.runAsync(() -> stageExecutor.run(step), stageExecutor.executorService);
+    }
+
+    private void addStage(Stage stage, PipelineStageConfig config, LifecycleEnvironment lifecycle, MetricRegistry metricRegistry) {
+        var stageName = stage.name().toLowerCase().replace('_', '-');
+        var queue = new ArrayBlockingQueue<Runnable>(config.getQueueSize());
+        var executorService = lifecycle.executorService("vault-ingest-" + stageName + "-%d")
+            .minThreads(config.getThreads())
+            .maxThreads(config.getThreads())
+            .workQueue(queue)
+            .rejectedExecutionHandler(blockWhenFull(queue))
+            .build();
+
+        var stageExecutor = new StageExecutor(executorService, metricRegistry.timer(name(getClass(), stageName, "duration")));
+        metricRegistry.register(name(getClass(), stageName, "queue-length"), (Gauge<Integer>) queue::size);
+        metricRegistry.register(name(getClass(), stageName, "active"), (Gauge<Integer>) stageExecutor.active::get);
+        metricRegistry.register(name(getClass(), stageName, "utilisation"), (Gauge<Double>) () -> (double) stageExecutor.active.get() / config.getThreads());
+        stages.put(stage, stageExecutor);
+    }
+
+    private static RejectedExecutionHandler blockWhenFull(BlockingQueue<Runnable> queue) {
+        return (runnable, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Pipeline stage is shut down");
+            }
+            try {
+                // Wait in short steps, so that a shutdown while the queue is full is noticed
+                while (!queue.offer(runnable, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Pipeline stage is shut down");
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for room in pipeline stage", e);
+            }
+            // After a shutdown the workers may already have stopped, leaving the step in the queue forever. If no worker took it yet, reject it so that the deposit is not left waiting.
+            if (executor.isShutdown() && queue.remove(runnable)) {
+                throw new RejectedExecutionException("Pipeline stage is shut down");
+            }
+        };
+    }
+
+    private static class StageExecutor {
+        private final ExecutorService executorService;
+        private final Timer timer;
+        private final AtomicInteger active = new AtomicInteger();
+
+        private StageExecutor(ExecutorService executorService, Timer timer) {
+            this.executorService = executorService;
+            this.timer = timer;
+        }
+
+        private void run(Step step) {
+            active.incrementAndGet();
+            try (var ignored = timer.time()) {
+                step.run();
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import lombok.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shares the workers between depositors in proportion to their weights, measured in payload bytes (start-time fair queueing). A depositor with weight 2 gets twice as many bytes processed as a
+ * depositor with weight 1 while both have deposits waiting. Depositors without a configured weight get weight 1.
+ */
+public class FairShareSchedulingPolicy implements SchedulingPolicy {
+    private static final String UNKNOWN_DEPOSITOR = "";
+
+    private final Map<String, Double> weights;
+    private final Map<String, Double> finishTags = new HashMap<>();
+    private double virtualTime = 0;
+
+    public FairShareSchedulingPolicy(@NonNull Map<String, Double> weights) {
+        this.weights = Map.copyOf(weights);
+    }
+
+    @Override
+    public synchronized double getPriority(Schedulable task) {
+        var depositor = task == null ? UNKNOWN_DEPOSITOR : Objects.requireNonNullElse(task.getDepositorId(), UNKNOWN_DEPOSITOR);
+        var weight = weights.getOrDefault(depositor, 1.0);
+        // Count every deposit as at least one byte, so that depositors of empty deposits also take turns
+        var cost = Math.max(task == null ? 0 : task.getPayloadSize(), 1) / weight;
+
+        var startTag = Math.max(virtualTime, finishTags.getOrDefault(depositor, 0.0));
+        finishTags.put(depositor, startTag + cost);
+        return startTag;
+    }
+
+    @Override
+    public synchronized void onStart(Schedulable task, double priority) {
+        virtualTime = Math.max(virtualTime, priority);
+    }
+}
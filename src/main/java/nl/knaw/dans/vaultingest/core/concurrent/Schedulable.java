@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+/**
+ * A task that provides the information a {@link SchedulingPolicy} uses to decide which ready task runs first.
+ */
+public interface Schedulable {
+
+    /**
+     * @return the estimated size of the payload to process, in bytes, or 0 if unknown
+     */
+    long getPayloadSize();
+
+    /**
+     * @return the depositor the task is done for, or null if unknown
+     */
+    String getDepositorId();
+}
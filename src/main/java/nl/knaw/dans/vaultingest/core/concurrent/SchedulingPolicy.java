@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+/**
+ * Decides the order in which ready tasks are started. Each task is assigned a priority once, when it becomes ready to run; the task with the lowest priority is started first, ties being broken
+ * in the order in which the tasks became ready. Because priorities do not change afterwards, policies that must prevent starvation do so by taking the time at which the task became ready into
+ * account.
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * Called once for each task, when it becomes ready to run.
+     *
+     * @param task the task, or null if the task provides no scheduling information
+     * @return the priority; lower runs first
+     */
+    double getPriority(Schedulable task);
+
+    /**
+     * Called when a task is started.
+     *
+     * @param task     the task, or null if the task provides no scheduling information
+     * @param priority the priority that was assigned to the task
+     */
+    default void onStart(Schedulable task, double priority) {
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Starts tasks with a small payload before tasks with a large payload. To prevent large deposits from starving, a task is treated as if it became ready later in proportion to its payload size:
+ * a task that has waited one minute competes as if its payload were <code>agingBytesPerMinute</code> smaller.
+ */
+public class ShortestPayloadFirstSchedulingPolicy implements SchedulingPolicy {
+    private final double agingBytesPerMinute;
+    private final LongSupplier nanoClock;
+
+    public ShortestPayloadFirstSchedulingPolicy(long agingBytesPerMinute) {
+        this(agingBytesPerMinute, System::nanoTime);
+    }
+
+    ShortestPayloadFirstSchedulingPolicy(long agingBytesPerMinute, LongSupplier nanoClock) {
+        if (agingBytesPerMinute <= 0) {
+            throw new IllegalArgumentException("agingBytesPerMinute must be positive");
+        }
+        this.agingBytesPerMinute = agingBytesPerMinute;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public double getPriority(Schedulable task) {
+        var readyMinutes = nanoClock.getAsLong() / 60e9;
+        var payloadSize = task == null ? 0 : task.getPayloadSize();
+        return readyMinutes + payloadSize / agingBytesPerMinute;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs a group of tasks on a shared executor as if the group had an executor of its own, for code that shuts down the executor it is given when it is done, such as the ParallelScatterZipCreator.
+ * Shutting down the group only concerns the tasks of the group: {@link #shutdownNow()} drops the tasks that have not started yet and interrupts the ones that are running, and
+ * {@link #awaitTermination(long, TimeUnit)} waits for the tasks of the group only. The shared executor keeps running.
+ */
+public class TaskGroupExecutorService extends AbstractExecutorService {
+    private final Executor delegate;
+    // A java.util.concurrent lock rather than a monitor, because a virtual thread may wait for termination
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskDone = lock.newCondition();
+    private final List<Runnable> waiting = new ArrayList<>();
+    private final Set<Thread> running = new HashSet<>();
+    private boolean shutdown;
+
+    public TaskGroupExecutorService(@NonNull Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Task group is shut down");
+            }
+            waiting.add(command);
+        }
+        finally {
+            lock.unlock();
+        }
+        try {
+            delegate.execute(() -> run(command));
+        }
+        catch (RejectedExecutionException e) {
+            lock.lock();
+            try {
+                waiting.remove(command);
+                taskDone.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void run(Runnable command) {
+        lock.lock();
+        try {
+            // Dropped by shutdownNow
+            if (!waiting.remove(command)) {
+                return;
+            }
+            running.add(Thread.currentThread());
+        }
+        finally {
+            lock.unlock();
+        }
+        try {
+            command.run();
+        }
+        finally {
+            lock.lock();
+            try {
+                running.remove(Thread.currentThread());
+                taskDone.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+            // An interrupt from shutdownNow is meant for this task, not for the next task of the shared thread
+            Thread.interrupted();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        lock.lock();
+        try {
+            shutdown = true;
+            var dropped = new ArrayList<>(waiting);
+            waiting.clear();
+            running.forEach(Thread::interrupt);
+            taskDone.signalAll();
+            return dropped;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && waiting.isEmpty() && running.isEmpty();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        var remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!(shutdown && waiting.isEmpty() && running.isEmpty())) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = taskDone.awaitNanos(remaining);
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
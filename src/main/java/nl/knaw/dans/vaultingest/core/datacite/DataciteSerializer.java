@@ -18,22 +18,45 @@ package nl.knaw.dans.vaultingest.core.datacite;
 import org.datacite.schema.kernel_4.Resource;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 public class DataciteSerializer {
+    // Creating a JAXBContext is expensive and mostly runs under class loading locks; a context is thread-safe, so it is created only once. Marshallers are not thread-safe.
+    private static final JAXBContext context = createContext();
+
     public String serialize(Resource resource) {
+        var output = new ByteArrayOutputStream();
+        serialize(resource, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the resource as UTF-8 encoded XML to the given output, which is not closed.
+     *
+     * @param resource the resource
+     * @param output   the output
+     */
+    public void serialize(Resource resource, OutputStream output) {
         try {
-            var context = JAXBContext.newInstance(Resource.class);
             var marshaller = context.createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-
-            var writer = new StringWriter();
-            marshaller.marshal(resource, writer);
-            return writer.toString();
+            marshaller.marshal(resource, output);
         }
         catch (Exception e) {
-            throw new RuntimeException(String.format("Error converting resource to XML string: %s", e.getMessage()), e);
+            throw new RuntimeException(String.format("Error converting resource to XML: %s", e.getMessage()), e);
+        }
+    }
+
+    private static JAXBContext createContext() {
+        try {
+            return JAXBContext.newInstance(Resource.class);
+        }
+        catch (JAXBException e) {
+            throw new IllegalStateException("Cannot create JAXB context for DataCite resources", e);
         }
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.ddm;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * An element of the DDM, with its attributes and child elements. Names are given with the prefixes of {@link XmlNamespaces#PREFIXES}, e.g. "dcterms:title", or without prefix for names in no
+ * namespace. A name is resolved to its namespace only the first time it is asked for.
+ */
+@Value
+public class DdmElement {
+    // The names asked for so far, resolved to {namespace}localName; there are only as many as there are names in the mappings
+    private static final Map<String, String> resolvedNames = new ConcurrentHashMap<>();
+
+    String namespace;
+    String localName;
+    // Like the DOM text content: the text of all descendants
+    String text;
+    // The text nodes that are direct children of the element, as selected by text() in XPath
+    List<String> textNodes;
+    // Keyed by {namespace}localName, or localName for attributes in no namespace
+    Map<String, String> attributes;
+    List<DdmElement> children;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    String key;
+
+    DdmElement(String namespace, String localName, String text, List<String> textNodes, Map<String, String> attributes, List<DdmElement> children) {
+        this.namespace = namespace;
+        this.localName = localName;
+        this.text = text;
+        this.textNodes = textNodes;
+        this.attributes = attributes;
+        this.children = children;
+        this.key = key(namespace, localName);
+    }
+
+    public boolean is(String name) {
+        return key.equals(resolve(name));
+    }
+
+    public String getAttribute(String name) {
+        return attributes.get(resolve(name));
+    }
+
+    public boolean hasAttribute(String name) {
+        return attributes.containsKey(resolve(name));
+    }
+
+    /**
+     * Returns the child elements with any of the given names, in document order.
+     *
+     * @param names the names
+     * @return the child elements
+     */
+    public Stream<DdmElement> getChildren(String... names) {
+        var keys = resolve(names);
+        return children.stream().filter(child -> child.isAnyOf(keys));
+    }
+
+    boolean isAnyOf(String[] keys) {
+        for (var other : keys) {
+            if (key.equals(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String key(String namespace, String localName) {
+        return namespace == null ? localName : "{" + namespace + "}" + localName;
+    }
+
+    static String[] resolve(String... names) {
+        var keys = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = resolve(names[i]);
+        }
+        return keys;
+    }
+
+    private static String resolve(String name) {
+        return resolvedNames.computeIfAbsent(name, DdmElement::doResolve);
+    }
+
+    private static String doResolve(String name) {
+        var colon = name.indexOf(':');
+        if (colon < 0) {
+            return name;
+        }
+        var namespace = XmlNamespaces.PREFIXES.get(name.substring(0, colon));
+        if (namespace == null) {
+            throw new IllegalArgumentException("Unknown prefix in " + name);
+        }
+        return key(namespace, name.substring(colon + 1));
+    }
+}
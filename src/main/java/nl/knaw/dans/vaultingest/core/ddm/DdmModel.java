@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.ddm;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * The DDM (dataset.xml) of a deposit, read in a single traversal of the document into immutable {@link DdmElement}s, so that the mappings do not each have to query the DOM with XPath. The
+ * elements of ddm:profile and ddm:dcmiMetadata are kept in document order. Values derived from the DDM that are needed more than once during a conversion can be kept with the model as a
+ * {@link Fact}. The model is read once per deposit and kept with it.
+ */
+public final class DdmModel implements XmlNamespaces {
+    /**
+     * A value derived from the DDM. Facts are told apart by identity, so a fact should be kept in a constant.
+     *
+     * @param <T> the type of the value
+     */
+    @FunctionalInterface
+    public interface Fact<T> {
+        T derive(DdmModel model);
+    }
+
+    private final List<DdmElement> profile;
+    private final List<DdmElement> dcmiMetadata;
+    // The values of all xml:lang attributes in the document, in document order
+    @Getter
+    private final List<String> xmlLangs;
+    // The prefixes declared on the root element for the identifier-type and dcterms namespaces, as used in xsi:type values; null if not declared
+    @Getter
+    private final String idTypePrefix;
+    @Getter
+    private final String dctermsPrefix;
+    // Derived values, wrapped in Optional because they may be null
+    private final Map<Fact<?>, Optional<?>> facts = new ConcurrentHashMap<>();
+
+    private DdmModel(List<DdmElement> profile, List<DdmElement> dcmiMetadata, List<String> xmlLangs, String idTypePrefix, String dctermsPrefix) {
+        this.profile = profile;
+        this.dcmiMetadata = dcmiMetadata;
+        this.xmlLangs = xmlLangs;
+        this.idTypePrefix = idTypePrefix;
+        this.dctermsPrefix = dctermsPrefix;
+    }
+
+    /**
+     * Returns the children of ddm:profile with any of the given names, in document order.
+     *
+     * @param names the names, e.g. "dc:title"
+     * @return the elements
+     */
+    public Stream<DdmElement> getProfile(String... names) {
+        var keys = DdmElement.resolve(names);
+        return profile.stream().filter(element -> element.isAnyOf(keys));
+    }
+
+    /**
+     * Returns the children of ddm:dcmiMetadata with any of the given names, in document order.
+     *
+     * @param names the names, e.g. "dcterms:identifier"
+     * @return the elements
+     */
+    public Stream<DdmElement> getDcmiMetadata(String... names) {
+        var keys = DdmElement.resolve(names);
+        return dcmiMetadata.stream().filter(element -> element.isAnyOf(keys));
+    }
+
+    /**
+     * Returns the value of the fact for this DDM. It is derived when first asked for; a fact that fails to derive is derived again the next time.
+     *
+     * @param fact the fact
+     * @param <T>  the type of the value
+     * @return the value, or null if the fact derived null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Fact<T> fact) {
+        var value = facts.get(fact);
+        if (value == null) {
+            // Not computeIfAbsent, because a fact may be derived from other facts
+            value = Optional.ofNullable(fact.derive(this));
+            var existing = facts.putIfAbsent(fact, value);
+            if (existing != null) {
+                value = existing;
+            }
+        }
+        return (T) value.orElse(null);
+    }
+
+    /**
+     * Reads the model of the given DDM document. The model does not refer to the document.
+     *
+     * @param document the DDM
+     * @return the model
+     */
+    public static DdmModel read(Document document) {
+        var profile = new ArrayList<DdmElement>();
+        var dcmiMetadata = new ArrayList<DdmElement>();
+        var xmlLangs = new ArrayList<String>();
+        var root = document.getDocumentElement();
+
+        String idTypePrefix = null;
+        String dctermsPrefix = null;
+        if (root != null) {
+            idTypePrefix = root.lookupPrefix(NAMESPACE_ID_TYPE);
+            dctermsPrefix = root.lookupPrefix(NAMESPACE_DCTERMS);
+            var isDdm = NAMESPACE_DDM.equals(root.getNamespaceURI()) && "DDM".equals(root.getLocalName());
+            collectXmlLang(root, xmlLangs);
+            for (var child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof Element section) {
+                    collectXmlLang(section, xmlLangs);
+                    var target = !isDdm ? null : isDdmElement(section, "profile") ? profile : isDdmElement(section, "dcmiMetadata") ? dcmiMetadata : null;
+                    for (var grandChild = section.getFirstChild(); grandChild != null; grandChild = grandChild.getNextSibling()) {
+                        if (grandChild instanceof Element element) {
+                            var ddmElement = toDdmElement(element, xmlLangs);
+                            if (target != null) {
+                                target.add(ddmElement);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new DdmModel(List.copyOf(profile), List.copyOf(dcmiMetadata), List.copyOf(xmlLangs), idTypePrefix, dctermsPrefix);
+    }
+
+    private static boolean isDdmElement(Element element, String localName) {
+        return NAMESPACE_DDM.equals(element.getNamespaceURI()) && localName.equals(element.getLocalName());
+    }
+
+    private static void collectXmlLang(Element element, List<String> xmlLangs) {
+        var lang = element.getAttributeNodeNS(NAMESPACE_XML, "lang");
+        if (lang != null) {
+            xmlLangs.add(lang.getValue());
+        }
+    }
+
+    private static DdmElement toDdmElement(Element element, List<String> xmlLangs) {
+        collectXmlLang(element, xmlLangs);
+
+        var attributes = new HashMap<String, String>();
+        var attributeNodes = element.getAttributes();
+        for (int i = 0; i < attributeNodes.getLength(); i++) {
+            var attribute = (Attr) attributeNodes.item(i);
+            var localName = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+            attributes.put(DdmElement.key(attribute.getNamespaceURI(), localName), attribute.getValue());
+        }
+
+        var text = new StringBuilder();
+        var textNodes = new ArrayList<String>();
+        var children = new ArrayList<DdmElement>();
+        StringBuilder textNode = null;
+        for (var child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.TEXT_NODE, Node.CDATA_SECTION_NODE -> {
+                    // Adjacent text and CDATA nodes form one text node in the XPath data model
+                    if (textNode == null) {
+                        textNode = new StringBuilder();
+                    }
+                    textNode.append(child.getNodeValue());
+                    text.append(child.getNodeValue());
+                }
+                case Node.ELEMENT_NODE -> {
+                    textNode = addTextNode(textNode, textNodes);
+                    var ddmElement = toDdmElement((Element) child, xmlLangs);
+                    children.add(ddmElement);
+                    text.append(ddmElement.getText());
+                }
+                default -> textNode = addTextNode(textNode, textNodes);
+            }
+        }
+        addTextNode(textNode, textNodes);
+
+        return new DdmElement(element.getNamespaceURI(), element.getLocalName(), text.toString(), List.copyOf(textNodes), Collections.unmodifiableMap(attributes), List.copyOf(children));
+    }
+
+    private static StringBuilder addTextNode(StringBuilder textNode, List<String> textNodes) {
+        if (textNode != null) {
+            textNodes.add(textNode.toString());
+        }
+        return null;
+    }
+}
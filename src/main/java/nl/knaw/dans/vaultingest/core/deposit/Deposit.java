@@ -19,9 +19,8 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
-import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
-import org.w3c.dom.Document;
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 
 import java.nio.file.Path;
 import java.time.OffsetDateTime;
@@ -32,6 +31,8 @@ import java.util.Optional;
 @ToString
 @Getter
 public class Deposit {
+    private static final DdmModel.Fact<String> DOI = Deposit::deriveDoi;
+
     public enum State {
         PUBLISHED,
         ACCEPTED,
@@ -45,8 +46,7 @@ public class Deposit {
     }
 
     private final String id;
-    private final Document ddm;
-    private final Document filesXml;
+    private final DdmModel ddm;
     private final List<PayloadFile> payloadFiles;
     private final Path path;
     private final DepositProperties properties;
@@ -107,13 +107,16 @@ public class Deposit {
     }
 
     public String getDoi() {
-        var prefix = ddm.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE);
-        var expr = new String[] {
-            String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type='%s:DOI']", prefix),
-            String.format("/ddm:DDM/ddm:dcmiMetadata/dc:identifier[@xsi:type='%s:DOI']", prefix)
-        };
+        return ddm.get(DOI);
+    }
+
+    private static String deriveDoi(DdmModel model) {
+        var doiType = String.format("%s:DOI", model.getIdTypePrefix());
 
-        var dois = XPathEvaluator.strings(ddm, expr).toList();
+        var dois = model.getDcmiMetadata("dcterms:identifier", "dc:identifier")
+            .filter(node -> doiType.equals(node.getAttribute("xsi:type")))
+            .map(DdmElement::getText)
+            .toList();
         String doi = null;
         if (dois.size() > 1) {
             throw new IllegalStateException("There should be at most one DOI in the DDM, but found " + dois.size() + " DOIs");
@@ -31,7 +31,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -55,6 +57,22 @@ public class DepositBag {
             .collect(Collectors.toSet());
     }
 
+    /**
+     * Returns the checksums of the payload files, as listed in the payload manifests.
+     *
+     * @return per file, relative to the bag directory, the checksum for each payload manifest algorithm
+     */
+    public Map<Path, Map<SupportedAlgorithm, String>> getPayloadManifestChecksums() {
+        var checksums = new HashMap<Path, Map<SupportedAlgorithm, String>>();
+        for (var manifest : bag.getPayLoadManifests()) {
+            for (var entry : manifest.getFileToChecksumMap().entrySet()) {
+                checksums.computeIfAbsent(bag.getRootDir().relativize(entry.getKey()), k -> new HashMap<>())
+                    .put(manifest.getAlgorithm(), entry.getValue());
+            }
+        }
+        return checksums;
+    }
+
     public InputStream inputStreamForBagFile(Path path) {
         try {
             var target = bag.getRootDir().resolve(path);
@@ -88,12 +106,41 @@ public class DepositBag {
     }
 
     public void writeTagManifests() throws IOException {
-        ManifestWriter.writeTagManifests(bag.getTagManifests(), bag.getRootDir(), bag.getRootDir(), StandardCharsets.UTF_8);
+        writeTagManifests(bag.getRootDir());
+    }
+
+    /**
+     * Writes the tag manifests, as currently in memory, to the given directory instead of the bag.
+     *
+     * @param outputDir the directory
+     * @throws IOException if the manifests could not be written
+     */
+    public void writeTagManifests(Path outputDir) throws IOException {
+        ManifestWriter.writeTagManifests(bag.getTagManifests(), outputDir, bag.getRootDir(), StandardCharsets.UTF_8);
     }
 
-    public void putBagInfoValue(String key, String value) throws IOException {
+    /**
+     * Adds a value to bag-info.txt in memory; see {@link #writeBagInfo()}.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void putBagInfoValue(String key, String value) {
         bag.getMetadata().add(key, value);
-        MetadataWriter.writeBagMetadata(bag.getMetadata(), Version.LATEST_BAGIT_VERSION(), bag.getRootDir(), StandardCharsets.UTF_8);
+    }
+
+    public void writeBagInfo() throws IOException {
+        writeBagInfo(bag.getRootDir());
+    }
+
+    /**
+     * Writes bag-info.txt, as currently in memory, to the given directory instead of the bag.
+     *
+     * @param outputDir the directory
+     * @throws IOException if bag-info.txt could not be written
+     */
+    public void writeBagInfo(Path outputDir) throws IOException {
+        MetadataWriter.writeBagMetadata(bag.getMetadata(), Version.LATEST_BAGIT_VERSION(), outputDir, StandardCharsets.UTF_8);
     }
 
     public List<String> getBagInfoValues(String key) {
@@ -15,12 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.deposit;
 
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import nl.knaw.dans.bagit.domain.Bag;
-import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
 import nl.knaw.dans.bagit.reader.BagReader;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.bagit.reader.MetadataReader;
+import nl.knaw.dans.vaultingest.config.BagBackupConfig;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
+import nl.knaw.dans.vaultingest.core.deposit.ProgressJournal.Step;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.apache.commons.configuration2.FileBasedConfiguration;
 import org.apache.commons.configuration2.PropertiesConfiguration;
@@ -34,39 +35,229 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
-@RequiredArgsConstructor
 public class DepositManager {
     private final XmlReader xmlReader;
+    private final FilesXmlReader filesXmlReader = new FilesXmlReader();
+    private final BagBackupConfig.Mode backupMode;
+
+    // Cleared when the file system turns out not to support hard links
+    private volatile boolean hardLinksSupported = true;
+
+    public DepositManager(XmlReader xmlReader) {
+        this(xmlReader, BagBackupConfig.Mode.HARD_LINK);
+    }
+
+    public DepositManager(@NonNull XmlReader xmlReader, @NonNull BagBackupConfig.Mode backupMode) {
+        this.xmlReader = xmlReader;
+        this.backupMode = backupMode;
+    }
+
+    private static final String ORIGINAL_BAG_PREFIX = "org-";
 
     public Deposit loadDeposit(Path path, String dataSupplier) {
-        var depositId = path.getFileName().toString();
+        backUpOriginalBag(path);
+        return readDeposit(path, dataSupplier);
+    }
 
+    /**
+     * Backs up the bag of the deposit to a sibling directory, so that it can be restored after the bag has been enriched. Unless the backup mode is COPY, the payload files are hard-linked
+     * rather than copied, as enriching the bag never changes them; the tag files are always copied, because they are rewritten in place.
+     *
+     * @param path the deposit directory
+     */
+    public void backUpOriginalBag(Path path) {
         try {
             var bagDir = getBagDir(path);
-
-            var originalBagDir = bagDir.getParent().resolve("org-" + bagDir.getFileName());
+            var originalBagDir = getOriginalBagDir(bagDir);
             if (Files.exists(originalBagDir)) {
                 throw new IllegalStateException("Original bag already exists: " + originalBagDir);
             }
-            FileUtils.copyDirectory(bagDir.toFile(), originalBagDir.toFile());
+            if (backupMode == BagBackupConfig.Mode.COPY || !hardLinksSupported) {
+                FileUtils.copyDirectory(bagDir.toFile(), originalBagDir.toFile());
+            }
+            else {
+                linkPayloadAndCopyTagFiles(bagDir, originalBagDir);
+            }
+        }
+        catch (IOException e) {
+            log.error("[{}] Error backing up original bag: path={}", path.getFileName(), path, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void linkPayloadAndCopyTagFiles(Path bagDir, Path originalBagDir) throws IOException {
+        var payloadDir = bagDir.resolve("data");
+        List<Path> paths;
+        try (var walk = Files.walk(bagDir)) {
+            paths = walk.toList();
+        }
+
+        for (var source : paths) {
+            var target = originalBagDir.resolve(bagDir.relativize(source));
+            if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(target);
+            }
+            else if (source.startsWith(payloadDir) && hardLinksSupported) {
+                try {
+                    Files.createLink(target, source);
+                }
+                catch (UnsupportedOperationException e) {
+                    fallBackToCopying(bagDir, e);
+                    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                catch (FileSystemException e) {
+                    // Other errors, such as a missing or unreadable file, are about this deposit only and must not switch off hard links for the next ones
+                    if (!isHardLinkNotSupported(e)) {
+                        throw e;
+                    }
+                    fallBackToCopying(bagDir, e);
+                    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+            else {
+                Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+    }
+
+    private void fallBackToCopying(Path bagDir, Exception e) {
+        log.warn("Cannot create hard links in {} ({}); falling back to copying bags from now on", bagDir.getParent(), e.getMessage());
+        hardLinksSupported = false;
+    }
+
+    /**
+     * Tells whether creating a hard link failed because the file system cannot link the backup to the bag, rather than because of the file itself. Such failures recur for every deposit.
+     *
+     * @param e the exception thrown by {@link Files#createLink(Path, Path)}
+     * @return true if the link crosses file systems or the file system does not support hard links
+     */
+    static boolean isHardLinkNotSupported(FileSystemException e) {
+        if (e instanceof NoSuchFileException || e instanceof AccessDeniedException || e instanceof FileAlreadyExistsException || e.getReason() == null) {
+            return false;
+        }
+        var reason = e.getReason().toLowerCase(Locale.ROOT);
+        // EXDEV, EPERM and ENOTSUP on Unix, ERROR_NOT_SAME_DEVICE and ERROR_NOT_SUPPORTED on Windows
+        return reason.contains("cross-device") || reason.contains("not permitted") || reason.contains("not supported") || reason.contains("different disk drive");
+    }
+
+    /**
+     * Deletes the backup of the original bag, if present. Used when the backup may be incomplete, because copying was interrupted.
+     *
+     * @param path the deposit directory
+     * @throws IOException if the backup could not be deleted
+     */
+    public void discardOriginalBagBackup(Path path) throws IOException {
+        var originalBagDir = getOriginalBagDir(getBagDir(path));
+        if (Files.exists(originalBagDir)) {
+            FileUtils.deleteDirectory(originalBagDir.toFile());
+        }
+    }
+
+    /**
+     * Puts the original bag back in place, if the journal records that it was backed up, and marks the backup and the enrichment of the bag as undone in the journal. This also completes a restore
+     * that was interrupted after the enriched bag had been deleted; the bag directory recorded in the journal tells the backup apart from a bag whose name happens to start with the backup prefix.
+     * A backup that the journal does not record as completed was interrupted before the bag was changed, so it is deleted.
+     *
+     * @param path    the deposit directory
+     * @param journal the progress journal of the deposit
+     * @throws IOException if the original bag could not be restored
+     */
+    public void restoreOriginalBag(Path path, ProgressJournal journal) throws IOException {
+        var bagDirName = journal.get(ProgressJournal.BAG_DIR);
+        if (!journal.isDone(Step.BACKED_UP) || bagDirName == null) {
+            if (hasOriginalBagBackup(path)) {
+                log.debug("[{}] Deleting incomplete backup of original bag", path.getFileName());
+                discardOriginalBagBackup(path);
+            }
+            return;
+        }
+
+        var bagDir = path.resolve(bagDirName);
+        var originalBagDir = getOriginalBagDir(bagDir);
+        if (Files.exists(originalBagDir)) {
+            log.debug("[{}] Moving backup of original bag back to {}", path.getFileName(), bagDir);
+            FileUtils.deleteDirectory(bagDir.toFile());
+            Files.move(originalBagDir, bagDir);
+        }
+        journal.undo(Step.BACKED_UP, Step.METADATA_WRITTEN);
+    }
+
+    private boolean hasOriginalBagBackup(Path path) throws IOException {
+        try (var list = Files.list(path)) {
+            return list.anyMatch(DepositManager::isOriginalBagBackup);
+        }
+    }
+
+    /**
+     * Undoes a partial enrichment of the bag, by restoring the tag files (the files in the bag's base directory and in metadata/) from the backup of the original bag. The payload is not touched
+     * by enrichment, so it is not restored.
+     *
+     * @param path the deposit directory
+     * @throws IOException if the tag files could not be restored
+     */
+    public void restoreTagFiles(Path path) throws IOException {
+        var bagDir = getBagDir(path);
+        var originalBagDir = getOriginalBagDir(bagDir);
+        for (var dir : List.of(Path.of(""), Path.of("metadata"))) {
+            var original = originalBagDir.resolve(dir);
+            var current = bagDir.resolve(dir);
+            if (!Files.isDirectory(original) || !Files.isDirectory(current)) {
+                continue;
+            }
+            try (var list = Files.list(current)) {
+                for (var file : list.filter(Files::isRegularFile).toList()) {
+                    if (!Files.exists(original.resolve(file.getFileName()))) {
+                        Files.delete(file);
+                    }
+                }
+            }
+            try (var list = Files.list(original)) {
+                for (var file : list.filter(Files::isRegularFile).toList()) {
+                    Files.copy(file, current.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the deposit. The backup of the original bag is expected to have been made already.
+     *
+     * @param path         the deposit directory
+     * @param dataSupplier the data supplier
+     * @return the deposit
+     */
+    public Deposit readDeposit(Path path, String dataSupplier) {
+        var depositId = path.getFileName().toString();
+
+        try {
+            var bagDir = getBagDir(path);
+            var originalBagDir = getOriginalBagDir(bagDir);
 
             log.debug("[{}] Reading bag from path {}", depositId, bagDir);
-            var bag = new BagReader().read(bagDir);
+            var bag = new DepositBag(new BagReader().read(bagDir));
 
             log.debug("[{}] Reading metadata/dataset.xml", depositId);
-            var ddm = readXmlFile(bagDir.resolve(Path.of("metadata", "dataset.xml")));
+            var ddm = DdmModel.read(readXmlFile(bagDir.resolve(Path.of("metadata", "dataset.xml"))));
 
             log.debug("[{}] Reading metadata/files.xml", depositId);
-            var filesXml = readXmlFile(bagDir.resolve(Path.of("metadata", "files.xml")));
+            var filesXml = filesXmlReader.read(bagDir.resolve(Path.of("metadata", "files.xml")));
 
             log.debug("[{}] Generating original file paths if file exists", depositId);
             var originalFilePaths = getOriginalFilepaths(bagDir);
@@ -81,9 +272,8 @@ public class DepositManager {
                 .id(path.getFileName().toString())
                 .path(path)
                 .ddm(ddm)
-                .bag(new DepositBag(bag))
+                .bag(bag)
                 .originalBagDir(originalBagDir)
-                .filesXml(filesXml)
                 .payloadFiles(payloadFiles)
                 .properties(depositProperties)
                 .dataSupplier(dataSupplier);
@@ -97,6 +287,103 @@ public class DepositManager {
         }
     }
 
+    /**
+     * Reads the facts needed to schedule the deposit, without loading it. The dataset key identifies the dataset the deposit belongs to: for an update this is the sword token of the dataset
+     * being updated (from Is-Version-Of), for a first version it is the deposit's own sword token. If neither can be read, the deposit id is used, so that the deposit is not ordered with respect
+     * to any other deposit. The payload size is taken from the Payload-Oxum in bag-info.txt or, if absent, from the sizes of the files in a payload manifest.
+     *
+     * @param path the deposit directory
+     * @return the summary
+     */
+    public DepositSummary readSummary(Path path) {
+        var depositId = path.getFileName().toString();
+        String datasetKey = depositId;
+        String depositorId = null;
+        long payloadSize = 0;
+
+        try {
+            var bagDir = getBagDir(path);
+            var bagInfo = MetadataReader.readBagMetadata(bagDir, StandardCharsets.UTF_8);
+            var properties = getDepositProperties(path);
+            depositorId = properties.getDepositorId();
+
+            var isVersionOf = getFirstBagInfoValue(bagInfo, "Is-Version-Of");
+            var swordToken = properties.getSwordToken();
+            if (isVersionOf != null) {
+                datasetKey = toSwordToken(isVersionOf);
+            }
+            else if (StringUtils.isNotBlank(swordToken)) {
+                datasetKey = swordToken;
+            }
+
+            var payloadOxum = getFirstBagInfoValue(bagInfo, "Payload-Oxum");
+            payloadSize = payloadOxum != null ? parsePayloadOxum(payloadOxum) : sumPayloadManifestFileSizes(bagDir);
+        }
+        catch (Exception e) {
+            log.warn("[{}] Could not read deposit summary, deposit will not be ordered with respect to other deposits: {}", depositId, e.getMessage());
+        }
+
+        return new DepositSummary(datasetKey, depositorId, payloadSize);
+    }
+
+    private String getFirstBagInfoValue(List<? extends Map.Entry<String, String>> bagInfo, String key) {
+        return bagInfo.stream()
+            .filter(entry -> key.equalsIgnoreCase(entry.getKey()))
+            .map(entry -> entry.getValue().trim())
+            .findFirst()
+            .orElse(null);
+    }
+
+    private long parsePayloadOxum(String payloadOxum) {
+        // <octetstream count>.<stream count>
+        return Long.parseLong(StringUtils.substringBefore(payloadOxum, "."));
+    }
+
+    private long sumPayloadManifestFileSizes(Path bagDir) throws IOException {
+        Path manifest;
+        try (var list = Files.list(bagDir)) {
+            manifest = list.filter(p -> p.getFileName().toString().matches("manifest-.+\\.txt"))
+                .findFirst()
+                .orElse(null);
+        }
+        if (manifest == null) {
+            return 0;
+        }
+
+        long total = 0;
+        try (var lines = Files.lines(manifest, StandardCharsets.UTF_8)) {
+            for (var line : (Iterable<String>) lines::iterator) {
+                var parts = line.split("\\s+", 2);
+                if (parts.length == 2) {
+                    var file = bagDir.resolve(parts[1]);
+                    if (Files.isRegularFile(file)) {
+                        total += Files.size(file);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Converts the Is-Version-Of value of an update deposit to the sword token of the dataset it updates.
+     *
+     * @param isVersionOf the Is-Version-Of value, either a sword token or a urn:uuid
+     * @return the sword token
+     * @throws IllegalArgumentException if the value is neither a sword token nor a urn:uuid
+     */
+    public static String toSwordToken(@NonNull String isVersionOf) {
+        if (isVersionOf.startsWith("sword:")) {
+            return isVersionOf;
+        }
+        else if (isVersionOf.startsWith("urn:uuid:")) {
+            return "sword:" + isVersionOf.substring("urn:uuid:".length());
+        }
+        else {
+            throw new IllegalArgumentException("Is-Version-Of value must start with 'sword:' or 'urn:uuid:'");
+        }
+    }
+
     Deposit customizeDeposit(Deposit deposit, DepositProperties depositProperties) {
         return deposit;
     }
@@ -130,11 +417,27 @@ public class DepositManager {
     private Path getBagDir(Path path) throws IOException {
         try (var list = Files.list(path)) {
             return list.filter(Files::isDirectory)
+                .filter(dir -> !isOriginalBagBackup(dir))
                 .findFirst()
                 .orElseThrow();
         }
     }
 
+    public static Path getOriginalBagDir(Path bagDir) {
+        return bagDir.resolveSibling(ORIGINAL_BAG_PREFIX + bagDir.getFileName());
+    }
+
+    /**
+     * Whether a directory in a deposit is the backup of the original bag, rather than the bag itself.
+     *
+     * @param dir a directory in a deposit directory
+     * @return true if the directory is the backup of a bag that is also present
+     */
+    public static boolean isOriginalBagBackup(Path dir) {
+        var name = dir.getFileName().toString();
+        return name.startsWith(ORIGINAL_BAG_PREFIX) && Files.isDirectory(dir.resolveSibling(name.substring(ORIGINAL_BAG_PREFIX.length())));
+    }
+
     private Document readXmlFile(Path path) throws IOException, SAXException, ParserConfigurationException {
         return xmlReader.readXmlFile(path);
     }
@@ -169,38 +472,21 @@ public class DepositManager {
         return result;
     }
 
-    private Map<Path, Map<SupportedAlgorithm, String>> getPrecomputedChecksums(Path bagDir, Bag bag) {
-        var manifests = new HashMap<Path, Map<SupportedAlgorithm, String>>();
-
-        for (var manifest : bag.getPayLoadManifests()) {
-            var alg = manifest.getAlgorithm();
-
-            for (var entry : manifest.getFileToChecksumMap().entrySet()) {
-                var relativePath = bagDir.relativize(entry.getKey());
-                var checksum = entry.getValue();
-
-                manifests.computeIfAbsent(relativePath, k -> new HashMap<>())
-                    .put(alg, checksum);
-            }
-        }
-
-        return manifests;
-    }
-
-    private List<PayloadFile> getPayloadFiles(Path bagDir, Bag bag, Document ddm, Document filesXml, OriginalFilepaths originalFilepaths) {
-        var manifests = getPrecomputedChecksums(bagDir, bag);
+    private List<PayloadFile> getPayloadFiles(Path bagDir, DepositBag bag, DdmModel ddm, FilesXmlTable filesXml, OriginalFilepaths originalFilepaths) {
+        var manifests = bag.getPayloadManifestChecksums();
 
-        return XPathEvaluator.nodes(filesXml, "/files:files/files:file")
-            .map(node -> {
-                var filePath = node.getAttributes().getNamedItem("filepath").getTextContent();
+        return IntStream.range(0, filesXml.size())
+            .mapToObj(index -> {
+                var filePath = filesXml.getFilepath(index);
                 var physicalPath = bagDir.resolve(originalFilepaths.getPhysicalPath(Path.of(filePath)));
                 var checksums = manifests.get(bagDir.relativize(physicalPath));
 
                 return PayloadFile.builder()
                     .id("urn:uuid:" + UUID.randomUUID())
                     .physicalPath(physicalPath)
-                    .filesXmlNode(node)
-                    .ddmNode(ddm)
+                    .filesXml(filesXml)
+                    .filesXmlIndex(index)
+                    .ddm(ddm)
                     .checksums(checksums)
                     .build();
             })
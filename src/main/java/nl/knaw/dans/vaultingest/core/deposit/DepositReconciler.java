@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import io.dropwizard.lifecycle.Managed;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultingest.core.deposit.ProgressJournal.Step;
+import nl.knaw.dans.vaultingest.core.inbox.DepositLeases;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Cleans up after deposits whose processing was interrupted by a crash, before the inbox is started. Deposits in the inbox and temporary BagPack files are handled in parallel:
+ *
+ * <ul>
+ *     <li>temporary BagPack zips (<code>*.zip.tmp</code>) in the bagPackOutputDir are deleted; the deposits they belonged to will zip again;</li>
+ *     <li>the temporary files of BagPack writers in the work directory, such as the compressed files of the zip threads (<code>*.scatter</code>), are deleted;</li>
+ *     <li>a backup of the original bag that was still being copied is deleted; the deposit will copy it again;</li>
+ *     <li>a backup of the original bag that was being moved back in place is moved back, also if the enriched bag was only partly deleted. Once the BagPack has been created, the enriched
+ *     bag is no longer needed. Which directory is the backup is decided from the journal, not from the directory name, as a bag may itself have a name that looks like a backup.</li>
+ * </ul>
+ *
+ * <p>
+ * Everything else is resumed by the deposit processing itself, using the {@link ProgressJournal}. A backup of the original bag in a deposit without a journal was left by a version that did not
+ * keep a journal; it is left alone, because it cannot be told whether it is complete.
+ * </p>
+ *
+ * <p>
+ * If the inbox is shared with other instances, deposits of a dataset leased by another instance are skipped, and only temporary BagPacks that have not been written to for the lease duration are deleted.
+ * The work directory is not shared, so everything in it is left over from this instance.
+ * </p>
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DepositReconciler implements Managed {
+    private static final String TEMP_ZIP_SUFFIX = ".zip.tmp";
+
+    @NonNull
+    private final Path inbox;
+
+    @NonNull
+    private final Path bagPackOutputDir;
+
+    @NonNull
+    private final Path workDir;
+
+    @NonNull
+    private final DepositManager depositManager;
+
+    // Null if the inbox is not shared with other instances
+    private final DepositLeases leases;
+
+    @Override
+    public void start() throws IOException {
+        reconcile();
+    }
+
+    public void reconcile() throws IOException {
+        List<Path> tempZips;
+        try (var list = Files.list(bagPackOutputDir)) {
+            tempZips = list.filter(p -> p.getFileName().toString().endsWith(TEMP_ZIP_SUFFIX)).toList();
+        }
+        tempZips.parallelStream().forEach(this::deleteTempZip);
+        var tempDirs = deleteWorkDirContents();
+
+        List<Path> depositDirs;
+        try (var list = Files.list(inbox)) {
+            depositDirs = list.filter(Files::isDirectory).toList();
+        }
+        depositDirs.parallelStream().forEach(this::reconcileDeposit);
+        log.info("Reconciled {} deposit(s) in inbox, {} temporary BagPack file(s) and {} BagPack writer work director(y/ies)", depositDirs.size(), tempZips.size(), tempDirs);
+    }
+
+    private int deleteWorkDirContents() throws IOException {
+        if (!Files.isDirectory(workDir)) {
+            return 0;
+        }
+        List<Path> leftOvers;
+        try (var list = Files.list(workDir)) {
+            leftOvers = list.toList();
+        }
+        for (var leftOver : leftOvers) {
+            log.info("Deleting temporary files {} left by interrupted processing", leftOver);
+            FileUtils.forceDelete(leftOver.toFile());
+        }
+        return leftOvers.size();
+    }
+
+    private void deleteTempZip(Path tempZip) {
+        try {
+            if (leases != null && Files.getLastModifiedTime(tempZip).toInstant().plus(leases.getLeaseDuration()).isAfter(Instant.now())) {
+                log.debug("Not deleting {}; it may still be written by another instance", tempZip);
+                return;
+            }
+            log.info("Deleting temporary BagPack {} left by interrupted processing", tempZip);
+            Files.deleteIfExists(tempZip);
+        }
+        catch (IOException e) {
+            log.error("Could not delete temporary BagPack {}", tempZip, e);
+        }
+    }
+
+    private void reconcileDeposit(Path depositDir) {
+        if (leases != null && leases.isLeasedElsewhere(depositManager.readSummary(depositDir).getDatasetKey())) {
+            return;
+        }
+        try {
+            if (!ProgressJournal.exists(depositDir)) {
+                if (hasOriginalBagBackup(depositDir)) {
+                    log.warn("[{}] Deposit has a backup of the original bag but no progress journal; leaving it for manual inspection", depositDir.getFileName());
+                }
+                return;
+            }
+
+            var journal = ProgressJournal.open(depositDir);
+            if (!journal.isDone(Step.BACKED_UP)) {
+                // Removes a backup that was still being copied
+                depositManager.restoreOriginalBag(depositDir, journal);
+            }
+            else if (journal.isDone(Step.ZIPPED) || isBagDeleted(depositDir, journal)) {
+                // Interrupted while putting the original bag back in place: the enriched bag may have been partly or completely deleted
+                log.info("[{}] Restoring original bag", depositDir.getFileName());
+                depositManager.restoreOriginalBag(depositDir, journal);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            log.error("[{}] Could not reconcile deposit", depositDir.getFileName(), e);
+        }
+    }
+
+    private boolean hasOriginalBagBackup(Path depositDir) throws IOException {
+        try (var list = Files.list(depositDir)) {
+            return list.anyMatch(DepositManager::isOriginalBagBackup);
+        }
+    }
+
+    private boolean isBagDeleted(Path depositDir, ProgressJournal journal) {
+        var bagDirName = journal.get(ProgressJournal.BAG_DIR);
+        return bagDirName != null && !Files.exists(depositDir.resolve(bagDirName));
+    }
+}
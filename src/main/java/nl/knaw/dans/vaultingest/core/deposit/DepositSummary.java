@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import lombok.Value;
+
+/**
+ * Facts about a deposit in the inbox that can be read cheaply, without loading the deposit. Used to schedule deposits.
+ */
+@Value
+public class DepositSummary {
+    /**
+     * Identifies the dataset the deposit belongs to; see {@link DepositManager#readSummary(java.nio.file.Path)}.
+     */
+    String datasetKey;
+    /**
+     * The depositor, or null if unknown.
+     */
+    String depositorId;
+    /**
+     * The estimated payload size in bytes, or 0 if unknown.
+     */
+    long payloadSize;
+}
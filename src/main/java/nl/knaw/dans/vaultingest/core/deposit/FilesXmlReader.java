@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads metadata/files.xml in a single streaming pass into a {@link FilesXmlTable}, without building a DOM.
+ */
+public class FilesXmlReader {
+    private final XMLInputFactory factory;
+
+    public FilesXmlReader() {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    }
+
+    public FilesXmlTable read(Path path) throws IOException, XMLStreamException {
+        var table = new FilesXmlTable();
+        try (var input = new BufferedInputStream(Files.newInputStream(path))) {
+            var reader = factory.createXMLStreamReader(input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && isElement(reader, XmlNamespaces.NAMESPACE_FILES_XML, "file")) {
+                        readFile(reader, table);
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        table.trim();
+        return table;
+    }
+
+    private void readFile(XMLStreamReader reader, FilesXmlTable table) throws XMLStreamException {
+        var filepath = reader.getAttributeValue(null, "filepath");
+        if (filepath == null) {
+            throw new XMLStreamException("file element without filepath attribute", reader.getLocation());
+        }
+        String description = null;
+        String accessibleToRights = null;
+        String visibleToRights = null;
+
+        // Only the direct children of the file element are of interest
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 1 && description == null && isElement(reader, XmlNamespaces.NAMESPACE_DCTERMS, "description")) {
+                    description = readText(reader);
+                }
+                else if (depth == 1 && accessibleToRights == null && isElement(reader, XmlNamespaces.NAMESPACE_FILES_XML, "accessibleToRights")) {
+                    accessibleToRights = readText(reader);
+                }
+                else if (depth == 1 && visibleToRights == null && isElement(reader, XmlNamespaces.NAMESPACE_FILES_XML, "visibleToRights")) {
+                    visibleToRights = readText(reader);
+                }
+                else {
+                    depth++;
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        table.add(filepath, description, accessibleToRights, visibleToRights);
+    }
+
+    // Like the DOM text content: the text of the element and all its descendants
+    private String readText(XMLStreamReader reader) throws XMLStreamException {
+        var text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> text.append(reader.getText());
+                default -> {
+                    // comments and processing instructions have no text content
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private boolean isElement(XMLStreamReader reader, String namespace, String localName) {
+        return namespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The file entries of metadata/files.xml, stored column by column. Values that occur many times, such as the access rights, are stored only once.
+ */
+public class FilesXmlTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] filepaths = new String[INITIAL_CAPACITY];
+    private String[] descriptions = new String[INITIAL_CAPACITY];
+    private String[] accessibleToRights = new String[INITIAL_CAPACITY];
+    private String[] visibleToRights = new String[INITIAL_CAPACITY];
+    private final Map<String, String> dictionary = new HashMap<>();
+    private int size;
+
+    /**
+     * Adds an entry.
+     *
+     * @param filepath           the filepath attribute
+     * @param description        the first dcterms:description, or null
+     * @param accessibleToRights the first accessibleToRights, or null
+     * @param visibleToRights    the first visibleToRights, or null
+     * @return the index of the entry
+     */
+    public int add(String filepath, String description, String accessibleToRights, String visibleToRights) {
+        if (size == filepaths.length) {
+            var capacity = size + (size >> 1);
+            filepaths = Arrays.copyOf(filepaths, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            this.accessibleToRights = Arrays.copyOf(this.accessibleToRights, capacity);
+            this.visibleToRights = Arrays.copyOf(this.visibleToRights, capacity);
+        }
+        filepaths[size] = filepath;
+        descriptions[size] = description;
+        this.accessibleToRights[size] = shared(accessibleToRights);
+        this.visibleToRights[size] = shared(visibleToRights);
+        return size++;
+    }
+
+    /**
+     * Releases the unused capacity, once all entries have been added.
+     */
+    public void trim() {
+        filepaths = Arrays.copyOf(filepaths, size);
+        descriptions = Arrays.copyOf(descriptions, size);
+        accessibleToRights = Arrays.copyOf(accessibleToRights, size);
+        visibleToRights = Arrays.copyOf(visibleToRights, size);
+        dictionary.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getFilepath(int index) {
+        return filepaths[checkIndex(index)];
+    }
+
+    public String getDescription(int index) {
+        return descriptions[checkIndex(index)];
+    }
+
+    public String getAccessibleToRights(int index) {
+        return accessibleToRights[checkIndex(index)];
+    }
+
+    public String getVisibleToRights(int index) {
+        return visibleToRights[checkIndex(index)];
+    }
+
+    private String shared(String value) {
+        return value == null ? null : dictionary.computeIfAbsent(value, v -> v);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "FilesXmlTable(size=" + size + ")";
+    }
+}
@@ -15,57 +15,44 @@
  */
 package nl.knaw.dans.vaultingest.core.deposit;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 import lombok.ToString;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-@AllArgsConstructor
-@ToString
+/**
+ * The mappings from original-filepaths.txt between the logical path of a file (as in files.xml) and its physical path in the bag. Both directions are indexed, so that a lookup takes constant
+ * time, regardless of the number of mappings. If a path is mapped more than once, the first mapping wins.
+ */
+@ToString(onlyExplicitlyIncluded = true)
 public class OriginalFilepaths {
-    private final List<Mapping> mappings = new ArrayList<>();
+    @ToString.Include
+    private final Map<Path, Path> logicalToPhysical = new HashMap<>();
+    private final Map<Path, Path> physicalToLogical = new HashMap<>();
 
     public Path getLogicalPath(Path physicalPath) {
         // return the logical path if there is a mapping for the given path
         // otherwise, just the path
-        return mappings.stream()
-            .filter(mapping -> mapping.getPhysicalPath().equals(physicalPath))
-            .map(Mapping::getLogicalPath)
-            .findFirst()
-            .orElse(physicalPath);
+        return physicalToLogical.getOrDefault(physicalPath, physicalPath);
     }
 
     public Path getPhysicalPath(Path logicalPath) {
         // return the physical path if there is a mapping for the given path
         // otherwise, just the path
         // note this does not check if paths exist
-        return mappings.stream()
-            .filter(mapping -> mapping.getLogicalPath().equals(logicalPath))
-            .map(Mapping::getPhysicalPath)
-            .findFirst()
-            .orElse(logicalPath);
+        return logicalToPhysical.getOrDefault(logicalPath, logicalPath);
     }
 
     public void addMapping(Path logicalPath, Path physicalPath) {
-        mappings.add(new Mapping(logicalPath, physicalPath));
+        if (physicalPath == null) {
+            physicalPath = logicalPath;
+        }
+        logicalToPhysical.putIfAbsent(logicalPath, physicalPath);
+        physicalToLogical.putIfAbsent(physicalPath, logicalPath);
     }
 
-    @AllArgsConstructor
-    @ToString
-    private static class Mapping {
-        @Getter
-        private final Path logicalPath;
-        private final Path physicalPath;
-
-        public Path getPhysicalPath() {
-            if (physicalPath != null) {
-                return physicalPath;
-            }
-
-            return logicalPath;
-        }
+    public int size() {
+        return logicalToPhysical.size();
     }
 }
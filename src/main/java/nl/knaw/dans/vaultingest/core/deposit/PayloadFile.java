@@ -20,7 +20,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
-import org.w3c.dom.Node;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
@@ -36,10 +36,11 @@ import java.util.Map;
 public class PayloadFile {
     @Getter
     private final String id;
+    // The entry for this file in files.xml
+    private final FilesXmlTable filesXml;
+    private final int filesXmlIndex;
     @Getter
-    private final Node filesXmlNode;
-    @Getter
-    private final Node ddmNode;
+    private final DdmModel ddm;
     private final Path physicalPath;
     private final Map<SupportedAlgorithm, String> checksums;
 
@@ -65,8 +66,16 @@ public class PayloadFile {
         return new BufferedInputStream(new FileInputStream(physicalPath.toFile()));
     }
 
+    public String getDescription() {
+        return filesXml.getDescription(filesXmlIndex);
+    }
+
+    public String getAccessibleToRights() {
+        return filesXml.getAccessibleToRights(filesXmlIndex);
+    }
+
     private String getFilePathAttribute() {
-        return filesXmlNode.getAttributes().getNamedItem("filepath").getTextContent();
+        return filesXml.getFilepath(filesXmlIndex);
     }
 
     private Path getFilePath() {
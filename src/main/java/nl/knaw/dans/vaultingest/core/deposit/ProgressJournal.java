@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Durable record of the steps that have been completed for a deposit, kept in the deposit directory. Each update is written to a temporary file, forced to disk and then moved over the
+ * journal, so that after a crash the journal is either in its previous or in its new state. Processing of a deposit that was interrupted can use the journal to resume after the last completed
+ * step.
+ */
+@Slf4j
+public class ProgressJournal {
+    public static final String FILENAME = "vault-ingest-progress.properties";
+
+    public enum Step {
+        VALIDATED,
+        BACKED_UP,
+        REGISTERED,
+        METADATA_WRITTEN,
+        ZIPPED,
+        MOVED
+    }
+
+    // Values recorded with a step, needed to resume after it
+    public static final String NBN = "nbn";
+    public static final String OBJECT_VERSION = "object-version";
+    public static final String BAG_PACK = "bag-pack";
+    // Name of the bag directory, recorded with BACKED_UP, so that the backup can be recognized after the bag has been deleted to restore it
+    public static final String BAG_DIR = "bag-dir";
+
+    private static final String STEP_PREFIX = "step.";
+
+    private final Properties properties;
+    private Path file;
+
+    private ProgressJournal(Path file, Properties properties) {
+        this.file = file;
+        this.properties = properties;
+    }
+
+    public static boolean exists(@NonNull Path depositDir) {
+        return Files.exists(depositDir.resolve(FILENAME));
+    }
+
+    /**
+     * Opens the journal of a deposit, creating it if it does not exist yet.
+     *
+     * @param depositDir the deposit directory
+     * @return the journal
+     * @throws IOException if the journal could not be read or created
+     */
+    public static ProgressJournal open(@NonNull Path depositDir) throws IOException {
+        var file = depositDir.resolve(FILENAME);
+        var properties = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                properties.load(input);
+            }
+            var journal = new ProgressJournal(file, properties);
+            log.debug("[{}] Progress journal found; completed steps: {}", depositDir.getFileName(), journal.describe());
+            return journal;
+        }
+        var journal = new ProgressJournal(file, properties);
+        journal.save();
+        return journal;
+    }
+
+    /**
+     * Deletes the journal of a deposit, if it has one, so that the deposit is processed from the start when it is submitted again.
+     *
+     * @param depositDir the deposit directory
+     * @throws IOException if the journal could not be deleted
+     */
+    public static void delete(@NonNull Path depositDir) throws IOException {
+        Files.deleteIfExists(depositDir.resolve(FILENAME + ".tmp"));
+        Files.deleteIfExists(depositDir.resolve(FILENAME));
+    }
+
+    public synchronized boolean isDone(@NonNull Step step) {
+        return properties.containsKey(STEP_PREFIX + step.name());
+    }
+
+    public synchronized String get(@NonNull String key) {
+        return properties.getProperty(key);
+    }
+
+    /**
+     * Records a value that is needed to resume, without marking a step as completed.
+     *
+     * @param key   the key
+     * @param value the value
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized void put(@NonNull String key, @NonNull String value) throws IOException {
+        properties.setProperty(key, value);
+        save();
+    }
+
+    public synchronized void record(@NonNull Step step) throws IOException {
+        record(step, Map.of());
+    }
+
+    /**
+     * Marks a step as completed, together with the values needed to resume after it.
+     *
+     * @param step   the step
+     * @param values the values
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized void record(@NonNull Step step, @NonNull Map<String, String> values) throws IOException {
+        properties.putAll(values);
+        properties.setProperty(STEP_PREFIX + step.name(), OffsetDateTime.now().toString());
+        save();
+    }
+
+    /**
+     * Marks steps as not completed, because what they produced has been undone.
+     *
+     * @param steps the steps
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized void undo(@NonNull Step... steps) throws IOException {
+        for (var step : steps) {
+            properties.remove(STEP_PREFIX + step.name());
+        }
+        save();
+    }
+
+    /**
+     * Continues the journal in another directory, after the deposit directory has been moved there.
+     *
+     * @param depositDir the new deposit directory
+     */
+    public synchronized void relocate(@NonNull Path depositDir) {
+        file = depositDir.resolve(FILENAME);
+    }
+
+    private String describe() {
+        var done = new StringBuilder();
+        for (var step : Step.values()) {
+            if (isDone(step)) {
+                done.append(done.length() == 0 ? "" : ", ").append(step);
+            }
+        }
+        return done.length() == 0 ? "none" : done.toString();
+    }
+
+    private void save() throws IOException {
+        var tempFile = file.resolveSibling(FILENAME + ".tmp");
+        try (var channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var writer = Channels.newWriter(channel, StandardCharsets.ISO_8859_1);
+            properties.store(writer, "Progress of dd-vault-ingest; do not edit");
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
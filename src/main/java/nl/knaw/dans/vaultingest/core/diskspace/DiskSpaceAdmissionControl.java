@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.diskspace;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultingest.config.DiskSpaceConfig;
+import nl.knaw.dans.vaultingest.core.concurrent.AdmissionControl;
+import nl.knaw.dans.vaultingest.core.concurrent.Schedulable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Admits a deposit only if, after processing it, there would still be at least the configured minimum of free space on the volumes of the inbox, the outbox, the bagPackOutputDir and the BagPack work
+ * directory. The space a deposit needs is estimated from its payload size:
+ *
+ * <ul>
+ *     <li>on the inbox volume, for the backup of the original bag, unless its payload is hard-linked rather than copied;</li>
+ *     <li>on the bagPackOutputDir volume, for the BagPack zip;</li>
+ *     <li>on the work directory volume, for the compressed files of the zip threads, which exist next to the zip until it has been written. If the work directory is on the same volume as the
+ *     bagPackOutputDir, the compressed data is counted twice on that volume;</li>
+ *     <li>on the outbox volume, for the deposit itself, but only if the outbox is on another volume than the inbox, because only then moving the deposit copies it.</li>
+ * </ul>
+ *
+ * <p>
+ * Space is reserved for a deposit from the moment it is admitted until it has been processed, because the free space reported by the file system does not yet reflect what the deposits that are
+ * in progress will still write.
+ * </p>
+ *
+ * <p>
+ * A deposit that needs more than the usable space plus all space reserved, minus the minimum free space, would not fit even if the deposits in progress gave back their space. Waiting for them
+ * would not help it, so other deposits may be started before it (see {@link #mayBeOvertaken(Runnable)}). It is admitted once space has been freed on the volume, and reported by the
+ * {@link DiskSpaceHealthCheck} until then.
+ * </p>
+ */
+@Slf4j
+public class DiskSpaceAdmissionControl implements AdmissionControl {
+    private final Map<String, FileStore> volumes = new LinkedHashMap<>();
+    private final FileStore inboxStore;
+    private final FileStore outboxStore;
+    private final FileStore bagPackStore;
+    private final FileStore workStore;
+    private final long minimumFreeSpace;
+    private final double overheadFactor;
+    private final Duration retryInterval;
+    private final boolean backupCopiesPayload;
+
+    // Guarded by this
+    private final Map<FileStore, Long> reserved = new HashMap<>();
+    private final Map<Runnable, Map<FileStore, Long>> reservationsByTask = new IdentityHashMap<>();
+    private final Set<Runnable> tooLarge = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Runnable lastHeldBack;
+
+    public DiskSpaceAdmissionControl(@NonNull Path inbox, @NonNull Path outbox, @NonNull Path bagPackOutputDir, @NonNull Path workDir, boolean backupCopiesPayload,
+        @NonNull DiskSpaceConfig config, @NonNull MetricRegistry metricRegistry) throws IOException {
+        this.inboxStore = Files.getFileStore(inbox);
+        this.outboxStore = Files.getFileStore(outbox);
+        this.bagPackStore = Files.getFileStore(bagPackOutputDir);
+        this.workStore = Files.getFileStore(workDir);
+        this.minimumFreeSpace = config.getMinimumFreeSpace().toBytes();
+        this.overheadFactor = config.getOverheadFactor();
+        this.retryInterval = config.getRecheckInterval().toJavaDuration();
+        this.backupCopiesPayload = backupCopiesPayload;
+
+        volumes.put("inbox", inboxStore);
+        volumes.put("outbox", outboxStore);
+        volumes.put("bag-pack-output-dir", bagPackStore);
+        volumes.put("work-dir", workStore);
+        for (var volume : volumes.entrySet()) {
+            metricRegistry.register(name(getClass(), volume.getKey(), "headroom"), (Gauge<Long>) () -> getHeadroom(volume.getValue()));
+            metricRegistry.register(name(getClass(), volume.getKey(), "reserved"), (Gauge<Long>) () -> getReserved(volume.getValue()));
+        }
+        metricRegistry.register(name(getClass(), "too-large"), (Gauge<Integer>) this::getTooLargeCount);
+    }
+
+    @Override
+    public synchronized boolean tryAdmit(Runnable task) {
+        var needed = estimate(task);
+        for (var entry : needed.entrySet()) {
+            var headroom = getHeadroom(entry.getKey());
+            if (headroom < entry.getValue()) {
+                logHeldBack(task, entry.getKey(), entry.getValue(), headroom);
+                return false;
+            }
+        }
+
+        needed.forEach((store, bytes) -> reserved.merge(store, bytes, Long::sum));
+        reservationsByTask.put(task, needed);
+        tooLarge.remove(task);
+        if (lastHeldBack == task) {
+            log.info("Deposit that was held back for lack of disk space is admitted");
+            lastHeldBack = null;
+        }
+        return true;
+    }
+
+    /**
+     * A deposit may be overtaken if it needs more space on a volume than the volume would have if all deposits in progress gave back their reservations.
+     */
+    @Override
+    public synchronized boolean mayBeOvertaken(Runnable task) {
+        for (var entry : estimate(task).entrySet()) {
+            var store = entry.getKey();
+            var available = getUsableSpace(store) + getReserved(store) - minimumFreeSpace;
+            if (available < entry.getValue()) {
+                if (tooLarge.add(task)) {
+                    log.error("Deposit needs {} bytes on {}, but even without the deposits in progress only {} bytes would be available above the minimum free space; "
+                        + "other deposits are started before it until space is freed", entry.getValue(), store, Math.max(available, 0));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void release(Runnable task) {
+        var reservation = reservationsByTask.remove(task);
+        if (reservation != null) {
+            reservation.forEach((store, bytes) -> reserved.merge(store, -bytes, Long::sum));
+        }
+    }
+
+    @Override
+    public Duration getRetryInterval() {
+        return retryInterval;
+    }
+
+    /**
+     * Returns, per volume, the free space that is left for new deposits: the usable space, minus the space reserved for deposits in progress and the minimum free space. A negative value means
+     * that the volume is below the minimum free space.
+     *
+     * @return the headroom in bytes per volume name
+     */
+    public Map<String, Long> getHeadroom() {
+        var headroom = new LinkedHashMap<String, Long>();
+        volumes.forEach((name, store) -> headroom.put(name, getHeadroom(store)));
+        return headroom;
+    }
+
+    /**
+     * @return the number of deposits waiting that need more space than the volumes can offer, until space is freed
+     */
+    public synchronized int getTooLargeCount() {
+        return tooLarge.size();
+    }
+
+    private Map<FileStore, Long> estimate(Runnable task) {
+        var payloadSize = task instanceof Schedulable schedulable ? schedulable.getPayloadSize() : 0L;
+        var bytes = (long) Math.ceil(payloadSize * overheadFactor);
+        var needed = new HashMap<FileStore, Long>();
+        // Even when the payload is hard-linked, the backup and the enriched bag take a little space on the inbox volume; that is covered by the minimum free space
+        needed.merge(inboxStore, backupCopiesPayload ? bytes : 0L, Long::sum);
+        needed.merge(bagPackStore, bytes, Long::sum);
+        // The zip threads compress into temporary files in the work directory, which are only deleted after they have been copied into the zip
+        needed.merge(workStore, bytes, Long::sum);
+        if (!outboxStore.equals(inboxStore)) {
+            needed.merge(outboxStore, bytes, Long::sum);
+        }
+        return needed;
+    }
+
+    private long getHeadroom(FileStore store) {
+        return getUsableSpace(store) - getReserved(store) - minimumFreeSpace;
+    }
+
+    private long getUsableSpace(FileStore store) {
+        try {
+            return store.getUsableSpace();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot determine usable space of " + store, e);
+        }
+    }
+
+    private synchronized long getReserved(FileStore store) {
+        return reserved.getOrDefault(store, 0L);
+    }
+
+    private void logHeldBack(Runnable task, FileStore store, long needed, long headroom) {
+        if (lastHeldBack != task) {
+            log.warn("Holding back deposit: it needs {} bytes on {}, but only {} bytes are available above the minimum free space", needed, store, Math.max(headroom, 0));
+            lastHeldBack = task;
+        }
+        else {
+            log.debug("Still holding back deposit: it needs {} bytes on {}, {} bytes available", needed, store, Math.max(headroom, 0));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.diskspace;
+
+import com.codahale.metrics.health.HealthCheck;
+import lombok.AllArgsConstructor;
+
+import java.util.stream.Collectors;
+
+/**
+ * Reports unhealthy when the free space on one of the volumes used for processing deposits is below the configured minimum, or when deposits are waiting that need more space than the volumes can
+ * offer. In the first case no new deposits are started; in the second the other deposits are processed, but the waiting deposits need space to be freed.
+ */
+@AllArgsConstructor
+public class DiskSpaceHealthCheck extends HealthCheck {
+    private final DiskSpaceAdmissionControl diskSpaceAdmissionControl;
+
+    @Override
+    protected Result check() {
+        var headroom = diskSpaceAdmissionControl.getHeadroom();
+        var summary = headroom.entrySet().stream()
+            .map(e -> e.getKey() + ": " + e.getValue() + " bytes")
+            .collect(Collectors.joining(", "));
+        if (headroom.values().stream().anyMatch(bytes -> bytes < 0)) {
+            return Result.unhealthy("Free space below minimum; headroom per volume: " + summary);
+        }
+        var tooLarge = diskSpaceAdmissionControl.getTooLargeCount();
+        if (tooLarge > 0) {
+            return Result.unhealthy(tooLarge + " deposit(s) need more space than available; headroom per volume: " + summary);
+        }
+        return Result.healthy("Headroom per volume: " + summary);
+    }
+}
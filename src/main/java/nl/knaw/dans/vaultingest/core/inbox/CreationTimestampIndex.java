@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * In-memory index of the deposits in the inbox, ordered by the creation.timestamp in their deposit.properties. The timestamp of each deposit is read only once, when the deposit is added to the
+ * index. Deposits that have not been handed out yet can be retrieved oldest first in O(log n).
+ */
+@Slf4j
+public class CreationTimestampIndex {
+    private static final String DEPOSIT_PROPERTIES = "deposit.properties";
+    private static final String CREATION_TIMESTAMP = "creation.timestamp";
+
+    private final Map<Path, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> pending = new TreeSet<>();
+    private final Timer rebuildTimer;
+
+    public CreationTimestampIndex(@NonNull MetricRegistry metricRegistry) {
+        this.rebuildTimer = metricRegistry.timer(name(getClass(), "rebuild"));
+        metricRegistry.register(name(getClass(), "size"), (Gauge<Integer>) this::size);
+        metricRegistry.register(name(getClass(), "pending"), (Gauge<Integer>) this::pendingSize);
+    }
+
+    /**
+     * Adds a deposit to the index, unless it is already present.
+     *
+     * @param depositDir the deposit directory
+     * @return true if the deposit was added
+     */
+    public synchronized boolean add(@NonNull Path depositDir) {
+        if (entries.containsKey(depositDir)) {
+            return false;
+        }
+
+        var entry = new Entry(readCreationTimestamp(depositDir), depositDir);
+        entries.put(depositDir, entry);
+        pending.add(entry);
+        return true;
+    }
+
+    public synchronized void remove(@NonNull Path depositDir) {
+        var entry = entries.remove(depositDir);
+        if (entry != null) {
+            pending.remove(entry);
+        }
+    }
+
+    /**
+     * Hands out the oldest deposit that has not been handed out before. The deposit stays in the index until it is removed.
+     *
+     * @return the oldest pending deposit, if any
+     */
+    public synchronized Optional<Path> pollOldest() {
+        return Optional.ofNullable(pending.pollFirst()).map(Entry::getPath);
+    }
+
+    /**
+     * Brings the index in line with the deposits actually present: deposits that are no longer present are removed, new ones are added.
+     *
+     * @param depositDirs the deposit directories currently present
+     */
+    public synchronized void rebuild(@NonNull Collection<Path> depositDirs) {
+        try (var ignored = rebuildTimer.time()) {
+            var present = new HashSet<>(depositDirs);
+            for (var path : Set.copyOf(entries.keySet())) {
+                if (!present.contains(path)) {
+                    remove(path);
+                }
+            }
+            present.forEach(this::add);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int pendingSize() {
+        return pending.size();
+    }
+
+    private Instant readCreationTimestamp(Path depositDir) {
+        var properties = new Properties();
+        try (InputStream input = Files.newInputStream(depositDir.resolve(DEPOSIT_PROPERTIES))) {
+            properties.load(input);
+            return OffsetDateTime.parse(properties.getProperty(CREATION_TIMESTAMP)).toInstant();
+        }
+        catch (IOException | RuntimeException e) {
+            // Order last; processing the deposit will report the actual problem
+            log.warn("Could not read {} of deposit {}: {}", CREATION_TIMESTAMP, depositDir, e.getMessage());
+            return Instant.MAX;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private static final Comparator<Entry> ORDER = Comparator.comparing((Entry e) -> e.timestamp).thenComparing(e -> e.path);
+
+        private final Instant timestamp;
+        private final Path path;
+
+        private Entry(Instant timestamp, Path path) {
+            this.timestamp = timestamp;
+            this.path = path;
+        }
+
+        private Path getPath() {
+            return path;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
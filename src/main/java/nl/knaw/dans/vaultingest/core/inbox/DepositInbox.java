@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import io.dropwizard.lifecycle.Managed;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.lib.util.inbox.InboxTaskFactory;
+import nl.knaw.dans.vaultingest.config.InboxConfig;
+import nl.knaw.dans.vaultingest.core.concurrent.DatasetKeyed;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbox that hands deposits to an executor, oldest first according to a {@link CreationTimestampIndex}. A deposit directory is picked up as soon as it contains a deposit.properties file. This
+ * inbox is used in both modes of {@link InboxConfig.Mode}, instead of the Inbox of dans-java-utils, which re-read the deposit.properties of all deposits to sort them on every poll.
+ *
+ * <p>
+ * In POLLING mode, the inbox directory is listed every scan interval. In WATCH mode, new deposits are reported by the file system and the scan interval only serves as a fallback, as some file
+ * systems (notably network file systems) may drop or never deliver events. The inbox is also rescanned whenever the event queue overflows, and it falls back to polling if the inbox can no
+ * longer be watched. Either way, a deposit's creation.timestamp is read only once.
+ * </p>
+ *
+ * <p>
+ * If the inbox is shared with other instances, deposits of a dataset leased by another instance (see {@link DepositLeases}) are not submitted, but checked again on the next scan, so that they
+ * are picked up once the other instance is done with the dataset, or has crashed.
+ * </p>
+ */
+@Slf4j
+public class DepositInbox implements Managed {
+    private static final String DEPOSIT_PROPERTIES = "deposit.properties";
+    // How often to check whether deposit directories that appeared before their deposit.properties have become complete
+    private static final Duration INCOMPLETE_RETRY_INTERVAL = Duration.ofSeconds(1);
+
+    private final Path inbox;
+    private volatile boolean watch;
+    private final Duration scanInterval;
+    private final CreationTimestampIndex index;
+    private final InboxTaskFactory taskFactory;
+    private final ExecutorService executorService;
+    // Null if the inbox is not shared with other instances
+    private final DepositLeases leases;
+
+    // Deposit directories that appeared, but do not contain a deposit.properties yet
+    private final Set<Path> incomplete = new HashSet<>();
+
+    // Deposits that were not submitted because another instance holds the lease on their dataset
+    private final Set<Path> leasedElsewhere = new HashSet<>();
+
+    private WatchService watchService;
+    private Thread inboxThread;
+    private volatile boolean running;
+
+    /**
+     * @param inbox           the inbox directory
+     * @param mode            how new deposits are found
+     * @param scanInterval    how often the inbox directory is listed: the polling interval in POLLING mode, the rescan interval in WATCH mode
+     * @param index           the index that orders the deposits
+     * @param taskFactory     creates the task that processes a deposit
+     * @param executorService the executor that runs the tasks
+     * @param leases          the leases on datasets, or null if the inbox is not shared with other instances
+     */
+    public DepositInbox(@NonNull Path inbox, @NonNull InboxConfig.Mode mode, @NonNull Duration scanInterval, @NonNull CreationTimestampIndex index, @NonNull InboxTaskFactory taskFactory,
+        @NonNull ExecutorService executorService, DepositLeases leases) {
+        this.inbox = inbox;
+        this.watch = mode == InboxConfig.Mode.WATCH;
+        this.scanInterval = scanInterval;
+        this.index = index;
+        this.taskFactory = taskFactory;
+        this.executorService = executorService;
+        this.leases = leases;
+    }
+
+    @Override
+    public void start() throws Exception {
+        log.info("Starting inbox {} ({}, full scan every {})", inbox, watch ? "watching for new deposits" : "polling", scanInterval);
+        if (watch) {
+            // Registered before the initial scan, so that no deposit arriving in between is missed
+            watchService = createWatchService();
+        }
+        running = true;
+        scan();
+
+        inboxThread = new Thread(this::loop, "vault-ingest-inbox");
+        inboxThread.setDaemon(true);
+        inboxThread.start();
+    }
+
+    /**
+     * Creates a watch service on which the inbox directory is registered for created and deleted entries.
+     *
+     * @return the watch service
+     * @throws IOException if the inbox cannot be watched
+     */
+    WatchService createWatchService() throws IOException {
+        var service = inbox.getFileSystem().newWatchService();
+        inbox.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        return service;
+    }
+
+    /**
+     * @return false if the inbox is polled, because that was configured or because watching failed
+     */
+    public boolean isWatching() {
+        return watch;
+    }
+
+    @Override
+    public void stop() throws Exception {
+        log.info("Stopping inbox {}", inbox);
+        running = false;
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (inboxThread != null) {
+            inboxThread.interrupt();
+            inboxThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void loop() {
+        var nextScan = System.nanoTime() + scanInterval.toNanos();
+
+        while (running) {
+            try {
+                var timeout = nextScan - System.nanoTime();
+                if (!incomplete.isEmpty()) {
+                    timeout = Math.min(timeout, INCOMPLETE_RETRY_INTERVAL.toNanos());
+                }
+
+                if (watch) {
+                    if (processEvents(Math.max(timeout, 0))) {
+                        nextScan = System.nanoTime();
+                    }
+                }
+                else if (timeout > 0) {
+                    TimeUnit.NANOSECONDS.sleep(timeout);
+                }
+
+                retryIncomplete();
+
+                if (System.nanoTime() - nextScan >= 0) {
+                    scan();
+                    nextScan = System.nanoTime() + scanInterval.toNanos();
+                }
+            }
+            catch (ClosedWatchServiceException e) {
+                break;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (Exception e) {
+                log.error("Error while processing inbox {}", inbox, e);
+            }
+        }
+    }
+
+    /**
+     * Waits at most the given time for file system events and processes them.
+     *
+     * @return true if events were lost and a full scan is needed
+     */
+    private boolean processEvents(long timeoutNanos) throws InterruptedException {
+        var key = watchService.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        if (key == null) {
+            return false;
+        }
+
+        var overflow = false;
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            }
+            else {
+                handleEvent(event);
+            }
+        }
+
+        if (!key.reset()) {
+            log.error("Inbox {} can no longer be watched; falling back to scanning every {}", inbox, scanInterval);
+            watch = false;
+        }
+
+        if (overflow) {
+            log.warn("File system events for inbox {} were lost; rescanning", inbox);
+        }
+        return overflow;
+    }
+
+    private void handleEvent(WatchEvent<?> event) {
+        var path = inbox.resolve((Path) event.context());
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+            if (Files.isDirectory(path)) {
+                offer(path);
+            }
+        }
+        else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            index.remove(path);
+            incomplete.remove(path);
+            leasedElsewhere.remove(path);
+        }
+    }
+
+    private void retryIncomplete() {
+        for (var path : Set.copyOf(incomplete)) {
+            incomplete.remove(path);
+            if (Files.isDirectory(path)) {
+                offer(path);
+            }
+        }
+    }
+
+    private void scan() throws IOException {
+        var present = new HashSet<Path>();
+        var found = new HashSet<Path>();
+        try (var list = Files.list(inbox)) {
+            list.filter(Files::isDirectory).forEach(found::add);
+        }
+
+        for (var path : found) {
+            if (isComplete(path)) {
+                present.add(path);
+            }
+        }
+
+        incomplete.retainAll(found);
+        // Let the index hand out deposits leased by other instances again, so that their leases are checked again
+        leasedElsewhere.forEach(index::remove);
+        leasedElsewhere.clear();
+        index.rebuild(present);
+        submitPending();
+        log.debug("Scanned inbox {}; {} deposits in index", inbox, index.size());
+    }
+
+    private void offer(Path path) {
+        if (isComplete(path)) {
+            if (index.add(path)) {
+                submitPending();
+            }
+        }
+        else {
+            log.debug("Deposit directory {} is not complete yet", path);
+            incomplete.add(path);
+        }
+    }
+
+    private boolean isComplete(Path depositDir) {
+        return Files.isRegularFile(depositDir.resolve(DEPOSIT_PROPERTIES));
+    }
+
+    private void submitPending() {
+        for (var next = index.pollOldest(); next.isPresent(); next = index.pollOldest()) {
+            var path = next.get();
+            var task = taskFactory.createInboxTask(path);
+            if (leases != null && task instanceof DatasetKeyed keyed && leases.isLeasedElsewhere(keyed.getDatasetKey())) {
+                log.debug("Dataset {} of deposit {} is being processed by another instance", keyed.getDatasetKey(), path);
+                leasedElsewhere.add(path);
+                continue;
+            }
+            try {
+                log.debug("Submitting deposit {}", path);
+                executorService.execute(task);
+            }
+            catch (RejectedExecutionException e) {
+                index.remove(path);
+                log.warn("Could not submit deposit {}; executor is shutting down", path);
+                return;
+            }
+        }
+    }
+}
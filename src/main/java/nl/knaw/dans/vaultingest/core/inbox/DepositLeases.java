@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Leases on datasets in an inbox that is shared by several instances of the service. Before processing a deposit, an instance claims the dataset the deposit belongs to (its dataset key, see
+ * {@link nl.knaw.dans.vaultingest.core.deposit.DepositManager#readSummary(Path)}) by creating a lease file, named after the dataset key, in a directory shared by all instances; creating the file
+ * fails if another instance holds the lease. Because the lease is on the dataset and not on the deposit, the versions of a dataset are processed one at a time across all instances, not only within
+ * one instance. The lease file contains the id of the instance and the name of the deposit, and is touched every heartbeat interval. A lease that has not been touched for the lease duration is
+ * considered abandoned by a crashed instance and is taken over by the next instance that claims the dataset. This assumes that the clocks of the instances are synchronized.
+ *
+ * <p>
+ * An instance that restarts with the same instance id takes back its own leases immediately, so that it can resume the deposits it was processing.
+ * </p>
+ */
+@Slf4j
+public class DepositLeases implements Managed {
+    private final Path leaseDir;
+    private final String instanceId;
+    private final Duration leaseDuration;
+    private final Duration heartbeatInterval;
+
+    // Leases held by this instance, by dataset key
+    private final Map<String, Lease> held = new ConcurrentHashMap<>();
+    private final List<Consumer<Path>> conflictListeners = new CopyOnWriteArrayList<>();
+
+    private final Meter claims;
+    private final Meter conflicts;
+    private final Meter expired;
+    private final Meter lost;
+
+    private ScheduledExecutorService heartbeat;
+
+    public DepositLeases(@NonNull Path leaseDir, @NonNull String instanceId, @NonNull Duration leaseDuration, @NonNull Duration heartbeatInterval, @NonNull MetricRegistry metricRegistry) {
+        this.leaseDir = leaseDir;
+        this.instanceId = instanceId;
+        this.leaseDuration = leaseDuration;
+        this.heartbeatInterval = heartbeatInterval;
+        this.claims = metricRegistry.meter(name(getClass(), "claims"));
+        this.conflicts = metricRegistry.meter(name(getClass(), "conflicts"));
+        this.expired = metricRegistry.meter(name(getClass(), "expired-reclaimed"));
+        this.lost = metricRegistry.meter(name(getClass(), "lost"));
+        metricRegistry.register(name(getClass(), "held"), (Gauge<Integer>) held::size);
+    }
+
+    @Override
+    public void start() throws IOException {
+        Files.createDirectories(leaseDir);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "vault-ingest-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::renewAll, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Sharing inbox as instance '{}'; leases in {}", instanceId, leaseDir);
+    }
+
+    @Override
+    public void stop() {
+        // Leases still held are left to expire, or to be taken back when this instance restarts
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers a listener that is called with the deposit directory when a claim fails because another instance holds the lease on its dataset.
+     *
+     * @param listener the listener
+     */
+    public void addConflictListener(@NonNull Consumer<Path> listener) {
+        conflictListeners.add(listener);
+    }
+
+    /**
+     * Tries to claim the dataset of a deposit for this instance.
+     *
+     * @param datasetKey the dataset key of the deposit
+     * @param depositDir the deposit directory
+     * @return true if this instance now holds the lease
+     */
+    public boolean tryClaim(@NonNull String datasetKey, @NonNull Path depositDir) {
+        var current = held.get(datasetKey);
+        if (current != null) {
+            log.warn("[{}] Dataset {} is already being processed by this instance, for deposit {}", depositDir.getFileName(), datasetKey, current.getDepositDir().getFileName());
+            return false;
+        }
+        var lease = getLeaseFile(datasetKey);
+        try {
+            if (create(lease, depositDir) || takeOver(lease, depositDir)) {
+                held.put(datasetKey, new Lease(depositDir, lease));
+                claims.mark();
+                return true;
+            }
+        }
+        catch (IOException e) {
+            log.error("[{}] Could not claim dataset {}", depositDir.getFileName(), datasetKey, e);
+            return false;
+        }
+
+        conflicts.mark();
+        log.debug("[{}] Dataset {} is claimed by another instance", depositDir.getFileName(), datasetKey);
+        conflictListeners.forEach(listener -> listener.accept(depositDir));
+        return false;
+    }
+
+    /**
+     * Gives up the lease on a dataset, after its deposit has been moved out of the inbox.
+     *
+     * @param datasetKey the dataset key of the deposit
+     */
+    public void release(@NonNull String datasetKey) {
+        var lease = held.remove(datasetKey);
+        if (lease != null) {
+            try {
+                Files.deleteIfExists(lease.getFile());
+            }
+            catch (IOException e) {
+                log.warn("[{}] Could not delete lease {}; it will expire", lease.getDepositDir().getFileName(), lease.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Whether another instance holds a live lease on the dataset. Cheap enough to be called for each deposit on each scan of the inbox.
+     *
+     * @param datasetKey the dataset key of the deposit
+     * @return true if a deposit of the dataset is being processed by another instance
+     */
+    public boolean isLeasedElsewhere(@NonNull String datasetKey) {
+        var lease = getLeaseFile(datasetKey);
+        try {
+            return !isExpired(Files.getLastModifiedTime(lease)) && !instanceId.equals(readOwner(lease));
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        catch (IOException e) {
+            log.warn("Could not read lease {} on dataset {}", lease, datasetKey, e);
+            return true;
+        }
+    }
+
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public Set<Path> getHeldDepositDirs() {
+        return held.values().stream().map(Lease::getDepositDir).collect(Collectors.toUnmodifiableSet());
+    }
+
+    private boolean create(Path lease, Path depositDir) throws IOException {
+        try {
+            Files.writeString(lease, getContent(depositDir), StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return true;
+        }
+        catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    private boolean takeOver(Path lease, Path depositDir) throws IOException {
+        FileTime lastModified;
+        String owner;
+        try {
+            lastModified = Files.getLastModifiedTime(lease);
+            owner = readOwner(lease);
+        }
+        catch (NoSuchFileException e) {
+            // Released in the meantime
+            return create(lease, depositDir);
+        }
+
+        if (instanceId.equals(owner)) {
+            log.info("Taking back lease {} held by this instance before it restarted", lease.getFileName());
+            // Rewriting the lease also renews it
+            Files.writeString(lease, getContent(depositDir), StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            return true;
+        }
+        if (!isExpired(lastModified)) {
+            return false;
+        }
+
+        // Move the abandoned lease out of the way. Only one instance can succeed in this; the others get a NoSuchFileException.
+        var abandoned = lease.resolveSibling(lease.getFileName() + ".expired." + instanceId + "." + System.nanoTime());
+        try {
+            Files.move(lease, abandoned, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!lastModified.equals(Files.getLastModifiedTime(abandoned))) {
+            // Another instance took over and renewed the lease between our check and the move; give it back
+            Files.move(abandoned, lease, StandardCopyOption.ATOMIC_MOVE);
+            return false;
+        }
+        Files.delete(abandoned);
+        expired.mark();
+        log.warn("Took over lease {} abandoned by instance '{}' (last renewed {})", lease.getFileName(), owner, lastModified);
+        return create(lease, depositDir);
+    }
+
+    private void renewAll() {
+        for (var entry : held.entrySet()) {
+            var lease = entry.getValue().getFile();
+            var depositName = entry.getValue().getDepositDir().getFileName();
+            try {
+                if (!instanceId.equals(readOwner(lease))) {
+                    throw new NoSuchFileException(lease.toString());
+                }
+                touch(lease);
+            }
+            catch (NoSuchFileException e) {
+                lost.mark();
+                log.error("[{}] Lost lease on dataset {}; it may be processed by another instance as well", depositName, entry.getKey());
+            }
+            catch (IOException e) {
+                log.warn("[{}] Could not renew lease {}", depositName, lease, e);
+            }
+        }
+    }
+
+    private void touch(Path lease) throws IOException {
+        Files.setLastModifiedTime(lease, FileTime.from(Instant.now()));
+    }
+
+    private String getContent(Path depositDir) {
+        return instanceId + System.lineSeparator() + depositDir.getFileName() + System.lineSeparator();
+    }
+
+    private String readOwner(Path lease) throws IOException {
+        // First line; the second names the deposit, for whoever inspects the lease directory
+        return Files.readString(lease, StandardCharsets.UTF_8).lines().findFirst().orElse("").trim();
+    }
+
+    private boolean isExpired(FileTime lastModified) {
+        return lastModified.toInstant().plus(leaseDuration).isBefore(Instant.now());
+    }
+
+    private Path getLeaseFile(String datasetKey) {
+        // Dataset keys such as sword:<uuid> contain characters that not all (network) file systems accept in a file name
+        return leaseDir.resolve(URLEncoder.encode(datasetKey, StandardCharsets.UTF_8));
+    }
+
+    @Value
+    private static class Lease {
+        Path depositDir;
+        Path file;
+    }
+}
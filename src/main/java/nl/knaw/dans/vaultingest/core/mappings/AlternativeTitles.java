@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -33,11 +33,9 @@ public class AlternativeTitles {
         return toAlternativeTitle(resource, getAlternativeTitles(deposit.getDdm()));
     }
 
-    static List<String> getAlternativeTitles(Document ddm) {
-        return XPathEvaluator.strings(ddm,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:title",
-                "/ddm:DDM/ddm:dcmiMetadata/dc:title",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:alternative")
+    static List<String> getAlternativeTitles(DdmModel ddm) {
+        return ddm.getDcmiMetadata("dcterms:title", "dc:title", "dcterms:alternative")
+            .map(DdmElement::getText)
             .map(String::trim)
             .collect(Collectors.toList());
     }
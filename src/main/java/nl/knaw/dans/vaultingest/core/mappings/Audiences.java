@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRel;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -33,9 +33,9 @@ public class Audiences extends Base {
         return toDansAudiences(resource, audiences);
     }
 
-    static List<String> getAudiences(Document document) {
-        var results = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:profile/ddm:audience")
+    static List<String> getAudiences(DdmModel ddm) {
+        var results = ddm.getProfile("ddm:audience")
+            .map(DdmElement::getText)
             .map(String::trim)
             .collect(Collectors.toSet());
 
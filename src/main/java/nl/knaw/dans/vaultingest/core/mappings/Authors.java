@@ -15,6 +15,8 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetAuthor;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetCreator;
@@ -22,11 +24,8 @@ import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetOrganization;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetRelation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.Datacite;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -72,14 +71,14 @@ public class Authors extends Base {
         });
     }
 
-    static List<DatasetAuthor> getAuthors(Document ddm) {
-        return XPathEvaluator.nodes(ddm,
-                "/ddm:DDM/ddm:profile/dcx-dai:creatorDetails/dcx-dai:author")
+    static List<DatasetAuthor> getAuthors(DdmModel ddm) {
+        return ddm.getProfile("dcx-dai:creatorDetails")
+            .flatMap(details -> details.getChildren("dcx-dai:author"))
             .map(Authors::parseAuthor)
             .collect(Collectors.toList());
     }
 
-    static DatasetAuthor parseAuthor(Node node) {
+    static DatasetAuthor parseAuthor(DdmElement node) {
         return DatasetAuthor.builder()
             .titles(getFirstValue(node, "dcx-dai:titles"))
             .initials(getFirstValue(node, "dcx-dai:initials"))
@@ -89,12 +88,13 @@ public class Authors extends Base {
             .isni(getISNI(node))
             .orcid(getORCID(node))
             .role(getFirstValue(node, "dcx-dai:role"))
-            .affiliation(getFirstValue(node, "dcx-dai:organization/dcx-dai:name"))
+            .affiliation(getFirstValue(node, "dcx-dai:organization", "dcx-dai:name"))
             .build();
     }
 
-    static List<DatasetCreator> getCreators(Document ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/dc:creator")
+    static List<DatasetCreator> getCreators(DdmModel ddm) {
+        return ddm.getProfile("dc:creator")
+            .map(DdmElement::getText)
             .map(String::trim)
             .map(author -> DatasetCreator.builder()
                 .name(author)
@@ -103,9 +103,9 @@ public class Authors extends Base {
             .collect(Collectors.toList());
     }
 
-    static List<DatasetOrganization> getOrganizations(Document ddm) {
-        return XPathEvaluator.nodes(ddm,
-                "/ddm:DDM/ddm:profile/dcx-dai:creatorDetails/dcx-dai:organization")
+    static List<DatasetOrganization> getOrganizations(DdmModel ddm) {
+        return ddm.getProfile("dcx-dai:creatorDetails")
+            .flatMap(details -> details.getChildren("dcx-dai:organization"))
             .map(node -> DatasetOrganization.builder()
                 .name(getFirstValue(node, "dcx-dai:name"))
                 .isni(getISNI(node))
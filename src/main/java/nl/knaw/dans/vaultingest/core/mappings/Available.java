@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -29,20 +29,23 @@ import java.util.Optional;
 
 public class Available extends Base {
     private static final DateTimeFormatter yyyyMMddFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Used for the distribution date, the embargo date of the files and the publication year
+    private static final DdmModel.Fact<LocalDate> AVAILABLE_DATE = model -> model.getProfile("ddm:available")
+        .map(DdmElement::getText)
+        .findFirst()
+        .map(Available::toYearMonthDayFormat)
+        .orElse(null);
 
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
         return toDistributionDate(resource, getAvailableDate(deposit.getDdm())).stream().toList();
     }
 
-    public static LocalDate getAvailableDate(Document document) {
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/ddm:available")
-            .findFirst()
-            .map(Available::toYearMonthDayFormat)
-            .orElse(null);
+    public static LocalDate getAvailableDate(DdmModel ddm) {
+        return ddm.get(AVAILABLE_DATE);
     }
 
-    public static LocalDate getEmbargoDate(Document document) {
-        var availableDate = getAvailableDate(document);
+    public static LocalDate getEmbargoDate(DdmModel ddm) {
+        var availableDate = getAvailableDate(ddm);
         // If after now then it's an embargo date otherwise null
         if (availableDate != null && availableDate.isAfter(LocalDate.now())) {
             return availableDate;
@@ -15,50 +15,59 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.mappings.ids.DAI;
 import nl.knaw.dans.vaultingest.core.mappings.ids.ISNI;
 import nl.knaw.dans.vaultingest.core.mappings.ids.ORCID;
 import nl.knaw.dans.vaultingest.core.mappings.ids.VIAF;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
-import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class Base {
 
-    static String getFirstValue(Node node, String expression) {
-        return XPathEvaluator.strings(node, expression).map(String::trim).findFirst().orElse(null);
+    /**
+     * Returns the trimmed text of the first element found by following the path of child element names from the given element.
+     */
+    static String getFirstValue(DdmElement element, String... path) {
+        var elements = Stream.of(element);
+        for (var name : path) {
+            elements = elements.flatMap(e -> e.getChildren(name));
+        }
+        return elements.map(DdmElement::getText).map(String::trim).findFirst().orElse(null);
     }
 
-    static DAI getDAI(Node node) {
-        return XPathEvaluator.strings(node, "dcx-dai:DAI").map(DAI::new).findFirst().orElse(null);
+    static DAI getDAI(DdmElement element) {
+        return element.getChildren("dcx-dai:DAI").map(DdmElement::getText).map(DAI::new).findFirst().orElse(null);
     }
 
-    static ISNI getISNI(Node node) {
-        return XPathEvaluator.strings(node, "dcx-dai:ISNI").map(ISNI::new).findFirst().orElse(null);
+    static ISNI getISNI(DdmElement element) {
+        return element.getChildren("dcx-dai:ISNI").map(DdmElement::getText).map(ISNI::new).findFirst().orElse(null);
     }
 
-    static ORCID getORCID(Node node) {
-        return XPathEvaluator.strings(node, "dcx-dai:ORCID").map(ORCID::new).findFirst().orElse(null);
+    static ORCID getORCID(DdmElement element) {
+        return element.getChildren("dcx-dai:ORCID").map(DdmElement::getText).map(ORCID::new).findFirst().orElse(null);
     }
 
-    static VIAF getVIAF(Node node) {
+    static VIAF getVIAF(DdmElement element) {
         // the example doesnt use dcx-dai:VIAF, should be looked into
-        //        return XPathEvaluator.strings(node, "dcx-dai:VIAF").map(VIAF::new).findFirst().orElse(null);
-        return XPathEvaluator.strings(node, "dcx-dai:identifier[@scheme='VIAF']/@value")
+        return element.getChildren("dcx-dai:identifier")
+            .filter(identifier -> "VIAF".equals(identifier.getAttribute("scheme")))
+            .map(identifier -> identifier.getAttribute("value"))
+            .filter(Objects::nonNull)
             .map(VIAF::new).findFirst().orElse(null);
     }
 
-    static String getIdTypeNamespace(Document document) {
-        return document.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE);
+    static String getIdTypeNamespace(DdmModel ddm) {
+        return ddm.getIdTypePrefix();
     }
 
     static List<Statement> toBasicTerms(Resource resource, Property property, Collection<String> values) {
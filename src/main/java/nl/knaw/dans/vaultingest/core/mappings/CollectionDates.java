@@ -15,13 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.CollectionDate;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -37,8 +37,9 @@ public class CollectionDates extends Base {
         return toDatesOfCollection(resource, dates);
     }
 
-    static List<CollectionDate> getCollectionDates(Document document) {
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:dcmiMetadata/ddm:datesOfCollection")
+    static List<CollectionDate> getCollectionDates(DdmModel ddm) {
+        return ddm.getDcmiMetadata("ddm:datesOfCollection")
+            .map(DdmElement::getText)
             .map(value -> {
                 var matches = DATES_OF_COLLECTION_PATTERN.matcher(value.trim());
 
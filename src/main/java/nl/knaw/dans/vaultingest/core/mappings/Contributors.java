@@ -15,14 +15,14 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Contributor;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -35,11 +35,11 @@ public class Contributors extends Base {
         return toContributors(resource, getContributors(deposit.getDdm()));
     }
 
-    static List<Contributor> getContributors(Document document) {
+    static List<Contributor> getContributors(DdmModel ddm) {
         // CIT020
-        var authors = XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcx-dai:contributorDetails/" +
-                    "dcx-dai:author[dcx-dai:role != 'RightsHolder']")
+        var authors = ddm.getDcmiMetadata("dcx-dai:contributorDetails")
+            .flatMap(details -> details.getChildren("dcx-dai:author"))
+            .filter(item -> hasRoleOtherThan(item, "RightsHolder"))
             .map(item -> {
                 var author = Authors.parseAuthor(item);
                 var name = author.getContributorName();
@@ -51,9 +51,9 @@ public class Contributors extends Base {
             });
 
         // CIT021
-        var organizations = XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcx-dai:contributorDetails/" +
-                    "dcx-dai:organization[dcx-dai:role != 'RightsHolder' and dcx-dai:role != 'Funder']")
+        var organizations = ddm.getDcmiMetadata("dcx-dai:contributorDetails")
+            .flatMap(details -> details.getChildren("dcx-dai:organization"))
+            .filter(item -> hasRoleOtherThan(item, "RightsHolder") && hasRoleOtherThan(item, "Funder"))
             .map(item -> {
                 var role = getFirstValue(item, "dcx-dai:role");
                 var name = getFirstValue(item, "dcx-dai:name");
@@ -67,6 +67,11 @@ public class Contributors extends Base {
         return Stream.concat(authors, organizations).collect(Collectors.toList());
     }
 
+    // Like dcx-dai:role != 'value' in XPath: true if there is a role with another value
+    private static boolean hasRoleOtherThan(DdmElement element, String value) {
+        return element.getChildren("dcx-dai:role").anyMatch(role -> !value.equals(role.getText()));
+    }
+
     static List<Statement> toContributors(Resource resource, Collection<Contributor> contributors) {
         return toComplexTerms(resource, DCTerms.contributor, contributors, (element, contributor) -> {
             if (contributor.getType() != null) {
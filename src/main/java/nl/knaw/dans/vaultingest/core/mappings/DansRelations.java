@@ -15,13 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.DansRelation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRel;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -54,16 +53,16 @@ public class DansRelations extends Base {
         return toDansRelations(resource, relations);
     }
 
-    static List<DansRelation> getDansRelations(Document document) {
-        var queries = labelToType.keySet().stream()
-            .map(name -> "/ddm:DDM/ddm:dcmiMetadata/ddm:" + name)
+    static List<DansRelation> getDansRelations(DdmModel ddm) {
+        var names = labelToType.keySet().stream()
+            .map(name -> "ddm:" + name)
             .toArray(String[]::new);
 
-        return XPathEvaluator.nodes(document.getDocumentElement(), queries)
+        return ddm.getDcmiMetadata(names)
             .map(item -> {
                 var label = labelToType.get(item.getLocalName());
-                var text = item.getTextContent();
-                var uri = XPathEvaluator.strings(item, "@href").findFirst().orElse(null);
+                var text = item.getText();
+                var uri = item.getAttribute("href");
 
                 return DansRelation.builder()
                     .type(label)
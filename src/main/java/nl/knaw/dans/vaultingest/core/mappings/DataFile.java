@@ -15,13 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.PayloadFile;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCore;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.SchemaDO;
-import org.w3c.dom.Node;
 
 import java.nio.file.Path;
 import java.time.LocalDate;
@@ -34,6 +34,12 @@ import java.util.Optional;
 
 public class DataFile extends Base {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    // Needed for every file without accessibleToRights, and for the terms of access
+    private static final DdmModel.Fact<String> ACCESS_RIGHTS = model -> model.getProfile("ddm:accessRights")
+        .map(DdmElement::getText)
+        .map(String::trim)
+        .findFirst()
+        .orElse(null);
 
     public static List<Statement> toRDF(Resource resource, PayloadFile payloadFile, LocalDate embargoDate) {
         var result = new ArrayList<Statement>();
@@ -51,11 +57,11 @@ public class DataFile extends Base {
             .ifPresent(result::add);
 
         // FIL004A
-        toBasicTerm(resource, SchemaDO.description, getDescription(payloadFile.getFilesXmlNode()))
+        toBasicTerm(resource, SchemaDO.description, payloadFile.getDescription())
             .ifPresent(result::add);
 
         // FIL005, FIL006
-        toBasicTerm(resource, DVCore.restricted, isRestricted(payloadFile.getFilesXmlNode(), payloadFile.getDdmNode()))
+        toBasicTerm(resource, DVCore.restricted, isRestricted(payloadFile.getAccessibleToRights(), payloadFile.getDdm()))
             .ifPresent(result::add);
 
         result.addAll(toComplexTerms(resource, DVCore.embargoed, embargoDate != null ? List.of(embargoDate) : Collections.emptyList(), (element, value) -> {
@@ -68,24 +74,17 @@ public class DataFile extends Base {
         return result;
     }
 
-    static String getDescription(Node filesXmlNode) {
-        return XPathEvaluator.strings(filesXmlNode, "dcterms:description")
-            .findFirst().orElse(null);
+    static String getRestricted(String accessibleToRights, DdmModel ddm) {
+        return Boolean.toString(isRestricted(accessibleToRights, ddm));
     }
 
-    static String getRestricted(Node filesXmlNode, Node ddm) {
-        return Boolean.toString(isRestricted(filesXmlNode, ddm));
-    }
-
-    static boolean isRestricted(Node filesXmlNode, Node ddm) {
-        var accessibleToRights = getAccessibleToRights(filesXmlNode);
-        var accessRights = getAccessRights(ddm);
-
+    static boolean isRestricted(String accessibleToRights, DdmModel ddm) {
         if (accessibleToRights != null) {
             // if ANONYMOUS then false else true
             return !"ANONYMOUS".equals(accessibleToRights);
         }
 
+        var accessRights = getAccessRights(ddm);
         if (accessRights != null) {
             // if OPEN_ACCESS then false else true
             return !"OPEN_ACCESS".equals(accessRights);
@@ -94,22 +93,14 @@ public class DataFile extends Base {
         return false;
     }
 
-    static String getAccessibleToRights(Node filesXmlNode) {
-        return XPathEvaluator.strings(filesXmlNode, "files:accessibleToRights")
-            .findFirst()
-            .orElse(null);
-    }
-
-    static String getAccessRights(Node ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/ddm:accessRights")
-            .map(String::trim)
-            .findFirst()
-            .orElse(null);
+    static String getAccessRights(DdmModel ddm) {
+        return ddm.get(ACCESS_RIGHTS);
     }
 
     // TODO add mapping if FIL008 is mapped in the document (see Ingest Flow Mapping Rules)
-    static String getEmbargo(Node ddm) {
-        var value = XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/ddm:available")
+    static String getEmbargo(DdmModel ddm) {
+        var value = ddm.getProfile("ddm:available")
+            .map(DdmElement::getText)
             .findFirst()
             .map(String::trim)
             .map(formatter::parse)
@@ -15,13 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Description;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,12 +34,12 @@ public class Descriptions extends Base {
         return toDescriptions(resource, getDescriptions(deposit.getDdm()));
     }
 
-    static List<Description> getDescriptions(Document document) {
+    static List<Description> getDescriptions(DdmModel ddm) {
         // CIT009, profile / description
-        var profileDescriptions = getAllProfileDescriptions(document);
+        var profileDescriptions = getAllProfileDescriptions(ddm);
 
         // CIT010, first title is for 002, the rest should go into the descriptions
-        var titles = AlternativeTitles.getAlternativeTitles(document)
+        var titles = AlternativeTitles.getAlternativeTitles(ddm)
             .stream().skip(1)
             .map(s -> Description.builder()
                 .value(s)
@@ -48,25 +48,25 @@ public class Descriptions extends Base {
             .collect(Collectors.toList());
 
         // CIT011, dcmiMetadata / [tags]
-        var dcmiDescriptions = XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:date",
-                "/ddm:DDM/ddm:dcmiMetadata/dc:date",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateAccepted",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateCopyrighted",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateSubmitted",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:modified",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:issued",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:valid",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:coverage")
+        var dcmiDescriptions = ddm.getDcmiMetadata(
+                "dcterms:date",
+                "dc:date",
+                "dcterms:dateAccepted",
+                "dcterms:dateCopyrighted",
+                "dcterms:dateSubmitted",
+                "dcterms:modified",
+                "dcterms:issued",
+                "dcterms:valid",
+                "dcterms:coverage")
             .map(node -> Description.builder()
                 .type(node.getLocalName())
-                .value(node.getTextContent().trim())
+                .value(node.getText().trim())
                 .build()
             );
 
         // CIT012, dcmiMetadata / description
-        var dcmiDescription = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:description")
+        var dcmiDescription = ddm.getDcmiMetadata("dcterms:description")
+            .map(DdmElement::getText)
             .map(value -> Description.builder()
                 .value(value.trim())
                 .build()
@@ -81,11 +81,11 @@ public class Descriptions extends Base {
         return result;
     }
 
-    public static Stream<Description> getAllProfileDescriptions(Document document) {
-        return XPathEvaluator.strings(document,
-            "/ddm:DDM/ddm:profile/dc:description",
-            "/ddm:DDM/ddm:profile/dcterms:description"
-        ).map(value -> Description.builder()
+    public static Stream<Description> getAllProfileDescriptions(DdmModel ddm) {
+        return ddm.getProfile(
+            "dc:description",
+            "dcterms:description"
+        ).map(DdmElement::getText).map(value -> Description.builder()
             .value(value.trim())
             .build()
         );
@@ -15,13 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Distributor;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,18 +34,21 @@ public class Distributors extends Base {
         return toDistributors(resource, getDistributors(deposit.getDdm()));
     }
 
-    static List<Distributor> getDistributors(Document document) {
-        var filter = "[text() != 'DANS' and text() != 'DANS/KNAW' and text() != 'DANS-KNAW']";
-
-        return XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:publisher" + filter,
-                "/ddm:DDM/ddm:dcmiMetadata/dc:publisher" + filter)
+    static List<Distributor> getDistributors(DdmModel ddm) {
+        return ddm.getDcmiMetadata("dcterms:publisher", "dc:publisher")
+            .filter(node -> hasTextOtherThan(node, "DANS") && hasTextOtherThan(node, "DANS/KNAW") && hasTextOtherThan(node, "DANS-KNAW"))
+            .map(DdmElement::getText)
             .map(value -> Distributor.builder()
                 .name(value)
                 .build())
             .collect(Collectors.toList());
     }
 
+    // Like text() != 'value' in XPath: true if there is a text node with another value
+    private static boolean hasTextOtherThan(DdmElement element, String value) {
+        return element.getTextNodes().stream().anyMatch(text -> !value.equals(text));
+    }
+
     static List<Statement> toDistributors(Resource resource, Collection<Distributor> distributors) {
         return toComplexTerms(resource, DVCitation.distributor, distributors, (element, distributor) -> {
             if (distributor.getName() != null) {
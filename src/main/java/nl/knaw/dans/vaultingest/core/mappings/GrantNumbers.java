@@ -15,16 +15,16 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Funder;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.GrantNumber;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.NWOGrantNumber;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.SchemaDO;
-import org.w3c.dom.Document;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -42,8 +42,8 @@ public class GrantNumbers extends Base {
     }
 
     // CIT022
-    static List<GrantNumber> getFunders(Document document) {
-        return XPathEvaluator.nodes(document, "/ddm:DDM/ddm:dcmiMetadata/ddm:funding")
+    static List<GrantNumber> getFunders(DdmModel ddm) {
+        return ddm.getDcmiMetadata("ddm:funding")
             .map(node -> Funder.builder()
                 .funderName(getFirstValue(node, "ddm:funderName"))
                 .fundingProgramme(getFirstValue(node, "ddm:fundingProgramme"))
@@ -55,13 +55,13 @@ public class GrantNumbers extends Base {
     }
 
     // CIT023
-    static List<GrantNumber> getGrantNumbers(Document document) {
-        var idType = getIdTypeNamespace(document);
+    static List<GrantNumber> getGrantNumbers(DdmModel ddm) {
+        var idType = getIdTypeNamespace(ddm);
+        var nwoProjectNr = String.format("%s:NWO-PROJECTNR", idType);
 
-        return XPathEvaluator.strings(document,
-                String.format(
-                    "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type = '%s:NWO-PROJECTNR']", idType)
-            )
+        return ddm.getDcmiMetadata("dcterms:identifier")
+            .filter(node -> nwoProjectNr.equals(node.getAttribute("xsi:type")))
+            .map(DdmElement::getText)
             .map(value -> NWOGrantNumber.builder()
                 .value(value)
                 .build())
@@ -15,15 +15,15 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRel;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 public class InCollection extends Base {
@@ -31,11 +31,11 @@ public class InCollection extends Base {
         return toDansCollections(resource, getInCollections(deposit.getDdm()));
     }
 
-    static List<String> getInCollections(Document document) {
-        var results = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/ddm:inCollection" +
-                    "[@subjectScheme = 'DANS Collection' and @schemeURI = 'https://vocabularies.dans.knaw.nl/collections']" +
-                    "/@valueURI")
+    static List<String> getInCollections(DdmModel ddm) {
+        var results = ddm.getDcmiMetadata("ddm:inCollection")
+            .filter(node -> "DANS Collection".equals(node.getAttribute("subjectScheme")) && "https://vocabularies.dans.knaw.nl/collections".equals(node.getAttribute("schemeURI")))
+            .map(node -> node.getAttribute("valueURI"))
+            .filter(Objects::nonNull)
             .map(String::trim)
             .distinct()
             .collect(Collectors.toList());
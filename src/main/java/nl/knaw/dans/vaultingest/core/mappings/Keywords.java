@@ -15,13 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Keyword;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -40,53 +40,51 @@ public class Keywords extends Base {
         return toKeywords(resource, getKeywords(deposit.getDdm()));
     }
 
-    static List<Keyword> getKeywords(Document document) {
+    static List<Keyword> getKeywords(DdmModel ddm) {
         var results = new ArrayList<Keyword>();
-        results.addAll(getKeywordsWithoutScheme(document));
-        results.addAll(getPanAndAatKeywords(document));
-        results.addAll(getLanguageKeywords(document));
+        results.addAll(getKeywordsWithoutScheme(ddm));
+        results.addAll(getPanAndAatKeywords(ddm));
+        results.addAll(getLanguageKeywords(ddm));
 
         return results;
     }
 
     // CIT014
-    static List<Keyword> getKeywordsWithoutScheme(Document document) {
+    static List<Keyword> getKeywordsWithoutScheme(DdmModel ddm) {
         // CIT014
-        return XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:subject[not(@schemeURI) and not(@subjectScheme)]",
-                "/ddm:DDM/ddm:dcmiMetadata/dc:subject[not(@schemeURI) and not(@subjectScheme)]")
-            .map(node -> Keyword.builder().text(node.getTextContent().trim()).build())
+        return ddm.getDcmiMetadata("dcterms:subject", "dc:subject")
+            .filter(node -> !node.hasAttribute("schemeURI") && !node.hasAttribute("subjectScheme"))
+            .map(node -> Keyword.builder().text(node.getText().trim()).build())
             .collect(Collectors.toList());
     }
 
     // CIT015
-    static List<Keyword> getPanAndAatKeywords(Document document) {
-        var expr = "/ddm:DDM/ddm:dcmiMetadata/ddm:subject[" +
-            String.format("(@schemeURI = '%s' and @subjectScheme = '%s')", SCHEME_URI_PAN, SCHEME_PAN) +
-            " or " +
-            String.format("(@schemeURI = '%s' and @subjectScheme = '%s')", SCHEME_URI_AAT, SCHEME_AAT) +
-            "]";
-
+    static List<Keyword> getPanAndAatKeywords(DdmModel ddm) {
         // CIT014
-        return XPathEvaluator.nodes(document, expr)
+        return ddm.getDcmiMetadata("ddm:subject")
+            .filter(node -> isScheme(node, SCHEME_URI_PAN, SCHEME_PAN) || isScheme(node, SCHEME_URI_AAT, SCHEME_AAT))
             .map(node -> Keyword.builder()
-                .text(node.getTextContent().trim())
-                .vocabulary(node.getAttributes().getNamedItem("subjectScheme").getTextContent())
-                .vocabularyUri(node.getAttributes().getNamedItem("schemeURI").getTextContent())
+                .text(node.getText().trim())
+                .vocabulary(node.getAttribute("subjectScheme"))
+                .vocabularyUri(node.getAttribute("schemeURI"))
                 .build())
             .collect(Collectors.toList());
     }
 
     // CIT016
-    static List<Keyword> getLanguageKeywords(Document document) {
-        return XPathEvaluator.strings(document,
-            "/ddm:DDM/ddm:dcmiMetadata/dcterms:language"
-        ).map(value -> Keyword.builder()
+    static List<Keyword> getLanguageKeywords(DdmModel ddm) {
+        return ddm.getDcmiMetadata(
+            "dcterms:language"
+        ).map(DdmElement::getText).map(value -> Keyword.builder()
             .text(value.trim())
             .build()
         ).collect(Collectors.toList());
     }
 
+    private static boolean isScheme(DdmElement node, String schemeUri, String subjectScheme) {
+        return schemeUri.equals(node.getAttribute("schemeURI")) && subjectScheme.equals(node.getAttribute("subjectScheme"));
+    }
+
     static List<Statement> toKeywords(Resource resource, Collection<Keyword> keywords) {
         return toComplexTerms(resource, DVCitation.keyword, keywords, (element, keyword) -> {
             element.addProperty(DVCitation.keywordValue, keyword.getText());
@@ -15,13 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.LanguageResolver;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,13 +33,12 @@ public class Languages extends Base {
         return toLanguages(resource, getLanguages(deposit.getDdm(), languageResolver));
     }
 
-    static List<String> getLanguages(Document document, LanguageResolver languageResolver) {
+    static List<String> getLanguages(DdmModel ddm, LanguageResolver languageResolver) {
         // CIT018, ddm:language / @code
-        return XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/ddm:language[" +
-                    "@encodingScheme='ISO639-1' or " +
-                    "@encodingScheme='ISO639-2']/@code"
-            )
+        return ddm.getDcmiMetadata("ddm:language")
+            .filter(node -> "ISO639-1".equals(node.getAttribute("encodingScheme")) || "ISO639-2".equals(node.getAttribute("encodingScheme")))
+            .map(node -> node.getAttribute("code"))
+            .filter(Objects::nonNull)
             .map(languageResolver::resolve)
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
@@ -15,13 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
-import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.SchemaDO;
-import org.w3c.dom.Document;
 
 import java.util.Optional;
 
@@ -31,12 +30,12 @@ public class License extends Base {
         return toLicense(resource, getLicense(deposit.getDdm()));
     }
 
-    static String getLicense(Document document) {
-        var dctermsNamespace = document.lookupPrefix(XmlNamespaces.NAMESPACE_DCTERMS);
+    static String getLicense(DdmModel ddm) {
+        var uriType = String.format("%s:URI", ddm.getDctermsPrefix());
 
-        return XPathEvaluator.strings(document,
-                String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:license[@xsi:type='%s:URI']", dctermsNamespace)
-            )
+        return ddm.getDcmiMetadata("dcterms:license")
+            .filter(node -> uriType.equals(node.getAttribute("xsi:type")))
+            .map(DdmElement::getText)
             .map(String::trim)
             .findFirst()
             .orElse(null);
@@ -15,13 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.LanguageResolver;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRights;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,9 +33,9 @@ public class MetadataLanguages extends Base {
         return toLanguages(resource, getMetadataLanguages(deposit.getDdm(), languageResolver));
     }
 
-    static List<String> getMetadataLanguages(Document document, LanguageResolver languageResolver) {
+    static List<String> getMetadataLanguages(DdmModel ddm, LanguageResolver languageResolver) {
         // RIG003
-        return XPathEvaluator.strings(document, "//@xml:lang")
+        return ddm.getXmlLangs().stream()
             .distinct()
             .map(languageResolver::resolve)
             .filter(Objects::nonNull)
@@ -15,14 +15,14 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.OtherId;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -35,7 +35,7 @@ public class OtherIds extends Base {
         return toOtherIds(resource, getOtherIds(deposit.getDdm(), deposit.getMetadataValue("Has-Organizational-Identifier")));
     }
 
-    static List<OtherId> getOtherIds(Document document, List<String> organizationIdentifiers) {
+    static List<OtherId> getOtherIds(DdmModel ddm, List<String> organizationIdentifiers) {
         var results = new ArrayList<OtherId>();
 
         // CIT003, data from bag
@@ -56,9 +56,9 @@ public class OtherIds extends Base {
             .ifPresent(results::add);
 
         // CIT004, data from ddm
-        XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/ddm:identifier[not(@xsi:type)]",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[not(@xsi:type)]")
+        ddm.getDcmiMetadata("ddm:identifier", "dcterms:identifier")
+            .filter(node -> !node.hasAttribute("xsi:type"))
+            .map(DdmElement::getText)
             .map(identifier -> OtherId.builder()
                 .value(identifier)
                 .build()
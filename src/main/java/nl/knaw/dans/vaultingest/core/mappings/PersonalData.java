@@ -15,12 +15,11 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRights;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 public class PersonalData extends Base {
 
@@ -28,9 +27,9 @@ public class PersonalData extends Base {
         return toDansPersonalDataPresent(resource, isPersonalDataPresent(deposit.getDdm()));
     }
 
-    static boolean isPersonalDataPresent(Document document) {
-        return XPathEvaluator.nodes(document, "/ddm:DDM/ddm:profile/ddm:personalData[@present = 'Yes']")
-            .findAny().isPresent();
+    static boolean isPersonalDataPresent(DdmModel ddm) {
+        return ddm.getProfile("ddm:personalData")
+            .anyMatch(node -> "Yes".equals(node.getAttribute("present")));
     }
 
     static Statement toDansPersonalDataPresent(Resource resource, boolean isPersonalDataPresent) {
@@ -15,15 +15,15 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
-import org.w3c.dom.Document;
 
 import java.util.Optional;
 
@@ -34,8 +34,9 @@ public class ProductionDate extends Base {
         return toProductionDate(resource, getProductionDate(deposit.getDdm()));
     }
 
-    static String getProductionDate(Document document) {
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/ddm:created")
+    static String getProductionDate(DdmModel ddm) {
+        return ddm.getProfile("ddm:created")
+            .map(DdmElement::getText)
             .findFirst()
             .map(ProductionDate::toYearMonthDayFormat)
             .orElse(null);
@@ -15,14 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Publication;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.Datacite;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -35,21 +34,17 @@ public class Publications extends Base {
         return toPublications(resource, getPublications(deposit.getDdm()));
     }
 
-    static List<Publication> getPublications(Document document) {
+    static List<Publication> getPublications(DdmModel ddm) {
         // CIT017
-        var idType = getIdTypeNamespace(document);
+        var idType = getIdTypeNamespace(ddm);
 
         // identifier might have dcterms or dc as prefix, query both
-        var queries = Set.of("dcterms", "dc").stream().map(prefix ->
-                String.format("/ddm:DDM/ddm:dcmiMetadata/%s:identifier[" +
-                    "@xsi:type = '%s:ISSN' or @xsi:type = '%s:ISBN'" +
-                    "]", prefix, idType, idType))
-            .toArray(String[]::new);
+        var types = Set.of(String.format("%s:ISSN", idType), String.format("%s:ISBN", idType));
 
-        return XPathEvaluator.nodes(document, queries)
+        return ddm.getDcmiMetadata("dcterms:identifier", "dc:identifier")
+            .filter(node -> types.contains(node.getAttribute("xsi:type")))
             .map(node -> {
-                var idTypeValue = node.getAttributes()
-                    .getNamedItem("xsi:type").getTextContent()
+                var idTypeValue = node.getAttribute("xsi:type")
                     .trim()
                     .replaceAll("id-type:", "");
 
@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRights;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -32,9 +32,10 @@ public class RightsHolders extends Base {
         return toDansRightsHolders(resource, getOtherIds(deposit.getDdm()));
     }
 
-    static List<String> getOtherIds(Document document) {
+    static List<String> getOtherIds(DdmModel ddm) {
         // RIG001
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:dcmiMetadata/dcterms:rightsHolder")
+        return ddm.getDcmiMetadata("dcterms:rightsHolder")
+            .map(DdmElement::getText)
             .collect(Collectors.toList());
     }
 
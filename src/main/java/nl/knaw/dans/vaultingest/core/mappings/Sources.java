@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.PROV;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -32,9 +32,9 @@ public class Sources extends Base {
         return toDataSources(resource, getSources(deposit.getDdm()));
     }
 
-    static List<String> getSources(Document document) {
-        return XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:source")
+    static List<String> getSources(DdmModel ddm) {
+        return ddm.getDcmiMetadata("dcterms:source")
+            .map(DdmElement::getText)
             .map(String::trim)
             .collect(Collectors.toList());
     }
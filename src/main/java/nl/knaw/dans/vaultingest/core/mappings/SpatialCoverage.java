@@ -15,18 +15,19 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.CountryResolver;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansTS;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SpatialCoverage extends Base {
     public static List<Statement> toRDF(Resource resource, Deposit deposit, CountryResolver countryResolver) {
@@ -38,22 +39,25 @@ public class SpatialCoverage extends Base {
 
     }
 
-    static List<String> getSpatialCoveragesControlled(Document ddm, CountryResolver countryResolver) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:spatial")
-            .map(String::trim)
-            .distinct()
+    static List<String> getSpatialCoveragesControlled(DdmModel ddm, CountryResolver countryResolver) {
+        return getSpatialCoverages(ddm)
             .filter(countryResolver::isControlledValue)
             .collect(Collectors.toList());
     }
 
-    static List<String> getSpatialCoveragesText(Document ddm, CountryResolver countryResolver) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:spatial")
-            .map(String::trim)
-            .distinct()
+    static List<String> getSpatialCoveragesText(DdmModel ddm, CountryResolver countryResolver) {
+        return getSpatialCoverages(ddm)
             .filter(c -> !countryResolver.isControlledValue(c))
             .collect(Collectors.toList());
     }
 
+    private static Stream<String> getSpatialCoverages(DdmModel ddm) {
+        return ddm.getDcmiMetadata("dcterms:spatial")
+            .map(DdmElement::getText)
+            .map(String::trim)
+            .distinct();
+    }
+
     static List<Statement> toSpatialCoverageControlled(Resource resource, Collection<String> spatialCoveragesControlled) {
         return toBasicTerms(resource, DansTS.dansSpatialCoverageControlled, spatialCoveragesControlled);
     }
@@ -16,12 +16,12 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import com.google.common.collect.Comparators;
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -59,9 +59,9 @@ public class Subjects extends Base {
     }
 
     // CIT013
-    static List<String> getSubjects(Document document) {
-        var results = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:profile/ddm:audience")
+    static List<String> getSubjects(DdmModel ddm) {
+        var results = ddm.getProfile("ddm:audience")
+            .map(DdmElement::getText)
             .map(Subjects::getSubject)
             .collect(Collectors.toSet());
 
@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansTS;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
@@ -31,8 +31,9 @@ public class TemporalCoverage extends Base {
         return toTemporalCoverages(resource, getTemporalCoverages(deposit.getDdm()));
     }
 
-    static List<String> getTemporalCoverages(Document ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:temporal")
+    static List<String> getTemporalCoverages(DdmModel ddm) {
+        return ddm.getDcmiMetadata("dcterms:temporal")
+            .map(DdmElement::getText)
             .map(String::trim)
             .distinct()
             .collect(Collectors.toList());
@@ -15,52 +15,58 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.PayloadFile;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCore;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
-import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class Terms extends Base {
 
+    private static final Set<String> knownOrRestrictive = Set.of("RESTRICTED_REQUEST", "KNOWN");
+
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
+        // The files are only walked once, for both the request access and the terms of access
+        var accessibleToRights = getAccessibleToRights(deposit.getPayloadFiles());
 
         return toComplexTerms(resource, DVCore.fileTermsOfAccess, List.of(deposit), (element, value) -> {
-            var requestAccess = isRequestAccess(deposit.getDdm(), deposit.getPayloadFiles()) ? "Yes" : "No";
+            var requestAccess = isRequestAccess(deposit.getDdm(), accessibleToRights) ? "Yes" : "No";
             element.addProperty(DVCore.fileRequestAccess, requestAccess);
 
             if ("No".equals(requestAccess)) {
-                var terms = getTermsOfAccess(deposit.getDdm(), deposit.getPayloadFiles());
+                var terms = getTermsOfAccess(deposit.getDdm(), accessibleToRights);
 
                 if (terms != null) {
-                    element.addProperty(DVCore.termsOfAccess, getTermsOfAccess(deposit.getDdm(), deposit.getPayloadFiles()));
+                    element.addProperty(DVCore.termsOfAccess, terms);
                 }
             }
         });
     }
 
-    // false = no, true = yes
-    static boolean isRequestAccess(Document ddm, Collection<PayloadFile> files) {
-        // TRM002
-        var containsNone = false;
-
-        for (var file : files) {
-            var accessibleToRights = DataFile.getAccessibleToRights(file.getFilesXmlNode());
+    // The distinct accessibleToRights values of the files
+    static Set<String> getAccessibleToRights(Collection<PayloadFile> files) {
+        return files.stream()
+            .map(PayloadFile::getAccessibleToRights)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+    }
 
-            if ("NONE".equals(accessibleToRights)) {
-                containsNone = true;
-                break;
-            }
-        }
+    // false = no, true = yes
+    static boolean isRequestAccess(DdmModel ddm, Collection<PayloadFile> files) {
+        return isRequestAccess(ddm, getAccessibleToRights(files));
+    }
 
-        if (containsNone) {
+    private static boolean isRequestAccess(DdmModel ddm, Set<String> accessibleToRights) {
+        // TRM002
+        if (accessibleToRights.contains("NONE")) {
             return false;
         }
 
@@ -72,20 +78,16 @@ public class Terms extends Base {
         // TRM004
     }
 
-    static String getTermsOfAccess(Document ddm, Collection<PayloadFile> files) {
-        // TRM005
-        var containsNone = false;
-
-        for (var file : files) {
-            var accessRights = DataFile.getAccessibleToRights(file.getFilesXmlNode());
+    static String getTermsOfAccess(DdmModel ddm, Collection<PayloadFile> files) {
+        return getTermsOfAccess(ddm, getAccessibleToRights(files));
+    }
 
-            if ("NONE".equals(accessRights)) {
-                containsNone = true;
-                break;
-            }
-        }
+    private static String getTermsOfAccess(DdmModel ddm, Set<String> accessibleToRights) {
+        // TRM005
+        var containsNone = accessibleToRights.contains("NONE");
 
-        var accessRights = XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:accessRights")
+        var accessRights = ddm.getDcmiMetadata("dcterms:accessRights")
+            .map(DdmElement::getText)
             .map(String::trim)
             .findFirst()
             .orElse(null);
@@ -95,14 +97,7 @@ public class Terms extends Base {
         }
 
         // TRM006
-        var knownOrRestrictive = Set.of("RESTRICTED_REQUEST", "KNOWN");
-
-        var accessibleToRights = files.stream()
-            .map(f -> DataFile.getAccessibleToRights(f.getFilesXmlNode()))
-            .filter(Objects::nonNull)
-            .anyMatch(knownOrRestrictive::contains);
-
-        if (accessibleToRights) {
+        if (accessibleToRights.stream().anyMatch(knownOrRestrictive::contains)) {
             return accessRights != null ? accessRights : "";
         }
 
@@ -15,13 +15,13 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmElement;
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.SchemaDO;
-import org.w3c.dom.Document;
 
 import java.util.List;
 
@@ -31,11 +31,14 @@ public class Titles {
         return rdfTitle(resource, getTitle(deposit.getDdm()));
     }
 
-    public static String getTitle(Document ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/dc:title", "ddm:DDM/ddm:profile/dcterms:title")
-            .map(String::trim)
-            .findFirst()
-            .orElse(null);
+    private static final DdmModel.Fact<String> TITLE = model -> model.getProfile("dc:title", "dcterms:title")
+        .map(DdmElement::getText)
+        .map(String::trim)
+        .findFirst()
+        .orElse(null);
+
+    public static String getTitle(DdmModel ddm) {
+        return ddm.get(TITLE);
     }
 
     static List<Statement> rdfTitle(Resource resource, String title) {
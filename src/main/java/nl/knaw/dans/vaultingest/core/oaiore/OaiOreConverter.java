@@ -60,22 +60,51 @@ import org.apache.jena.vocabulary.SchemaDO;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 public class OaiOreConverter {
+    private static final int DEFAULT_FILES_PER_CHUNK = 100;
 
     private final LanguageResolver languageResolver;
     private final CountryResolver countryResolver;
+    // The payload files are converted in chunks of this size, in parallel if there is more than one chunk
+    private final int filesPerChunk;
 
     public OaiOreConverter(LanguageResolver languageResolver, CountryResolver countryResolver) {
+        this(languageResolver, countryResolver, DEFAULT_FILES_PER_CHUNK);
+    }
+
+    OaiOreConverter(LanguageResolver languageResolver, CountryResolver countryResolver, int filesPerChunk) {
+        if (filesPerChunk < 1) {
+            throw new IllegalArgumentException("filesPerChunk must be at least 1");
+        }
         this.languageResolver = languageResolver;
         this.countryResolver = countryResolver;
+        this.filesPerChunk = filesPerChunk;
     }
 
     public Model convert(Deposit deposit, ContactPersonConfig contactPerson) {
         var model = ModelFactory.createDefaultModel();
+        convert(deposit, contactPerson, model::add);
+        return model;
+    }
+
+    /**
+     * Converts the deposit to OAI-ORE in parts, so that the graph can be written while it is being generated. The first part contains the resource map and the aggregation; the aggregated
+     * resources follow in chunks. Only a few chunks are held in memory at any time.
+     *
+     * @param deposit       the deposit
+     * @param contactPerson the contact person
+     * @param parts         receives the parts, in order, on the calling thread
+     */
+    public void convert(Deposit deposit, ContactPersonConfig contactPerson, Consumer<Model> parts) {
+        var model = ModelFactory.createDefaultModel();
 
         var resourceMap = createResourceMap(deposit, model);
-        var resource = createAggregation(deposit, model, Available.getEmbargoDate(deposit.getDdm()));
+        var resource = createAggregation(deposit, model);
 
         model.add(Titles.toRDF(resource, deposit));
         AlternativeTitles.toRDF(resource, deposit)
@@ -127,7 +156,8 @@ public class OaiOreConverter {
             resource
         ));
 
-        return model;
+        parts.accept(model);
+        createAggregatedResources(deposit, resource, Available.getEmbargoDate(deposit.getDdm()), parts);
     }
 
     Resource createResourceMap(Deposit deposit, Model model) {
@@ -167,23 +197,55 @@ public class OaiOreConverter {
     }
 
     Resource createAggregation(Deposit deposit, Model model, LocalDate embargoDate) {
+        var resource = createAggregation(deposit, model);
+        createAggregatedResources(deposit, resource, embargoDate, model::add);
+        return resource;
+    }
+
+    private Resource createAggregation(Deposit deposit, Model model) {
         var resource = model.createResource(deposit.getNbn());
         var type = model.createStatement(resource, RDF.type, ORE.Aggregation);
 
         model.add(type);
 
-        if (deposit.getPayloadFiles() != null) {
-            for (var file : deposit.getPayloadFiles()) {
-                var fileResource = createAggregatedResource(model, file, embargoDate);
+        return resource;
+    }
 
-                model.add(model.createStatement(
-                    resource,
-                    ORE.aggregates,
-                    fileResource
-                ));
-            }
+    private void createAggregatedResources(Deposit deposit, Resource aggregation, LocalDate embargoDate, Consumer<Model> chunkConsumer) {
+        if (deposit.getPayloadFiles() == null) {
+            return;
         }
 
-        return resource;
+        var files = deposit.getPayloadFiles();
+        var chunks = (files.size() + filesPerChunk - 1) / filesPerChunk;
+        // Enough chunks to keep the common pool busy, but not all of them, so that memory use does not grow with the number of files
+        var chunksPerWindow = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+
+        for (var window = 0; window < chunks; window += chunksPerWindow) {
+            // Jena models are not thread-safe, so each chunk gets a model of its own. The chunk models are passed on in file order.
+            var chunkModels = IntStream.range(window, Math.min(chunks, window + chunksPerWindow))
+                .parallel()
+                .mapToObj(chunk -> createAggregatedResources(
+                    files.subList(chunk * filesPerChunk, Math.min(files.size(), (chunk + 1) * filesPerChunk)), aggregation, embargoDate))
+                .toList();
+
+            chunkModels.forEach(chunkConsumer);
+        }
+    }
+
+    private Model createAggregatedResources(List<PayloadFile> files, Resource aggregation, LocalDate embargoDate) {
+        var model = ModelFactory.createDefaultModel();
+
+        for (var file : files) {
+            var fileResource = createAggregatedResource(model, file, embargoDate);
+
+            model.add(model.createStatement(
+                aggregation,
+                ORE.aggregates,
+                fileResource
+            ));
+        }
+
+        return model;
     }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes OAI-ORE as JSON-LD, framed as a single ore:ResourceMap object, while the graph is being generated. The document has the shape of framing the whole graph with
+ * <code>{"@type": "ore:ResourceMap"}</code>: the resource map embeds the aggregation it describes, which embeds the resources it aggregates, and every other node is embedded where it is first
+ * referenced. It describes the same graph, but it is not the same document:
+ *
+ * <ul>
+ *     <li>the @context lists all known prefixes, not only the ones that are used, because it is written before the graph has been seen;</li>
+ *     <li>ore:describes and ore:aggregates come after the other properties of their node;</li>
+ *     <li>a blank node keeps its identifier if it is referenced more than once within the part that contains it, rather than within the whole graph. A blank node must therefore only be
+ *     referenced from one part.</li>
+ * </ul>
+ *
+ * <p>
+ * The first part written must contain the resource map and the aggregation; later parts may only add aggregated resources. The ore:describes and ore:aggregates properties are written after the
+ * other properties of their node, so that the aggregated resources can be written as they arrive.
+ * </p>
+ */
+public class OaiOreJsonLdWriter implements Closeable {
+    private final ObjectMapper objectMapper;
+    private final JsonGenerator generator;
+    // Namespace to prefix; also written as the @context
+    private final Map<String, String> prefixes = new HashMap<>();
+    private final Map<String, String> context;
+
+    private Resource aggregation;
+    private int aggregatedResources;
+    // Compacted JSON-LD writes a single value without an array, so the first aggregated resource is held back until it is known whether there is a second
+    private TokenBuffer firstAggregatedResource;
+
+    /**
+     * @param output       the stream to write to; it is not closed by this writer
+     * @param namespaces   the namespaces to use in the @context, by prefix
+     * @param objectMapper used to create the JSON generator
+     * @throws IOException if the generator could not be created
+     */
+    public OaiOreJsonLdWriter(OutputStream output, Map<String, String> namespaces, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.generator = objectMapper.createGenerator(output);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.context = new TreeMap<>(namespaces);
+        namespaces.forEach((prefix, namespace) -> prefixes.put(namespace, prefix));
+    }
+
+    /**
+     * Writes a part of the graph.
+     *
+     * @param part the part
+     * @throws UncheckedIOException if the part could not be written
+     * @throws IllegalStateException if the first part does not contain a resource map that describes an aggregation
+     */
+    public void write(Model part) {
+        try {
+            if (aggregation == null) {
+                writeResourceMap(part);
+            }
+
+            var files = part.listObjectsOfProperty(aggregation, ORE.aggregates).toList().stream()
+                .filter(RDFNode::isResource)
+                .map(RDFNode::asResource)
+                .sorted(Comparator.comparing(resource -> resource.isAnon() ? "" : resource.getURI()))
+                .toList();
+
+            for (var file : files) {
+                writeAggregatedResource(part, file);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (aggregation != null) {
+            if (aggregatedResources == 1) {
+                generator.writeFieldName(compactIri(ORE.aggregates.getURI()));
+                firstAggregatedResource.serialize(generator);
+            }
+            else if (aggregatedResources > 1) {
+                generator.writeEndArray();
+            }
+            // The aggregation and the resource map
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.close();
+    }
+
+    private void writeResourceMap(Model part) throws IOException {
+        var resourceMap = part.listSubjectsWithProperty(RDF.type, ORE.ResourceMap).toList().stream()
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("The first part of the OAI-ORE does not contain a resource map"));
+        aggregation = part.listObjectsOfProperty(resourceMap, ORE.describes).toList().stream()
+            .filter(RDFNode::isResource)
+            .map(RDFNode::asResource)
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("The resource map does not describe an aggregation"));
+
+        var embedded = new HashSet<Resource>();
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("@context");
+        for (var entry : context.entrySet()) {
+            generator.writeStringField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+        embedded.add(resourceMap);
+        writeNodeProperties(generator, part, resourceMap, ORE.describes, embedded);
+
+        generator.writeFieldName(compactIri(ORE.describes.getURI()));
+        generator.writeStartObject();
+        embedded.add(aggregation);
+        writeNodeProperties(generator, part, aggregation, ORE.aggregates, embedded);
+        // Left open for the aggregated resources
+    }
+
+    private void writeAggregatedResource(Model part, Resource file) throws IOException {
+        aggregatedResources++;
+        var embedded = new HashSet<Resource>();
+        if (aggregatedResources == 1) {
+            firstAggregatedResource = new TokenBuffer(objectMapper, false);
+            writeValue(firstAggregatedResource, part, file, embedded);
+            return;
+        }
+        if (aggregatedResources == 2) {
+            generator.writeFieldName(compactIri(ORE.aggregates.getURI()));
+            generator.writeStartArray();
+            firstAggregatedResource.serialize(generator);
+            firstAggregatedResource = null;
+        }
+        writeValue(generator, part, file, embedded);
+    }
+
+    private void writeNode(JsonGenerator json, Model part, Resource node, Set<Resource> embedded) throws IOException {
+        json.writeStartObject();
+        writeNodeProperties(json, part, node, null, embedded);
+        json.writeEndObject();
+    }
+
+    // Writes @id, @type and the properties of the node, except the given property
+    private void writeNodeProperties(JsonGenerator json, Model part, Resource node, Property except, Set<Resource> embedded) throws IOException {
+        if (node.isURIResource()) {
+            json.writeStringField("@id", compactIri(node.getURI()));
+        }
+        else if (part.listStatements(null, null, node).toList().size() > 1) {
+            json.writeStringField("@id", "_:" + node.getId().getLabelString());
+        }
+
+        var types = new ArrayList<String>();
+        var properties = new TreeMap<String, List<RDFNode>>();
+        for (var statement : part.listStatements(node, null, (RDFNode) null).toList()) {
+            if (statement.getPredicate().equals(RDF.type) && statement.getObject().isURIResource()) {
+                types.add(compactIri(statement.getObject().asResource().getURI()));
+            }
+            else if (!statement.getPredicate().equals(except)) {
+                properties.computeIfAbsent(compactIri(statement.getPredicate().getURI()), key -> new ArrayList<>()).add(statement.getObject());
+            }
+        }
+
+        if (types.size() == 1) {
+            json.writeStringField("@type", types.get(0));
+        }
+        else if (types.size() > 1) {
+            json.writeArrayFieldStart("@type");
+            for (var type : types) {
+                json.writeString(type);
+            }
+            json.writeEndArray();
+        }
+
+        for (var property : properties.entrySet()) {
+            json.writeFieldName(property.getKey());
+            var values = property.getValue();
+            if (values.size() > 1) {
+                json.writeStartArray();
+            }
+            for (var value : values) {
+                writeValue(json, part, value, embedded);
+            }
+            if (values.size() > 1) {
+                json.writeEndArray();
+            }
+        }
+    }
+
+    private void writeValue(JsonGenerator json, Model part, RDFNode value, Set<Resource> embedded) throws IOException {
+        if (value.isLiteral()) {
+            writeLiteral(json, value.asLiteral());
+            return;
+        }
+
+        var resource = value.asResource();
+        // Nodes with properties of their own are embedded the first time they are referenced
+        if (!embedded.contains(resource) && part.listStatements(resource, null, (RDFNode) null).hasNext()) {
+            embedded.add(resource);
+            writeNode(json, part, resource, embedded);
+        }
+        else {
+            json.writeStartObject();
+            json.writeStringField("@id", resource.isURIResource() ? compactIri(resource.getURI()) : "_:" + resource.getId().getLabelString());
+            json.writeEndObject();
+        }
+    }
+
+    private void writeLiteral(JsonGenerator json, Literal literal) throws IOException {
+        if (!literal.getLanguage().isEmpty()) {
+            json.writeStartObject();
+            json.writeStringField("@language", literal.getLanguage());
+            json.writeStringField("@value", literal.getLexicalForm());
+            json.writeEndObject();
+        }
+        else if (literal.getDatatypeURI() != null && !XSDDatatype.XSDstring.getURI().equals(literal.getDatatypeURI())) {
+            json.writeStartObject();
+            json.writeStringField("@type", compactIri(literal.getDatatypeURI()));
+            json.writeStringField("@value", literal.getLexicalForm());
+            json.writeEndObject();
+        }
+        else {
+            json.writeString(literal.getLexicalForm());
+        }
+    }
+
+    // Uses the prefix of the longest matching namespace, as JSON-LD compaction prefers the shortest compact IRI
+    private String compactIri(String iri) {
+        String namespace = null;
+        for (var candidate : prefixes.keySet()) {
+            if (iri.startsWith(candidate) && iri.length() > candidate.length() && (namespace == null || candidate.length() > namespace.length())) {
+                namespace = candidate;
+            }
+        }
+        if (namespace == null || iri.startsWith("//", namespace.length())) {
+            return iri;
+        }
+        return prefixes.get(namespace) + ":" + iri.substring(namespace.length());
+    }
+}
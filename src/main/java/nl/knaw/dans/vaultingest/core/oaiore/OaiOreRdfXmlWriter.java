@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.RDF;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes OAI-ORE as RDF/XML while it is being generated, one part of the graph at a time, so that the whole graph never has to be in memory.
+ *
+ * <p>
+ * Each subject of a part is written as a node element of its own, typed with its OAI-ORE type if it has one. A blank node that is the object of exactly one statement in its part is nested in
+ * that statement; other blank nodes are referred to by node ID, which, like rdf:nodeID itself, applies to the whole document, so a blank node keeps its ID in every part that refers to it.
+ * A subject may be described in more than one part.
+ * </p>
+ */
+public class OaiOreRdfXmlWriter implements Closeable {
+    private static final String INDENT = "  ";
+    // Used for namespaces without a known prefix; declared on the element that uses it
+    private static final String GENERATED_PREFIX = "j.0";
+    private static final List<Resource> prettyTypes = List.of(ORE.ResourceMap, ORE.Aggregation, ORE.AggregatedResource);
+
+    private final XMLStreamWriter writer;
+    private final Map<String, String> prefixes = new HashMap<>();
+    // Only blank nodes that are not nested get an ID
+    private final Map<Resource, String> nodeIds = new HashMap<>();
+
+    /**
+     * Starts the RDF/XML document.
+     *
+     * @param output     the stream to write to; it is not closed by this writer
+     * @param namespaces the namespaces to declare on the root element, by prefix
+     * @throws IOException if the document could not be started
+     */
+    public OaiOreRdfXmlWriter(OutputStream output, Map<String, String> namespaces) throws IOException {
+        try {
+            writer = XMLOutputFactory.newFactory().createXMLStreamWriter(output, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("rdf", "RDF", RDF.uri);
+            writer.writeNamespace("rdf", RDF.uri);
+            prefixes.put(RDF.uri, "rdf");
+            for (var namespace : new TreeMap<>(namespaces).entrySet()) {
+                writer.writeNamespace(namespace.getKey(), namespace.getValue());
+                prefixes.put(namespace.getValue(), namespace.getKey());
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Could not start RDF/XML document", e);
+        }
+    }
+
+    /**
+     * Writes the statements of a part of the graph.
+     *
+     * @param part the part
+     * @throws UncheckedIOException if the part could not be written
+     */
+    public void write(Model part) {
+        var subjects = part.listSubjects().toList();
+        // Resource map, aggregation and aggregated resources first, each in order of URI
+        subjects.sort(Comparator.comparingInt((Resource subject) -> typeRank(part, subject))
+            .thenComparing(subject -> subject.isAnon() ? "" : subject.getURI()));
+
+        try {
+            for (var subject : subjects) {
+                if (!isNested(part, subject)) {
+                    writeNode(part, subject, 1);
+                }
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new UncheckedIOException(new IOException("Could not write RDF/XML", e));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException("Could not end RDF/XML document", e);
+        }
+    }
+
+    private void writeNode(Model part, Resource subject, int depth) throws XMLStreamException {
+        var type = getPrettyType(part, subject);
+        indent(depth);
+        if (type != null) {
+            startElement(type.getURI());
+        }
+        else {
+            writer.writeStartElement("rdf", "Description", RDF.uri);
+        }
+
+        if (subject.isURIResource()) {
+            writer.writeAttribute("rdf", RDF.uri, "about", subject.getURI());
+        }
+        else if (!isNested(part, subject)) {
+            writer.writeAttribute("rdf", RDF.uri, "nodeID", getNodeId(subject));
+        }
+
+        var statements = part.listStatements(subject, null, (RDFNode) null).toList();
+        statements.sort(Comparator.comparing((Statement statement) -> statement.getPredicate().getURI()));
+        for (var statement : statements) {
+            if (type != null && statement.getPredicate().equals(RDF.type) && statement.getObject().equals(type)) {
+                continue;
+            }
+            writeProperty(part, statement, depth + 1);
+        }
+
+        indent(depth);
+        writer.writeEndElement();
+    }
+
+    private void writeProperty(Model part, Statement statement, int depth) throws XMLStreamException {
+        var predicate = statement.getPredicate().getURI();
+        var object = statement.getObject();
+        indent(depth);
+
+        if (object.isLiteral()) {
+            startElement(predicate);
+            writeLiteral(object.asLiteral());
+            writer.writeEndElement();
+        }
+        else if (object.isURIResource()) {
+            emptyElement(predicate);
+            writer.writeAttribute("rdf", RDF.uri, "resource", object.asResource().getURI());
+        }
+        else if (isNested(part, object.asResource())) {
+            startElement(predicate);
+            writeNode(part, object.asResource(), depth + 1);
+            indent(depth);
+            writer.writeEndElement();
+        }
+        else {
+            emptyElement(predicate);
+            writer.writeAttribute("rdf", RDF.uri, "nodeID", getNodeId(object.asResource()));
+        }
+    }
+
+    private void writeLiteral(Literal literal) throws XMLStreamException {
+        if (!literal.getLanguage().isEmpty()) {
+            writer.writeAttribute("xml", "http://www.w3.org/XML/1998/namespace", "lang", literal.getLanguage());
+        }
+        else if (literal.getDatatypeURI() != null && !XSDDatatype.XSDstring.getURI().equals(literal.getDatatypeURI())) {
+            writer.writeAttribute("rdf", RDF.uri, "datatype", literal.getDatatypeURI());
+        }
+        writer.writeCharacters(literal.getLexicalForm());
+    }
+
+    private void startElement(String uri) throws XMLStreamException {
+        var split = splitUri(uri);
+        var prefix = prefixes.get(split[0]);
+        if (prefix != null) {
+            writer.writeStartElement(prefix, split[1], split[0]);
+        }
+        else {
+            writer.writeStartElement(GENERATED_PREFIX, split[1], split[0]);
+            writer.writeNamespace(GENERATED_PREFIX, split[0]);
+        }
+    }
+
+    private void emptyElement(String uri) throws XMLStreamException {
+        var split = splitUri(uri);
+        var prefix = prefixes.get(split[0]);
+        if (prefix != null) {
+            writer.writeEmptyElement(prefix, split[1], split[0]);
+        }
+        else {
+            writer.writeEmptyElement(GENERATED_PREFIX, split[1], split[0]);
+            writer.writeNamespace(GENERATED_PREFIX, split[0]);
+        }
+    }
+
+    private void indent(int depth) throws XMLStreamException {
+        writer.writeCharacters("\n" + INDENT.repeat(depth));
+    }
+
+    private static boolean isNested(Model part, Resource node) {
+        return node.isAnon() && part.listStatements(null, null, node).toList().size() == 1;
+    }
+
+    private String getNodeId(Resource node) {
+        return nodeIds.computeIfAbsent(node, n -> "b" + nodeIds.size());
+    }
+
+    private static Resource getPrettyType(Model part, Resource subject) {
+        return prettyTypes.stream()
+            .filter(type -> part.contains(subject, RDF.type, type))
+            .findFirst()
+            .orElse(null);
+    }
+
+    private static int typeRank(Model part, Resource subject) {
+        var type = getPrettyType(part, subject);
+        return type == null ? prettyTypes.size() : prettyTypes.indexOf(type);
+    }
+
+    // Splits a URI into a namespace and a local name that is a valid XML name, as RDF/XML requires for element names
+    private static String[] splitUri(String uri) {
+        var start = uri.length();
+        while (start > 0 && isNameChar(uri.charAt(start - 1))) {
+            start--;
+        }
+        while (start < uri.length() && !isNameStartChar(uri.charAt(start))) {
+            start++;
+        }
+        if (start == uri.length()) {
+            throw new IllegalArgumentException("Cannot write " + uri + " as an RDF/XML element name");
+        }
+        return new String[] { uri.substring(0, start), uri.substring(start) };
+    }
+
+    private static boolean isNameStartChar(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+    }
+}
@@ -15,15 +15,7 @@
  */
 package nl.knaw.dans.vaultingest.core.oaiore;
 
-import com.apicatalog.jsonld.JsonLd;
-import com.apicatalog.jsonld.JsonLdOptions;
-import com.apicatalog.jsonld.document.JsonDocument;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.json.Json;
-import jakarta.json.JsonReader;
-import jakarta.json.JsonStructure;
-import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCore;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansArchaeology;
@@ -35,25 +27,34 @@ import nl.knaw.dans.vaultingest.core.mappings.vocabulary.Datacite;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.PROV;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.riot.RDFFormat;
-import org.apache.jena.riot.RDFWriter;
-import org.apache.jena.riot.SysRIOT;
 import org.apache.jena.sparql.vocabulary.FOAF;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.DC_11;
 import org.apache.jena.vocabulary.SchemaDO;
 
 import java.io.ByteArrayOutputStream;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.stream.Collectors;
 
-@Slf4j
 public class OaiOreSerializer {
+    // Declared on the root element of the RDF/XML and used as the @context of the JSON-LD
+    private static final Map<String, String> namespaces = Map.ofEntries(
+        Map.entry("cit", DVCitation.NS),
+        Map.entry("dcterms", DCTerms.NS),
+        Map.entry("datacite", Datacite.NS),
+        Map.entry("ore", ORE.NS),
+        Map.entry("dc", DC_11.NS),
+        Map.entry("foaf", FOAF.NS),
+        Map.entry("schema", SchemaDO.NS),
+        Map.entry("dvcore", DVCore.NS),
+        Map.entry("provo", PROV.NS),
+        Map.entry("dansRelationMetadata", DansRel.NS),
+        Map.entry("dansRights", DansRights.NS),
+        Map.entry("dansTemporalSpatial", DansTS.NS),
+        Map.entry("dansArchaeologyMetadata", DansArchaeology.NS),
+        Map.entry("dansDataVaultMetadata", DansDVMetadata.NS));
 
     private final ObjectMapper objectMapper;
 
@@ -61,126 +62,51 @@ public class OaiOreSerializer {
         this.objectMapper = objectMapper;
     }
 
-    public String serializeAsRdf(Model model) {
-        var topLevelResources = new Resource[] {
-            ORE.AggregatedResource,
-            ORE.Aggregation,
-            ORE.ResourceMap,
-        };
-
-        setNamespacePrefixes(model);
-
-        var properties = new HashMap<String, Object>();
-        properties.put("prettyTypes", topLevelResources);
-        properties.put("showXmlDeclaration", "true");
-
+    public String serializeAsRdf(Model model) throws IOException {
         var output = new ByteArrayOutputStream();
 
-        RDFWriter.create()
-            .format(RDFFormat.RDFXML_ABBREV)
-            .set(SysRIOT.sysRdfWriterProperties, properties)
-            .source(model)
-            .output(output);
+        try (var writer = createRdfWriter(output)) {
+            writer.write(model);
+        }
 
-        return output.toString();
+        return output.toString(StandardCharsets.UTF_8);
     }
 
-    public String serializeAsJsonLd(Model model) {
-        /*
-         * Framing got a bit more involved in Jena 5. We first have to create a JSON-LD, read it as a JSON structure, create a frame as a JSON structure,
-         * and then apply the frame using the JSON-LD Java library.
-         */
-
-        // The type must be set to "ResourceMap" so that the resource-map in the model will be used as the root resource.
-        // The context must be created as a string; setNamespacePrefixes has no effect.
-        var frame = String.format("""
-            {
-              "@context": %s,
-              "@type": "ore:ResourceMap"
-            }
-            """, namespacesAsJsonObject(getUsedNamespaces(model)));
-
-        String jsonLd = RDFWriter.create()
-            .source(model)
-            .format(RDFFormat.JSONLD11_PRETTY)
-            .asString();
+    /**
+     * Starts writing OAI-ORE as RDF/XML to the given stream. The parts of the graph can then be written one by one, as they are produced by {@link OaiOreConverter}. Closing the writer ends the
+     * document, but does not close the stream.
+     *
+     * @param output the stream to write to
+     * @return the writer
+     * @throws IOException if the document could not be started
+     */
+    public OaiOreRdfXmlWriter createRdfWriter(OutputStream output) throws IOException {
+        return new OaiOreRdfXmlWriter(output, getNamespaces());
+    }
 
-        JsonStructure inputJson;
-        try (JsonReader r = Json.createReader(new StringReader(jsonLd))) {
-            inputJson = r.read();
-        }
+    public String serializeAsJsonLd(Model model) throws IOException {
+        var output = new ByteArrayOutputStream();
 
-        JsonStructure frameJson;
-        try (JsonReader r = Json.createReader(new StringReader(frame))) {
-            frameJson = r.read();
+        try (var writer = createJsonLdWriter(output)) {
+            writer.write(model);
         }
 
-        JsonDocument inputDoc = JsonDocument.of(inputJson);
-        JsonDocument frameDoc = JsonDocument.of(frameJson);
-
-        JsonLdOptions options = new JsonLdOptions();
-        options.setOmitGraph(true);
-
-        try {
-            JsonStructure framed = JsonLd.frame(inputDoc, frameDoc)
-                .options(options).get();
-
-            StringWriter out = new StringWriter();
-            Json.createWriter(out).write(framed);
-
-            return out.toString();
-        }
-        catch (Exception e) {
-            log.error("Error framing JSON-LD", e);
-            throw new RuntimeException(e);
-        }
+        return output.toString(StandardCharsets.UTF_8);
     }
 
-    private String namespacesAsJsonObject(Map<String, String> namespaces) {
-        try {
-            return objectMapper.writeValueAsString(namespaces);
-        }
-        catch (JsonProcessingException e) {
-            log.error("Error serializing namespaces to JSON", e);
-            throw new RuntimeException(e);
-        }
+    /**
+     * Starts writing OAI-ORE as JSON-LD, framed with the resource map as the root object, to the given stream. The parts of the graph can then be written one by one, as they are produced by
+     * {@link OaiOreConverter}. Closing the writer ends the document, but does not close the stream.
+     *
+     * @param output the stream to write to
+     * @return the writer
+     * @throws IOException if the document could not be started
+     */
+    public OaiOreJsonLdWriter createJsonLdWriter(OutputStream output) throws IOException {
+        return new OaiOreJsonLdWriter(output, getNamespaces(), objectMapper);
     }
 
-    private Map<String, String> getNamespaces() {
-        var namespaces = new HashMap<String, String>();
-        namespaces.put("cit", DVCitation.NS);
-        namespaces.put("dcterms", DCTerms.NS);
-        namespaces.put("datacite", Datacite.NS);
-        namespaces.put("ore", ORE.NS);
-        namespaces.put("dc", DC_11.NS);
-        namespaces.put("foaf", FOAF.NS);
-        namespaces.put("schema", SchemaDO.NS);
-        namespaces.put("dvcore", DVCore.NS);
-        namespaces.put("provo", PROV.NS);
-        namespaces.put("dansRelationMetadata", DansRel.NS);
-        namespaces.put("dansRights", DansRights.NS);
-        namespaces.put("dansTemporalSpatial", DansTS.NS);
-        namespaces.put("dansArchaeologyMetadata", DansArchaeology.NS);
-        namespaces.put("dansDataVaultMetadata", DansDVMetadata.NS);
-
+    Map<String, String> getNamespaces() {
         return namespaces;
     }
-
-    private Map<String, String> getUsedNamespaces(Model model) {
-        var usedNamespaces = new HashSet<String>();
-        model.listNameSpaces().forEachRemaining(usedNamespaces::add);
-
-        return getNamespaces()
-            .entrySet().stream()
-            .filter(e -> usedNamespaces.contains(e.getValue()))
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
-
-    private void setNamespacePrefixes(Model model) {
-        var namespaces = getNamespaces();
-
-        for (var namespace : namespaces.entrySet()) {
-            model.setNsPrefix(namespace.getKey(), namespace.getValue());
-        }
-    }
 }
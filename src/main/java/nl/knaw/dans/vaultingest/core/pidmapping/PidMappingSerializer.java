@@ -15,15 +15,31 @@
  */
 package nl.knaw.dans.vaultingest.core.pidmapping;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
 public class PidMappingSerializer {
 
-    public String serialize(PidMappings mappings) {
-        var str = new StringBuilder();
+    /**
+     * Writes the mappings, one per line, to the given output, which is flushed but not closed.
+     *
+     * @param mappings the mappings
+     * @param output   the output
+     * @throws IOException if the output could not be written
+     */
+    public void serialize(PidMappings mappings, OutputStream output) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
 
         for (var mapping : mappings.getPidMappings()) {
-            str.append(String.format("%s %s\n", mapping.getId(), mapping.getPath()));
+            writer.write(mapping.getId());
+            writer.write(' ');
+            writer.write(String.valueOf(mapping.getPath()));
+            writer.write('\n');
         }
 
-        return str.toString();
+        writer.flush();
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes the checksums of a sequence of bytes for several algorithms at once, passing each byte in only once.
+ *
+ * <p>
+ * With a single algorithm, the bytes are digested on the calling thread. With more than one, the first chunk of bytes is also digested on the calling thread, because for small inputs, such as
+ * tag files, handing the bytes to worker threads costs more than it saves. Only once more than a chunk has been passed in, the bytes are collected in chunks; while the next chunk is being
+ * filled, each algorithm digests the previous chunk on a worker thread of its own, so that the algorithms run on separate cores and overlap with whatever the calling thread does with the bytes.
+ * </p>
+ */
+public class MultiDigest {
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final HexFormat hexFormat = HexFormat.of();
+
+    private final Map<SupportedAlgorithm, MessageDigest> digests = new LinkedHashMap<>();
+    private final MessageDigest[] digestArray;
+    // Null if there is only one algorithm, so that all bytes are digested on the calling thread
+    private final Executor executor;
+
+    // Bytes digested on the calling thread since the digests were last completed, or -1 once more than a chunk has been passed in and the bytes go to the worker threads
+    private long inlineLength;
+
+    // The chunk being filled, and the one being digested; allocated when the bytes first go to the worker threads
+    private byte[] chunk;
+    private byte[] spareChunk;
+    private int chunkLength;
+    private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+    public MultiDigest(Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
+        this(algorithms, ForkJoinPool.commonPool());
+    }
+
+    MultiDigest(Collection<SupportedAlgorithm> algorithms, Executor executor) throws NoSuchAlgorithmException {
+        for (var alg : algorithms) {
+            digests.put(alg, MessageDigest.getInstance(alg.getMessageDigestName()));
+        }
+        this.digestArray = digests.values().toArray(MessageDigest[]::new);
+        this.executor = digestArray.length > 1 ? executor : null;
+    }
+
+    public void update(byte b) {
+        if (isInline(1)) {
+            for (var digest : digestArray) {
+                digest.update(b);
+            }
+            return;
+        }
+        chunk[chunkLength++] = b;
+        if (chunkLength == chunk.length) {
+            submitChunk();
+        }
+    }
+
+    public void update(byte[] b, int off, int len) {
+        if (isInline(len)) {
+            for (var digest : digestArray) {
+                digest.update(b, off, len);
+            }
+            return;
+        }
+        while (len > 0) {
+            var n = Math.min(len, chunk.length - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, n);
+            chunkLength += n;
+            off += n;
+            len -= n;
+            if (chunkLength == chunk.length) {
+                submitChunk();
+            }
+        }
+    }
+
+    /**
+     * Completes the digests and returns the checksums. After this, the digests start anew.
+     *
+     * @return the checksum per algorithm, as lowercase hex
+     */
+    public Map<SupportedAlgorithm, String> getChecksums() {
+        if (executor != null) {
+            if (chunkLength > 0) {
+                submitChunk();
+            }
+            pending.join();
+            inlineLength = 0;
+        }
+
+        var result = new HashMap<SupportedAlgorithm, String>();
+        for (var entry : digests.entrySet()) {
+            result.put(entry.getKey(), toHex(entry.getValue().digest()));
+        }
+        return result;
+    }
+
+    public static String toHex(byte[] bytes) {
+        return hexFormat.formatHex(bytes);
+    }
+
+    // Everything before these bytes has been digested on the calling thread, so the digests stay in order when the rest goes to the worker threads
+    private boolean isInline(int len) {
+        if (executor == null) {
+            return true;
+        }
+        if (inlineLength >= 0 && inlineLength + len <= CHUNK_SIZE) {
+            inlineLength += len;
+            return true;
+        }
+        inlineLength = -1;
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+            spareChunk = new byte[CHUNK_SIZE];
+        }
+        return false;
+    }
+
+    private void submitChunk() {
+        // Each digest must have finished the previous chunk, which is about to be refilled, and must process the chunks in order
+        pending.join();
+        var full = chunk;
+        var length = chunkLength;
+        pending = CompletableFuture.allOf(Arrays.stream(digestArray)
+            .map(digest -> CompletableFuture.runAsync(() -> digest.update(full, 0, length), executor))
+            .toArray(CompletableFuture[]::new));
+        chunk = spareChunk;
+        spareChunk = full;
+        chunkLength = 0;
+    }
+}
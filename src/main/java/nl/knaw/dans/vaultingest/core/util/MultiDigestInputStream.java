@@ -17,70 +17,67 @@ package nl.knaw.dans.vaultingest.core.util;
 
 import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
-public class MultiDigestInputStream extends InputStream {
-    private final InputStream inputStream;
-    private final Map<SupportedAlgorithm, DigestInputStream> digestInputStreams;
+/**
+ * Computes the checksums of everything read from the underlying stream. Each buffer that is read is passed once to a {@link MultiDigest}, instead of through a chain of
+ * {@link java.security.DigestInputStream}s.
+ */
+public class MultiDigestInputStream extends FilterInputStream {
+    private final MultiDigest multiDigest;
 
     public MultiDigestInputStream(InputStream inputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
-        this.digestInputStreams = new HashMap<>();
-
-        var input = inputStream;
-
-        for (var alg : algorithms) {
-            var digestInputStream = new DigestInputStream(input, MessageDigest.getInstance(alg.getMessageDigestName()));
-            digestInputStreams.put(alg, digestInputStream);
-            input = digestInputStream;
-        }
-
-        this.inputStream = input;
+        super(inputStream);
+        this.multiDigest = new MultiDigest(algorithms);
     }
 
     public Map<SupportedAlgorithm, String> getChecksums() {
-        var result = new HashMap<SupportedAlgorithm, String>();
-
-        for (var entry : digestInputStreams.entrySet()) {
-            result.put(entry.getKey(), bytesToHex(entry.getValue().getMessageDigest().digest()));
-        }
-
-        return result;
-    }
-
-    private String bytesToHex(byte[] digest) {
-        var sb = new StringBuilder();
-        for (var b : digest) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+        return multiDigest.getChecksums();
     }
 
     @Override
     public int read() throws IOException {
-        return this.inputStream.read();
+        var b = in.read();
+        if (b >= 0) {
+            multiDigest.update((byte) b);
+        }
+        return b;
     }
 
     @Override
-    // Overriding this method has significant performance benefits for the DigestInputStream
     public int read(byte[] b, int off, int len) throws IOException {
-        return this.inputStream.read(b, off, len);
+        var n = in.read(b, off, len);
+        if (n > 0) {
+            multiDigest.update(b, off, n);
+        }
+        return n;
     }
 
+    // Skipped bytes would not be digested
     @Override
-    public void close() throws IOException {
-        super.close();
-
-        this.inputStream.close();
-
-        for (var value : digestInputStreams.values()) {
-            value.close();
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
         }
+        var buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            var read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
     }
 }
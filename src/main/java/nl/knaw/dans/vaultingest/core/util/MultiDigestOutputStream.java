@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The counterpart of {@link MultiDigestInputStream} for content that is being written: computes the checksums of everything written to the underlying stream.
+ */
+public class MultiDigestOutputStream extends FilterOutputStream {
+    private final MultiDigest multiDigest;
+
+    public MultiDigestOutputStream(OutputStream outputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
+        super(outputStream);
+        this.multiDigest = new MultiDigest(algorithms);
+    }
+
+    public Map<SupportedAlgorithm, String> getChecksums() {
+        return multiDigest.getChecksums();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        multiDigest.update((byte) b);
+    }
+
+    @Override
+    // FilterOutputStream would write the bytes one by one
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        multiDigest.update(b, off, len);
+    }
+}
@@ -15,6 +15,9 @@
  */
 package nl.knaw.dans.vaultingest.core.xml;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -22,60 +25,74 @@ import org.w3c.dom.NodeList;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Evaluates XPath expressions, using the namespace prefixes of {@link XmlNamespaces}.
+ *
+ * <p>
+ * Compiled expressions are cached by expression string. Neither {@link XPath} nor {@link XPathExpression} objects are thread-safe, so each thread compiles with its own XPath instance, and each
+ * cached expression keeps a pool of compiled copies: a thread borrows a copy for the duration of an evaluation, and compiles a new one only if all copies are in use. Threads therefore never wait
+ * for each other.
+ * </p>
+ */
 public final class XPathEvaluator implements XmlNamespaces {
 
-    private static XPath xpath;
-
-    private static XPath getXpath() {
-        if (xpath == null) {
-            xpath = XPathFactory
-                .newInstance()
-                .newXPath();
-
-            final var namespaceMap = new HashMap<String, String>();
-            namespaceMap.put("xml", NAMESPACE_XML);
-            namespaceMap.put("dc", NAMESPACE_DC);
-            namespaceMap.put("dcx-dai", NAMESPACE_DCX_DAI);
-            namespaceMap.put("ddm", NAMESPACE_DDM);
-            namespaceMap.put("dcterms", NAMESPACE_DCTERMS);
-            namespaceMap.put("xsi", NAMESPACE_XSI);
-            namespaceMap.put("id-type", NAMESPACE_ID_TYPE);
-            namespaceMap.put("dcx-gml", NAMESPACE_DCX_GML);
-            namespaceMap.put("files", NAMESPACE_FILES_XML);
-            namespaceMap.put("gml", NAMESPACE_OPEN_GIS);
-            namespaceMap.put("wfs", NAMESPACE_EASY_WORKFLOW);
-            namespaceMap.put("damd", NAMESPACE_DAMD);
-            namespaceMap.put("agreements", NAMESPACE_AGREEMENTS);
-            namespaceMap.put("afm", NAMESPACE_AFM);
-            namespaceMap.put("datacite", NAMESPACE_DATACITE);
-
-            xpath.setNamespaceContext(new NamespaceContext() {
-
-                @Override
-                public String getNamespaceURI(String s) {
-                    return namespaceMap.get(s);
-                }
-
-                @Override
-                public String getPrefix(String s) {
-                    return null;
-                }
-
-                @Override
-                public Iterator<String> getPrefixes(String s) {
-                    return null;
-                }
-            });
+    private static final NamespaceContext namespaceContext = new NamespaceContext() {
+
+        @Override
+        public String getNamespaceURI(String s) {
+            return PREFIXES.get(s);
         }
 
-        return xpath;
+        @Override
+        public String getPrefix(String s) {
+            return null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String s) {
+            return null;
+        }
+    };
+
+    private static final ThreadLocal<XPath> xpath = ThreadLocal.withInitial(() -> {
+        var result = XPathFactory.newInstance().newXPath();
+        result.setNamespaceContext(namespaceContext);
+        return result;
+    });
+
+    private static final Map<String, CachedExpression> cache = new ConcurrentHashMap<>();
+    private static final Counter cacheHits = new Counter();
+    private static final Counter compilations = new Counter();
+    private static volatile MetricRegistry metricRegistry;
+
+    private XPathEvaluator() {
+    }
+
+    /**
+     * Exposes the cache hits, the number of compilations and the evaluation time per expression as metrics. The cache is shared by everything in the JVM, so this may be called more than once,
+     * also with the same registry, e.g. when the application is started twice in one JVM by tests.
+     *
+     * @param registry the registry to register the metrics with
+     */
+    public static synchronized void registerMetrics(MetricRegistry registry) {
+        // Returns the metric already registered under the name, if any, instead of failing
+        registry.counter(name(XPathEvaluator.class, "cache-hits"), () -> cacheHits);
+        registry.counter(name(XPathEvaluator.class, "compilations"), () -> compilations);
+        metricRegistry = registry;
+        cache.values().forEach(XPathEvaluator::registerTimer);
     }
 
     public static Stream<Node> nodes(Node node, String... expressions) {
@@ -98,8 +115,37 @@ public final class XPathEvaluator implements XmlNamespaces {
         }
     }
 
-    private static synchronized Object evaluateXpath(Node node, String expr) throws XPathExpressionException {
-        return getXpath().compile(expr).evaluate(node, XPathConstants.NODESET);
+    private static Object evaluateXpath(Node node, String expr) throws XPathExpressionException {
+        var cached = cache.computeIfAbsent(expr, XPathEvaluator::newCachedExpression);
+        var compiled = cached.pool.poll();
+        if (compiled == null) {
+            compilations.inc();
+            compiled = xpath.get().compile(expr);
+        }
+        else {
+            cacheHits.inc();
+        }
+
+        try (var ignored = cached.timer.time()) {
+            return compiled.evaluate(node, XPathConstants.NODESET);
+        }
+        finally {
+            cached.pool.offer(compiled);
+        }
+    }
+
+    private static CachedExpression newCachedExpression(String expr) {
+        var cached = new CachedExpression(expr);
+        registerTimer(cached);
+        return cached;
+    }
+
+    private static void registerTimer(CachedExpression cached) {
+        var registry = metricRegistry;
+        if (registry != null) {
+            // Another thread may have registered it already
+            registry.timer(name(XPathEvaluator.class, "evaluation", cached.expression), () -> cached.timer);
+        }
     }
 
     private static Stream<Node> xpathToStream(Node node, String expression) throws XPathExpressionException {
@@ -117,4 +163,15 @@ public final class XPathEvaluator implements XmlNamespaces {
     private static Stream<String> xpathsToStreamOfStrings(Node node, String... expressions) throws XPathExpressionException {
         return xpathsToStream(node, expressions).map(Node::getTextContent);
     }
+
+    private static class CachedExpression {
+        private final String expression;
+        // Compiled copies that are not in use
+        private final Queue<XPathExpression> pool = new ConcurrentLinkedQueue<>();
+        private final Timer timer = new Timer();
+
+        private CachedExpression(String expression) {
+            this.expression = expression;
+        }
+    }
 }
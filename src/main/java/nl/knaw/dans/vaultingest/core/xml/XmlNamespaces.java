@@ -15,6 +15,8 @@
  */
 package nl.knaw.dans.vaultingest.core.xml;
 
+import java.util.Map;
+
 public interface XmlNamespaces {
     String NAMESPACE_XML = "http://www.w3.org/XML/1998/namespace";
     String NAMESPACE_DC = "http://purl.org/dc/elements/1.1/";
@@ -32,4 +34,23 @@ public interface XmlNamespaces {
     String NAMESPACE_AFM = "http://easy.dans.knaw.nl/schemas/bag/metadata/afm/";
     String NAMESPACE_DATACITE = "http://datacite.org/schema/kernel-4";
 
+    /**
+     * The prefixes used in XPath expressions and element names in this application.
+     */
+    Map<String, String> PREFIXES = Map.ofEntries(
+        Map.entry("xml", NAMESPACE_XML),
+        Map.entry("dc", NAMESPACE_DC),
+        Map.entry("dcx-dai", NAMESPACE_DCX_DAI),
+        Map.entry("ddm", NAMESPACE_DDM),
+        Map.entry("dcterms", NAMESPACE_DCTERMS),
+        Map.entry("xsi", NAMESPACE_XSI),
+        Map.entry("id-type", NAMESPACE_ID_TYPE),
+        Map.entry("dcx-gml", NAMESPACE_DCX_GML),
+        Map.entry("files", NAMESPACE_FILES_XML),
+        Map.entry("gml", NAMESPACE_OPEN_GIS),
+        Map.entry("wfs", NAMESPACE_EASY_WORKFLOW),
+        Map.entry("damd", NAMESPACE_DAMD),
+        Map.entry("agreements", NAMESPACE_AGREEMENTS),
+        Map.entry("afm", NAMESPACE_AFM),
+        Map.entry("datacite", NAMESPACE_DATACITE));
 }
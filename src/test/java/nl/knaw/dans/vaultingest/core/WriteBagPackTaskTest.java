@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.client.BagValidator;
+import nl.knaw.dans.vaultingest.client.InvalidDepositException;
+import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+import nl.knaw.dans.vaultingest.config.BagPackConfig;
+import nl.knaw.dans.vaultingest.config.PipelineConfig;
+import nl.knaw.dans.vaultingest.core.bagpack.BagPackWriterFactory;
+import nl.knaw.dans.vaultingest.core.concurrent.DepositPipeline;
+import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.deposit.DepositSummary;
+import nl.knaw.dans.vaultingest.core.deposit.ProgressJournal;
+import nl.knaw.dans.vaultingest.core.util.IdMinter;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class WriteBagPackTaskTest extends AbstractTestWithTestDir {
+    private static final String DEPOSIT_ID = "c169676f-5315-4d86-bde0-a62dbc915228";
+
+    private final BagValidator bagValidator = mock(BagValidator.class);
+    private Path depositDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        for (var dir : new String[] { "inbox", "outbox/processed", "outbox/failed", "outbox/rejected", "dve-outbox" }) {
+            Files.createDirectories(testDir.resolve(dir));
+        }
+        depositDir = testDir.resolve("inbox").resolve(DEPOSIT_ID);
+        FileUtils.copyDirectory(Path.of("src/test/resources/input").resolve(DEPOSIT_ID).toFile(), depositDir.toFile());
+    }
+
+    @Test
+    void run_should_validate_a_rejected_deposit_again_when_it_is_resubmitted() throws Exception {
+        doThrow(new InvalidDepositException("Invalid bag")).when(bagValidator).validate(any(), any());
+
+        createTask(BagPackConfig.Mode.OVERLAY).run();
+
+        var rejected = testDir.resolve("outbox/rejected").resolve(DEPOSIT_ID);
+        assertThat(rejected).isDirectory();
+        assertThat(ProgressJournal.exists(rejected)).isFalse();
+
+        // Fixed and submitted again
+        Files.move(rejected, depositDir);
+        createTask(BagPackConfig.Mode.OVERLAY).run();
+
+        verify(bagValidator, times(2)).validate(eq(UUID.fromString(DEPOSIT_ID)), any());
+    }
+
+    @Test
+    void run_should_restore_original_bag_if_reading_the_deposit_fails_after_the_backup() throws Exception {
+        Files.delete(depositDir.resolve("audiences/metadata/dataset.xml"));
+
+        createTask(BagPackConfig.Mode.IN_PLACE).run();
+
+        var failed = testDir.resolve("outbox/failed").resolve(DEPOSIT_ID);
+        assertThat(failed.resolve("audiences")).isDirectory();
+        assertThat(failed.resolve("org-audiences")).doesNotExist();
+        assertThat(ProgressJournal.exists(failed)).isFalse();
+    }
+
+    @Test
+    void start_should_process_deposit_in_the_stages_of_the_pipeline() throws Exception {
+        var lifecycle = new LifecycleEnvironment(new MetricRegistry());
+        var pipeline = startPipeline(lifecycle);
+        doThrow(new InvalidDepositException("Invalid bag")).when(bagValidator).validate(any(), any());
+
+        try {
+            createTask(BagPackConfig.Mode.OVERLAY, pipeline).start().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+        finally {
+            stop(lifecycle);
+        }
+
+        assertThat(testDir.resolve("outbox/rejected").resolve(DEPOSIT_ID)).isDirectory();
+    }
+
+    @Test
+    void start_should_leave_deposit_in_inbox_if_the_pipeline_is_shut_down() throws Exception {
+        var lifecycle = new LifecycleEnvironment(new MetricRegistry());
+        var pipeline = startPipeline(lifecycle);
+        stop(lifecycle);
+
+        createTask(BagPackConfig.Mode.OVERLAY, pipeline).start().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertThat(depositDir).isDirectory();
+        try (var failed = Files.list(testDir.resolve("outbox/failed"))) {
+            assertThat(failed).isEmpty();
+        }
+        verify(bagValidator, never()).validate(any(), any());
+    }
+
+    private DepositPipeline startPipeline(LifecycleEnvironment lifecycle) throws Exception {
+        var pipeline = new DepositPipeline(new PipelineConfig(), lifecycle, new MetricRegistry());
+        for (LifeCycle managed : lifecycle.getManagedObjects()) {
+            managed.start();
+        }
+        return pipeline;
+    }
+
+    private void stop(LifecycleEnvironment lifecycle) throws Exception {
+        for (LifeCycle managed : lifecycle.getManagedObjects()) {
+            managed.stop();
+        }
+    }
+
+    private WriteBagPackTask createTask(BagPackConfig.Mode mode) {
+        return createTask(mode, null);
+    }
+
+    private WriteBagPackTask createTask(BagPackConfig.Mode mode, DepositPipeline pipeline) {
+        return new WriteBagPackTask(depositDir,
+            testDir.resolve("outbox/processed"), testDir.resolve("outbox/failed"), testDir.resolve("outbox/rejected"),
+            "root", "Name of user", mock(BagPackWriterFactory.class), mock(VaultCatalogClient.class), bagValidator, mock(IdMinter.class),
+            new DepositManager(new XmlReader()), testDir.resolve("dve-outbox"), mode,
+            new DepositSummary("sword:0b9bb5ee-3187-4387-bb39-2c09536c79f7", "user001", 0), pipeline, null);
+    }
+}
@@ -15,15 +15,18 @@
  */
 package nl.knaw.dans.vaultingest.core.bagpack;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.knaw.dans.bagit.domain.Bag;
 import nl.knaw.dans.bagit.reader.BagReader;
 import nl.knaw.dans.bagit.verify.BagVerifier;
 import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.config.CompressionConfig;
 import nl.knaw.dans.vaultingest.config.ContactPersonConfig;
 import nl.knaw.dans.vaultingest.core.baginfo.BagInfoConverter;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
 import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
 import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
@@ -32,15 +35,32 @@ import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
 import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
 import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class BagPackWriterTest extends AbstractTestWithTestDir {
+    private final ExecutorService metadataExecutor = Executors.newFixedThreadPool(4);
+    private final ExecutorService zipExecutor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void shutdownExecutors() {
+        metadataExecutor.shutdownNow();
+        zipExecutor.shutdownNow();
+    }
 
     @Test
     public void write_To_should_keep_bag_valid() throws Exception {
@@ -52,12 +72,96 @@ class BagPackWriterTest extends AbstractTestWithTestDir {
         assertThat(isBagValid(deposit.getBagDir())).isTrue(); // Valid before enriching
         var bagPack = testDir.resolve("rda-bag.zip");
 
+        var bagPackWriter = createBagPackWriter(deposit);
+
+        bagPackWriter.writeTo(bagPack);
+        // check that the following files are present in the bag
+        assertThat(deposit.getBagDir().resolve("metadata/datacite.xml")).exists();
+        assertThat(deposit.getBagDir().resolve("metadata/pid-mapping.txt")).exists();
+        assertThat(deposit.getBagDir().resolve("metadata/oai-ore.jsonld")).exists();
+        assertThat(deposit.getBagDir().resolve("metadata/oai-ore.rdf")).exists();
+        assertThat(isBagValid(deposit.getBagDir())).isTrue(); // Valid after enriching
+    }
+
+    @Test
+    public void generateMetadata_and_zipTo_should_leave_bag_untouched_and_create_valid_bag_pack() throws Exception {
+        var manager = new DepositManager(new XmlReader());
+        var inputDeposit = Path.of("src/test/resources/input/c169676f-5315-4d86-bde0-a62dbc915228");
+        var testDeposit = testDir.resolve(inputDeposit.getFileName());
+        FileUtils.copyDirectory(inputDeposit.toFile(), testDeposit.toFile());
+        var deposit = manager.readDeposit(testDeposit, "Name of user");
+        var bagInfoBefore = Files.readString(deposit.getBagDir().resolve("bag-info.txt"));
+        var bagPack = testDir.resolve("rda-bag.zip");
+
+        var bagPackWriter = createBagPackWriter(deposit);
+        bagPackWriter.generateMetadata();
+        assertThat(testDir.resolve("work")).isNotEmptyDirectory();
+        bagPackWriter.zipTo(bagPack);
+        bagPackWriter.close();
+
+        assertThat(zipExecutor.isShutdown()).isFalse();
+        assertThat(testDir.resolve("work")).isEmptyDirectory();
+        assertThat(deposit.getBagDir().resolve("metadata/datacite.xml")).doesNotExist();
+        assertThat(deposit.getBagDir().resolve("metadata/oai-ore.rdf")).doesNotExist();
+        assertThat(Files.readString(deposit.getBagDir().resolve("bag-info.txt"))).isEqualTo(bagInfoBefore);
+        assertThat(isBagValid(deposit.getBagDir())).isTrue();
+
+        var unzipped = testDir.resolve("unzipped");
+        unzip(bagPack, unzipped);
+        var bagDirInZip = unzipped.resolve(deposit.getBagDir().getFileName());
+        assertThat(bagDirInZip.resolve("metadata/datacite.xml")).exists();
+        assertThat(bagDirInZip.resolve("metadata/pid-mapping.txt")).exists();
+        assertThat(bagDirInZip.resolve("metadata/oai-ore.jsonld")).exists();
+        assertThat(bagDirInZip.resolve("metadata/oai-ore.rdf")).exists();
+        assertThat(isBagValid(bagDirInZip)).isTrue();
+    }
+
+    @Test
+    public void zipTo_should_fail_if_payload_file_does_not_match_manifest() throws Exception {
+        var deposit = copyAndReadDeposit("corrupt");
+        Files.writeString(deposit.getBagDir().resolve("data/57f6f2f8-8d87-43ec-ac0e-68bdac21223e"), "corrupted", StandardOpenOption.APPEND);
+        var bagPack = testDir.resolve("corrupt.zip");
+
+        var bagPackWriter = createBagPackWriter(deposit);
+        bagPackWriter.generateMetadata();
+
+        assertThatThrownBy(() -> bagPackWriter.zipTo(bagPack))
+            .isInstanceOf(FixityException.class)
+            .hasMessageContaining("57f6f2f8-8d87-43ec-ac0e-68bdac21223e");
+        assertThat(bagPack).doesNotExist();
+        assertThat(testDir.resolve("corrupt.zip.tmp")).doesNotExist();
+        try (var walk = Files.walk(testDir.resolve("work"))) {
+            assertThat(walk.filter(file -> file.getFileName().toString().endsWith(".scatter"))).isEmpty();
+        }
+    }
+
+    @Test
+    public void zipTo_should_fail_if_payload_file_is_missing() throws Exception {
+        var deposit = copyAndReadDeposit("missing");
+        Files.delete(deposit.getBagDir().resolve("data/57f6f2f8-8d87-43ec-ac0e-68bdac21223e"));
+
+        var bagPackWriter = createBagPackWriter(deposit);
+        bagPackWriter.generateMetadata();
+
+        assertThatThrownBy(() -> bagPackWriter.zipTo(testDir.resolve("missing.zip")))
+            .isInstanceOf(FixityException.class)
+            .hasMessage("Payload files listed in manifest are missing: [data/57f6f2f8-8d87-43ec-ac0e-68bdac21223e]");
+    }
+
+    private Deposit copyAndReadDeposit(String name) throws Exception {
+        var testDeposit = testDir.resolve(name);
+        FileUtils.deleteDirectory(testDeposit.toFile());
+        FileUtils.copyDirectory(Path.of("src/test/resources/input/c169676f-5315-4d86-bde0-a62dbc915228").toFile(), testDeposit.toFile());
+        return new DepositManager(new XmlReader()).readDeposit(testDeposit, "Name of user");
+    }
+
+    private BagPackWriter createBagPackWriter(Deposit deposit) throws IOException {
         var contactPersonConfig = new ContactPersonConfig();
         contactPersonConfig.setName("Test Contact");
         contactPersonConfig.setEmail("test@example.com");
         contactPersonConfig.setAffiliation("Test Affiliation");
 
-        var bagPackWriter = new BagPackWriter(
+        return new BagPackWriter(
             deposit,
             contactPersonConfig,
             new DataciteSerializer(),
@@ -66,16 +170,29 @@ class BagPackWriterTest extends AbstractTestWithTestDir {
             new DataciteConverter(),
             new PidMappingConverter(),
             new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance()),
-            new BagInfoConverter()
+            new BagInfoConverter(),
+            metadataExecutor,
+            zipExecutor,
+            new CompressionPolicy(new CompressionConfig(), new MetricRegistry()),
+            Files.createDirectories(testDir.resolve("work"))
         );
+    }
 
-        bagPackWriter.writeTo(bagPack);
-        // check that the following files are present in the bag
-        assertThat(deposit.getBagDir().resolve("metadata/datacite.xml")).exists();
-        assertThat(deposit.getBagDir().resolve("metadata/pid-mapping.txt")).exists();
-        assertThat(deposit.getBagDir().resolve("metadata/oai-ore.jsonld")).exists();
-        assertThat(deposit.getBagDir().resolve("metadata/oai-ore.rdf")).exists();
-        assertThat(isBagValid(deposit.getBagDir())).isTrue(); // Valid after enriching
+    private void unzip(Path zip, Path targetDir) throws Exception {
+        try (var zipFile = new ZipFile(zip.toFile())) {
+            for (var entry : Collections.list(zipFile.getEntries())) {
+                var target = targetDir.resolve(entry.getName());
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                }
+                else {
+                    Files.createDirectories(target.getParent());
+                    try (var input = zipFile.getInputStream(entry)) {
+                        Files.copy(input, target);
+                    }
+                }
+            }
+        }
     }
 
     private boolean isBagValid(Path bagDir) throws Exception {
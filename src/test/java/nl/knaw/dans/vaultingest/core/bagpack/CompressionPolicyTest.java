@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.bagpack;
+
+import com.codahale.metrics.MetricRegistry;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.config.CompressionConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionPolicyTest extends AbstractTestWithTestDir {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final CompressionPolicy policy = new CompressionPolicy(new CompressionConfig(), metricRegistry);
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void getMethod_should_store_file_that_does_not_deflate() throws Exception {
+        var random = new byte[100_000];
+        new Random(42).nextBytes(random);
+        var file = Files.write(testDir.resolve("random.bin"), random);
+        var statistics = new CompressionPolicy.Statistics();
+
+        assertThat(policy.getMethod(file, statistics)).isEqualTo(ZipEntry.STORED);
+        assertThat(statistics.getStoredBytes()).isEqualTo(100_000);
+        assertThat(statistics.getEstimatedCpuTimeSaved()).isPositive();
+    }
+
+    @Test
+    void getMethod_should_deflate_text() throws Exception {
+        var file = Files.writeString(testDir.resolve("data.csv"), "id,name,value\n1,foo,42\n".repeat(5000));
+        var statistics = new CompressionPolicy.Statistics();
+
+        assertThat(policy.getMethod(file, statistics)).isEqualTo(ZipEntry.DEFLATED);
+        assertThat(statistics.getDeflatedBytes()).isEqualTo(Files.size(file));
+        assertThat(statistics.getStoredBytes()).isZero();
+    }
+
+    @Test
+    void getMethod_should_store_file_with_compressed_extension_without_probing() throws Exception {
+        var file = Files.writeString(testDir.resolve("photo.JPG"), "not really a jpeg ".repeat(5000));
+        var statistics = new CompressionPolicy.Statistics();
+
+        assertThat(policy.getMethod(file, statistics)).isEqualTo(ZipEntry.STORED);
+        assertThat(statistics.getEstimatedCpuTimeSaved()).isZero();
+    }
+
+    @Test
+    void getMethod_should_deflate_small_file_without_probing() throws Exception {
+        var random = new byte[1000];
+        new Random(42).nextBytes(random);
+        var file = Files.write(testDir.resolve("small.bin"), random);
+
+        assertThat(policy.getMethod(file, new CompressionPolicy.Statistics())).isEqualTo(ZipEntry.DEFLATED);
+    }
+
+    @Test
+    void record_should_add_statistics_to_metrics() {
+        var statistics = new CompressionPolicy.Statistics();
+        statistics.add(ZipEntry.STORED, 10);
+        statistics.add(ZipEntry.DEFLATED, 20);
+        statistics.add(ZipEntry.DEFLATED, 30);
+
+        policy.record(statistics);
+
+        assertThat(metricRegistry.counter("nl.knaw.dans.vaultingest.core.bagpack.CompressionPolicy.stored-bytes").getCount()).isEqualTo(10);
+        assertThat(metricRegistry.counter("nl.knaw.dans.vaultingest.core.bagpack.CompressionPolicy.deflated-bytes").getCount()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitedExecutorServiceTest {
+    private final ExecutorService delegate = Executors.newCachedThreadPool();
+    private final ConcurrencyLimitedExecutorService executor = new ConcurrencyLimitedExecutorService(delegate, 2, new MetricRegistry());
+
+    @AfterEach
+    void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    void execute_should_run_no_more_tasks_at_the_same_time_than_the_limit() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var proceed = new CountDownLatch(1);
+        var done = new CountDownLatch(6);
+
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    proceed.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        // Give the tasks that must wait the opportunity to start anyway
+        Thread.sleep(100);
+        assertThat(executor.getRunningCount()).isEqualTo(2);
+        proceed.countDown();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning).hasValue(2);
+    }
+
+    @Test
+    void shutdown_should_shut_down_the_delegate() throws Exception {
+        executor.shutdown();
+
+        assertThat(delegate.isShutdown()).isTrue();
+        assertThat(executor.isShutdown()).isTrue();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.isTerminated()).isTrue();
+        assertThatThrownBy(() -> executor.execute(() -> {
+        })).isInstanceOf(RejectedExecutionException.class);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatasetOrderedExecutorServiceTest {
+    private final DatasetOrderedExecutorService executor = new DatasetOrderedExecutorService(Executors.newFixedThreadPool(4), new MetricRegistry());
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_should_run_tasks_of_the_same_dataset_in_submission_order() throws Exception {
+        var order = Collections.synchronizedList(new ArrayList<String>());
+        var done = new CountDownLatch(5);
+
+        for (int i = 0; i < 5; i++) {
+            var name = "task-" + i;
+            // Earlier tasks take longer, so they would finish last if they were not ordered
+            var sleep = (5 - i) * 10L;
+            executor.execute(new KeyedTask("sword:a", () -> {
+                sleep(sleep);
+                order.add(name);
+                done.countDown();
+            }));
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("task-0", "task-1", "task-2", "task-3", "task-4");
+        assertThat(executor.getActiveDatasetKeyCount()).isZero();
+    }
+
+    @Test
+    void execute_should_run_tasks_of_different_datasets_concurrently() throws Exception {
+        var barrier = new CyclicBarrier(2);
+        var metEachOther = new AtomicBoolean(true);
+        var done = new CountDownLatch(2);
+
+        for (var key : List.of("sword:a", "sword:b")) {
+            executor.execute(new KeyedTask(key, () -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                }
+                catch (Exception e) {
+                    metEachOther.set(false);
+                }
+                done.countDown();
+            }));
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(metEachOther).isTrue();
+    }
+
+    @Test
+    void execute_should_continue_with_next_task_of_dataset_after_failure() throws Exception {
+        var done = new CountDownLatch(1);
+
+        executor.execute(new KeyedTask("sword:a", () -> {
+            throw new IllegalStateException("failure");
+        }));
+        executor.execute(new KeyedTask("sword:a", done::countDown));
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void execute_should_hold_back_task_until_admitted() throws Exception {
+        var attempts = new AtomicInteger();
+        var released = new CountDownLatch(1);
+        var admissionControl = new AdmissionControl() {
+
+            @Override
+            public boolean tryAdmit(Runnable task) {
+                return attempts.incrementAndGet() > 2;
+            }
+
+            @Override
+            public void release(Runnable task) {
+                released.countDown();
+            }
+
+            @Override
+            public Duration getRetryInterval() {
+                return Duration.ofMillis(10);
+            }
+        };
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+        var admittingExecutor = new DatasetOrderedExecutorService(Executors.newFixedThreadPool(2), new FifoSchedulingPolicy(), admissionControl, scheduler, new MetricRegistry());
+        var done = new CountDownLatch(1);
+
+        try {
+            admittingExecutor.execute(new KeyedTask("sword:a", done::countDown));
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(released.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(attempts).hasValue(3);
+            assertThat(admittingExecutor.getHeldBackCount()).isZero();
+        }
+        finally {
+            admittingExecutor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_should_start_other_tasks_past_a_task_that_may_be_overtaken() throws Exception {
+        var tooLarge = new KeyedTask("sword:a", () -> {
+        });
+        var admissionControl = new AdmissionControl() {
+
+            @Override
+            public boolean tryAdmit(Runnable task) {
+                return task != tooLarge;
+            }
+
+            @Override
+            public boolean mayBeOvertaken(Runnable task) {
+                return true;
+            }
+
+            @Override
+            public void release(Runnable task) {
+            }
+
+            @Override
+            public Duration getRetryInterval() {
+                return Duration.ofMillis(10);
+            }
+        };
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+        var admittingExecutor = new DatasetOrderedExecutorService(Executors.newFixedThreadPool(1), new FifoSchedulingPolicy(), admissionControl, scheduler, new MetricRegistry());
+        var done = new CountDownLatch(3);
+
+        try {
+            admittingExecutor.execute(tooLarge);
+            for (var key : List.of("sword:b", "sword:c", "sword:d")) {
+                admittingExecutor.execute(new KeyedTask(key, done::countDown));
+            }
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            // Still waiting to be admitted
+            assertThat(admittingExecutor.getQueueDepth()).isEqualTo(1);
+        }
+        finally {
+            admittingExecutor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class KeyedTask implements Runnable, DatasetKeyed {
+        private final String datasetKey;
+        private final Runnable runnable;
+
+        private KeyedTask(String datasetKey, Runnable runnable) {
+            this.datasetKey = datasetKey;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public String getDatasetKey() {
+            return datasetKey;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+}
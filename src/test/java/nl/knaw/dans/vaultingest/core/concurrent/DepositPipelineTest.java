@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
+import nl.knaw.dans.vaultingest.config.PipelineConfig;
+import nl.knaw.dans.vaultingest.core.concurrent.DepositPipeline.Stage;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DepositPipelineTest {
+    private final LifecycleEnvironment lifecycle = new LifecycleEnvironment(new MetricRegistry());
+    private DepositPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pipeline = new DepositPipeline(new PipelineConfig(), lifecycle, new MetricRegistry());
+        for (LifeCycle managed : lifecycle.getManagedObjects()) {
+            managed.start();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (LifeCycle managed : lifecycle.getManagedObjects()) {
+            managed.stop();
+        }
+    }
+
+    @Test
+    void run_should_run_step_on_a_thread_of_its_stage() throws Exception {
+        var threadName = new AtomicReference<String>();
+
+        pipeline.run(Stage.HAND_OFF, () -> threadName.set(Thread.currentThread().getName())).get(10, TimeUnit.SECONDS);
+
+        assertThat(threadName.get()).startsWith("vault-ingest-hand-off-");
+    }
+
+    @Test
+    void run_should_complete_exceptionally_with_the_exception_of_the_step() {
+        var future = pipeline.run(Stage.VALIDATE, () -> {
+            throw new IOException("disk full");
+        });
+
+        assertThatThrownBy(future::join)
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(IOException.class)
+            .hasRootCauseMessage("disk full");
+    }
+
+    @Test
+    void run_should_reject_step_after_shutdown() throws Exception {
+        tearDown();
+
+        assertThatThrownBy(() -> pipeline.run(Stage.ZIP, () -> {
+        }))
+            .isInstanceOf(RejectedExecutionException.class)
+            .hasMessage("Pipeline stage is shut down");
+    }
+
+    @Test
+    void run_should_reject_step_waiting_for_room_when_stage_shuts_down() throws Exception {
+        var blocker = new CountDownLatch(1);
+        // One step runs and the queue of the stage holds two more, so the next one has to wait for room
+        for (int i = 0; i < 3; i++) {
+            pipeline.run(Stage.ZIP, blocker::await);
+        }
+        var waiting = CompletableFuture.supplyAsync(() -> pipeline.run(Stage.ZIP, () -> {
+        }));
+        Thread.sleep(200);
+        assertThat(waiting).isNotDone();
+
+        var stopper = new Thread(() -> {
+            try {
+                tearDown();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        stopper.start();
+        try {
+            assertThatThrownBy(() -> waiting.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RejectedExecutionException.class)
+                .hasRootCauseMessage("Pipeline stage is shut down");
+        }
+        finally {
+            blocker.countDown();
+            stopper.join();
+        }
+    }
+}
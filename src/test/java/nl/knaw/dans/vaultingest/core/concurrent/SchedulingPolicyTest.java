@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchedulingPolicyTest {
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    void shortest_payload_first_should_prefer_small_payloads() {
+        var clock = new AtomicLong();
+        var policy = new ShortestPayloadFirstSchedulingPolicy(GB, clock::get);
+
+        var large = policy.getPriority(task("user001", 100 * GB));
+        var small = policy.getPriority(task("user001", GB));
+
+        assertThat(small).isLessThan(large);
+    }
+
+    @Test
+    void shortest_payload_first_should_eventually_prefer_a_waiting_large_payload() {
+        var clock = new AtomicLong();
+        var policy = new ShortestPayloadFirstSchedulingPolicy(GB, clock::get);
+
+        var large = policy.getPriority(task("user001", 100 * GB));
+        clock.set(TimeUnit.MINUTES.toNanos(101));
+        var small = policy.getPriority(task("user001", GB));
+
+        assertThat(large).isLessThan(small);
+    }
+
+    @Test
+    void fair_share_should_alternate_between_depositors_with_equal_weights() {
+        var policy = new FairShareSchedulingPolicy(Map.of());
+
+        var a1 = policy.getPriority(task("a", 10));
+        var a2 = policy.getPriority(task("a", 10));
+        var b1 = policy.getPriority(task("b", 10));
+
+        // The second deposit of a must wait for the first deposit of b
+        assertThat(b1).isLessThan(a2);
+        assertThat(a1).isLessThanOrEqualTo(b1);
+    }
+
+    @Test
+    void fair_share_should_give_more_turns_to_depositors_with_higher_weight() {
+        var policy = new FairShareSchedulingPolicy(Map.of("heavy", 2.0));
+
+        policy.getPriority(task("heavy", 10));
+        var heavy2 = policy.getPriority(task("heavy", 10));
+        policy.getPriority(task("light", 10));
+        var light2 = policy.getPriority(task("light", 10));
+
+        assertThat(heavy2).isLessThan(light2);
+    }
+
+    private static Schedulable task(String depositorId, long payloadSize) {
+        return new Schedulable() {
+
+            @Override
+            public long getPayloadSize() {
+                return payloadSize;
+            }
+
+            @Override
+            public String getDepositorId() {
+                return depositorId;
+            }
+        };
+    }
+}
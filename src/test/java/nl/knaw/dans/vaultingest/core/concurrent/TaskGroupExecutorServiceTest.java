@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskGroupExecutorServiceTest {
+    private final ExecutorService delegate = Executors.newFixedThreadPool(1);
+
+    @AfterEach
+    void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    void shutdown_should_leave_the_shared_executor_running() throws Exception {
+        var group = new TaskGroupExecutorService(delegate);
+        group.submit(() -> {
+        }).get(10, TimeUnit.SECONDS);
+
+        group.shutdown();
+
+        assertThat(group.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(group.isTerminated()).isTrue();
+        assertThat(delegate.isShutdown()).isFalse();
+        assertThatThrownBy(() -> group.execute(() -> {
+        })).isInstanceOf(RejectedExecutionException.class);
+        assertThat(delegate.submit(() -> "still running").get(10, TimeUnit.SECONDS)).isEqualTo("still running");
+    }
+
+    @Test
+    void shutdownNow_should_interrupt_running_tasks_and_drop_waiting_ones_of_the_group_only() throws Exception {
+        var group = new TaskGroupExecutorService(delegate);
+        var started = new CountDownLatch(1);
+        var interrupted = new CountDownLatch(1);
+        var waitingTaskRun = new AtomicBoolean();
+        group.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            }
+            catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        group.execute(() -> waitingTaskRun.set(true));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        var dropped = group.shutdownNow();
+
+        assertThat(dropped).hasSize(1);
+        assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(group.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        // The next task on the shared thread is not interrupted
+        assertThat(delegate.submit(() -> Thread.currentThread().isInterrupted()).get(10, TimeUnit.SECONDS)).isFalse();
+        assertThat(waitingTaskRun).isFalse();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.ddm;
+
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DdmModelTest {
+    private final XmlReader xmlReader = new XmlReader();
+
+    private DdmModel read(String xml) throws Exception {
+        return DdmModel.read(xmlReader.readXmlString(xml));
+    }
+
+    @Test
+    void getDcmiMetadata_should_return_elements_with_any_of_the_names_in_document_order() throws Exception {
+        var ddm = read("<ddm:DDM\n"
+            + "        xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
+            + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
+            + "        xmlns:dcterms=\"http://purl.org/dc/terms/\">\n"
+            + "    <ddm:profile>\n"
+            + "        <dc:title>Profile title</dc:title>\n"
+            + "    </ddm:profile>\n"
+            + "    <ddm:dcmiMetadata>\n"
+            + "        <dc:title>DC title</dc:title>\n"
+            + "        <dcterms:source>Source</dcterms:source>\n"
+            + "        <dcterms:title>DCTERMS title</dcterms:title>\n"
+            + "    </ddm:dcmiMetadata>\n"
+            + "</ddm:DDM>");
+
+        var titles = ddm.getDcmiMetadata("dcterms:title", "dc:title")
+            .map(DdmElement::getText);
+
+        assertThat(titles).containsExactly("DC title", "DCTERMS title");
+    }
+
+    @Test
+    void getProfile_should_match_names_by_namespace_not_by_prefix() throws Exception {
+        var ddm = read("<d:DDM xmlns:d=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xmlns:terms=\"http://purl.org/dc/terms/\">\n"
+            + "    <d:profile>\n"
+            + "        <terms:title>Title</terms:title>\n"
+            + "    </d:profile>\n"
+            + "</d:DDM>");
+
+        var title = ddm.getProfile("dcterms:title").findFirst().orElseThrow();
+
+        assertThat(title.is("dcterms:title")).isTrue();
+        assertThat(title.is("dc:title")).isFalse();
+        assertThatThrownBy(() -> ddm.getProfile("terms:title")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void element_should_keep_descendant_text_direct_text_nodes_and_attributes() throws Exception {
+        var ddm = read("<ddm:DDM\n"
+            + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
+            + "        xmlns:dcx-dai=\"http://easy.dans.knaw.nl/schemas/dcx/dai/\"\n"
+            + "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
+            + "    <ddm:profile>\n"
+            + "        <dcx-dai:creatorDetails xsi:type=\"some-type\" scheme=\"VIAF\">before <dcx-dai:author><dcx-dai:initials>A.B.</dcx-dai:initials></dcx-dai:author>after</dcx-dai:creatorDetails>\n"
+            + "    </ddm:profile>\n"
+            + "</ddm:DDM>");
+
+        var details = ddm.getProfile("dcx-dai:creatorDetails").findFirst().orElseThrow();
+
+        assertThat(details.getText()).isEqualTo("before A.B.after");
+        assertThat(details.getTextNodes()).containsExactly("before ", "after");
+        assertThat(details.getAttribute("xsi:type")).isEqualTo("some-type");
+        assertThat(details.getAttribute("scheme")).isEqualTo("VIAF");
+        assertThat(details.hasAttribute("value")).isFalse();
+        assertThat(details.getChildren("dcx-dai:author").flatMap(author -> author.getChildren("dcx-dai:initials")).map(DdmElement::getText))
+            .containsExactly("A.B.");
+    }
+
+    @Test
+    void getXmlLangs_should_return_all_xml_lang_attributes_in_document_order() throws Exception {
+        var ddm = read("<ddm:DDM\n"
+            + "        xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
+            + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xml:lang=\"en\">\n"
+            + "    <ddm:profile>\n"
+            + "        <dc:title xml:lang=\"nl\">Titel</dc:title>\n"
+            + "    </ddm:profile>\n"
+            + "    <ddm:dcmiMetadata xml:lang=\"de\">\n"
+            + "        <dc:description><dc:title xml:lang=\"en\">Nested</dc:title></dc:description>\n"
+            + "    </ddm:dcmiMetadata>\n"
+            + "</ddm:DDM>");
+
+        assertThat(ddm.getXmlLangs()).containsExactly("en", "nl", "de", "en");
+    }
+
+    @Test
+    void getIdTypePrefix_should_return_prefix_declared_for_the_identifier_type_namespace() throws Exception {
+        var ddm = read("<ddm:DDM\n"
+            + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
+            + "        xmlns:ids=\"http://easy.dans.knaw.nl/schemas/vocab/identifier-type/\">\n"
+            + "    <ddm:dcmiMetadata/>\n"
+            + "</ddm:DDM>");
+
+        assertThat(ddm.getIdTypePrefix()).isEqualTo("ids");
+        assertThat(ddm.getDctermsPrefix()).isNull();
+    }
+
+    @Test
+    void get_should_derive_a_fact_only_once() throws Exception {
+        var ddm = read("<ddm:DDM xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"><ddm:profile/></ddm:DDM>");
+        var count = new AtomicInteger();
+        DdmModel.Fact<String> fact = model -> {
+            count.incrementAndGet();
+            return null;
+        };
+
+        assertThat(ddm.get(fact)).isNull();
+        assertThat(ddm.get(fact)).isNull();
+        assertThat(count.get()).isEqualTo(1);
+    }
+}
@@ -64,4 +64,12 @@ class CommonDepositManagerIntegrationTest {
             assertThat(stream.size()).isGreaterThan(0);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void toSwordToken_should_accept_sword_token_and_urn_uuid() {
+        assertThat(DepositManager.toSwordToken("sword:0b9bb5ee-3187-4387-bb39-2c09536c79f7")).isEqualTo("sword:0b9bb5ee-3187-4387-bb39-2c09536c79f7");
+        assertThat(DepositManager.toSwordToken("urn:uuid:0b9bb5ee-3187-4387-bb39-2c09536c79f7")).isEqualTo("sword:0b9bb5ee-3187-4387-bb39-2c09536c79f7");
+        assertThatThrownBy(() -> DepositManager.toSwordToken("doi:10.5072/abc"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -16,11 +16,13 @@
 package nl.knaw.dans.vaultingest.core.deposit;
 
 import nl.knaw.dans.bagit.domain.Bag;
+import nl.knaw.dans.bagit.hash.StandardSupportedAlgorithms;
 import nl.knaw.dans.bagit.reader.BagReader;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -72,6 +74,17 @@ class DepositBagIntegrationTest {
         assertThat(depositBag.getBagInfoValue("Does-Not-Exist")).isEmpty();
     }
 
+    @Test
+    void getPayloadManifestChecksums() throws Exception {
+        var depositBag = new DepositBag(getBag());
+
+        var checksums = depositBag.getPayloadManifestChecksums();
+
+        assertThat(checksums).hasSize(4);
+        assertThat(checksums.get(Path.of("data/26e30e9b-64a8-4a2f-8c70-a4653219c984")))
+            .containsOnly(Map.entry(StandardSupportedAlgorithms.SHA1, "f750a66151421a62521be6495684fb8384cb4aa0"));
+    }
+
     Bag getBag() throws Exception {
         var bagPath = "/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/audiences/";
         var resource = Path.of(Objects.requireNonNull(getClass().getResource(bagPath)).getPath());
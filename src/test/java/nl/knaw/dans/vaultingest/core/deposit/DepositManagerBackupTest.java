@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.config.BagBackupConfig;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepositManagerBackupTest extends AbstractTestWithTestDir {
+    private Path depositDir;
+    private Path bagDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        depositDir = Files.createDirectories(testDir.resolve("deposit"));
+        bagDir = Files.createDirectories(depositDir.resolve("bag"));
+        Files.createDirectories(bagDir.resolve("data/sub"));
+        Files.createDirectories(bagDir.resolve("metadata"));
+        Files.writeString(bagDir.resolve("data/sub/file.txt"), "payload");
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Bagging-Date: 2023-01-01\n");
+        Files.writeString(bagDir.resolve("metadata/dataset.xml"), "<ddm/>");
+    }
+
+    @Test
+    void backUpOriginalBag_should_link_payload_and_copy_tag_files() throws Exception {
+        new DepositManager(new XmlReader(), BagBackupConfig.Mode.HARD_LINK).backUpOriginalBag(depositDir);
+
+        var backup = depositDir.resolve("org-bag");
+        assertThat(Files.isSameFile(backup.resolve("data/sub/file.txt"), bagDir.resolve("data/sub/file.txt"))).isTrue();
+        assertThat(Files.isSameFile(backup.resolve("bag-info.txt"), bagDir.resolve("bag-info.txt"))).isFalse();
+        assertThat(Files.isSameFile(backup.resolve("metadata/dataset.xml"), bagDir.resolve("metadata/dataset.xml"))).isFalse();
+
+        // Rewriting a tag file in place must leave the backup intact
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Bagging-Date: 2024-01-01\n");
+        assertThat(Files.readString(backup.resolve("bag-info.txt"))).isEqualTo("Bagging-Date: 2023-01-01\n");
+    }
+
+    @Test
+    void backUpOriginalBag_should_copy_everything_in_copy_mode() throws Exception {
+        new DepositManager(new XmlReader(), BagBackupConfig.Mode.COPY).backUpOriginalBag(depositDir);
+
+        var backup = depositDir.resolve("org-bag");
+        assertThat(Files.isSameFile(backup.resolve("data/sub/file.txt"), bagDir.resolve("data/sub/file.txt"))).isFalse();
+        assertThat(Files.readString(backup.resolve("data/sub/file.txt"))).isEqualTo("payload");
+    }
+
+    @Test
+    void isHardLinkNotSupported_should_accept_cross_device_and_unsupported_links() {
+        assertThat(DepositManager.isHardLinkNotSupported(new FileSystemException("a", "b", "Invalid cross-device link"))).isTrue();
+        assertThat(DepositManager.isHardLinkNotSupported(new FileSystemException("a", "b", "Operation not supported"))).isTrue();
+        assertThat(DepositManager.isHardLinkNotSupported(new FileSystemException("a", "b", "Operation not permitted"))).isTrue();
+    }
+
+    @Test
+    void isHardLinkNotSupported_should_reject_errors_about_the_file_itself() {
+        assertThat(DepositManager.isHardLinkNotSupported(new NoSuchFileException("a", "b", "No such file or directory"))).isFalse();
+        assertThat(DepositManager.isHardLinkNotSupported(new AccessDeniedException("a", "b", "Permission denied"))).isFalse();
+        assertThat(DepositManager.isHardLinkNotSupported(new FileSystemException("a", "b", "Too many links"))).isFalse();
+        assertThat(DepositManager.isHardLinkNotSupported(new FileSystemException("a"))).isFalse();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilesXmlReaderTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void read_should_return_all_file_entries_in_document_order() throws Exception {
+        var filesXml = new FilesXmlReader().read(Path.of("src/test/resources/input/c169676f-5315-4d86-bde0-a62dbc915228/audiences/metadata/files.xml"));
+
+        assertThat(filesXml.size()).isEqualTo(4);
+        assertThat(filesXml.getFilepath(0)).isEqualTo("data/random images/image01.png");
+        assertThat(filesXml.getDescription(0)).isEqualTo("This description will be archived, but not displayed anywhere in the Web-UI");
+        assertThat(filesXml.getAccessibleToRights(0)).isNull();
+        assertThat(filesXml.getFilepath(1)).isEqualTo("data/random images/image02.jpeg");
+        assertThat(filesXml.getDescription(1)).isNull();
+        assertThat(filesXml.getAccessibleToRights(1)).isEqualTo("ANONYMOUS");
+        assertThat(filesXml.getFilepath(3)).isEqualTo("data/a/deeper/path/With some file.txt");
+        assertThat(filesXml.getAccessibleToRights(3)).isEqualTo("KNOWN");
+    }
+
+    @Test
+    public void read_should_take_first_value_and_ignore_other_namespaces() throws Exception {
+        var file = testDir.resolve("files.xml");
+        Files.writeString(file, "<files xmlns='http://easy.dans.knaw.nl/schemas/bag/metadata/files/' xmlns:dcterms='http://purl.org/dc/terms/' xmlns:other='urn:other'>"
+            + "  <file filepath='data/a.txt'>"
+            + "    <other:description>not this one</other:description>"
+            + "    <dcterms:description>first <!-- comment -->description</dcterms:description>"
+            + "    <dcterms:description>second description</dcterms:description>"
+            + "    <accessibleToRights>NONE</accessibleToRights>"
+            + "    <visibleToRights>ANONYMOUS</visibleToRights>"
+            + "  </file>"
+            + "  <file filepath='data/b.txt'/>"
+            + "</files>");
+
+        var filesXml = new FilesXmlReader().read(file);
+
+        assertThat(filesXml.size()).isEqualTo(2);
+        assertThat(filesXml.getDescription(0)).isEqualTo("first description");
+        assertThat(filesXml.getAccessibleToRights(0)).isEqualTo("NONE");
+        assertThat(filesXml.getVisibleToRights(0)).isEqualTo("ANONYMOUS");
+        assertThat(filesXml.getFilepath(1)).isEqualTo("data/b.txt");
+        assertThat(filesXml.getDescription(1)).isNull();
+    }
+}
@@ -81,4 +81,28 @@ class OriginalFilepathsTest {
         var pathOnDisk = Path.of("data/no/mapping/here");
         assertThat(paths.getPhysicalPath(pathOnDisk)).isEqualTo(pathOnDisk);
     }
-}
\ No newline at end of file
+
+    @Test
+    void first_mapping_should_win() {
+        var paths = buildOriginalFilepaths();
+        paths.addMapping(Path.of("data/in/a/nice/way"), Path.of("data/987654321"));
+        paths.addMapping(Path.of("data/in/another/way"), Path.of("data/123456789"));
+
+        assertThat(paths.getPhysicalPath(Path.of("data/in/a/nice/way"))).isEqualTo(Path.of("data/123456789"));
+        assertThat(paths.getLogicalPath(Path.of("data/123456789"))).isEqualTo(Path.of("data/in/a/nice/way"));
+    }
+
+    @Test
+    void lookups_should_work_in_both_directions_for_many_mappings() {
+        var paths = new OriginalFilepaths();
+        for (int i = 0; i < 100_000; i++) {
+            paths.addMapping(Path.of("data/dir" + (i % 100), "file " + i + ".txt"), Path.of("data", "f" + i));
+        }
+
+        assertThat(paths.size()).isEqualTo(100_000);
+        for (int i = 0; i < 100_000; i += 997) {
+            assertThat(paths.getPhysicalPath(Path.of("data/dir" + (i % 100), "file " + i + ".txt"))).isEqualTo(Path.of("data", "f" + i));
+            assertThat(paths.getLogicalPath(Path.of("data", "f" + i))).isEqualTo(Path.of("data/dir" + (i % 100), "file " + i + ".txt"));
+        }
+    }
+}
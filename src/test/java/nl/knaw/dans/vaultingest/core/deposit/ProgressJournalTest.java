@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.core.deposit.ProgressJournal.Step;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProgressJournalTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void open_should_create_an_empty_journal() throws Exception {
+        assertThat(ProgressJournal.exists(testDir)).isFalse();
+
+        var journal = ProgressJournal.open(testDir);
+
+        assertThat(ProgressJournal.exists(testDir)).isTrue();
+        for (var step : Step.values()) {
+            assertThat(journal.isDone(step)).isFalse();
+        }
+    }
+
+    @Test
+    void record_should_survive_reopening() throws Exception {
+        var journal = ProgressJournal.open(testDir);
+        journal.record(Step.VALIDATED);
+        journal.record(Step.REGISTERED, Map.of(ProgressJournal.NBN, "urn:nbn:nl:ui:13-abc", ProgressJournal.OBJECT_VERSION, "2"));
+
+        var reopened = ProgressJournal.open(testDir);
+
+        assertThat(reopened.isDone(Step.VALIDATED)).isTrue();
+        assertThat(reopened.isDone(Step.BACKED_UP)).isFalse();
+        assertThat(reopened.isDone(Step.REGISTERED)).isTrue();
+        assertThat(reopened.get(ProgressJournal.NBN)).isEqualTo("urn:nbn:nl:ui:13-abc");
+        assertThat(reopened.get(ProgressJournal.OBJECT_VERSION)).isEqualTo("2");
+        assertThat(testDir.resolve(ProgressJournal.FILENAME + ".tmp")).doesNotExist();
+    }
+
+    @Test
+    void undo_should_mark_steps_as_not_completed() throws Exception {
+        var journal = ProgressJournal.open(testDir);
+        journal.record(Step.BACKED_UP);
+        journal.record(Step.METADATA_WRITTEN);
+
+        journal.undo(Step.BACKED_UP, Step.METADATA_WRITTEN);
+
+        var reopened = ProgressJournal.open(testDir);
+        assertThat(reopened.isDone(Step.BACKED_UP)).isFalse();
+        assertThat(reopened.isDone(Step.METADATA_WRITTEN)).isFalse();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.diskspace;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.util.DataSize;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.config.DiskSpaceConfig;
+import nl.knaw.dans.vaultingest.core.concurrent.Schedulable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskSpaceAdmissionControlTest extends AbstractTestWithTestDir {
+    static final long MB = 1024 * 1024;
+
+    private DiskSpaceAdmissionControl admissionControl;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        admissionControl = createAdmissionControl(testDir, 100 * MB);
+    }
+
+    @Test
+    void tryAdmit_should_admit_deposit_that_fits() {
+        var deposit = new Deposit(40 * MB);
+
+        assertThat(admissionControl.tryAdmit(deposit)).isTrue();
+        assertThat(admissionControl.getHeadroom().get("bag-pack-output-dir")).isLessThan(25 * MB);
+    }
+
+    @Test
+    void tryAdmit_should_hold_back_deposit_until_space_is_released() {
+        var first = new Deposit(40 * MB);
+        var second = new Deposit(40 * MB);
+        assertThat(admissionControl.tryAdmit(first)).isTrue();
+
+        assertThat(admissionControl.tryAdmit(second)).isFalse();
+        // It will fit once the first deposit is done, so it must not be overtaken
+        assertThat(admissionControl.mayBeOvertaken(second)).isFalse();
+
+        admissionControl.release(first);
+        assertThat(admissionControl.tryAdmit(second)).isTrue();
+    }
+
+    @Test
+    void mayBeOvertaken_should_be_true_for_deposit_that_can_never_fit() {
+        var inProgress = new Deposit(40 * MB);
+        var tooLarge = new Deposit(1000 * MB);
+        assertThat(admissionControl.tryAdmit(inProgress)).isTrue();
+
+        assertThat(admissionControl.tryAdmit(tooLarge)).isFalse();
+        assertThat(admissionControl.mayBeOvertaken(tooLarge)).isTrue();
+        assertThat(admissionControl.getTooLargeCount()).isEqualTo(1);
+
+        admissionControl.release(inProgress);
+        assertThat(admissionControl.tryAdmit(tooLarge)).isFalse();
+        assertThat(admissionControl.mayBeOvertaken(tooLarge)).isTrue();
+        assertThat(admissionControl.getTooLargeCount()).isEqualTo(1);
+    }
+
+    /**
+     * Creates an admission control for directories on the volume of the test directory, with the minimum free space set so that the given headroom remains.
+     */
+    static DiskSpaceAdmissionControl createAdmissionControl(Path testDir, long headroom) throws Exception {
+        var inbox = Files.createDirectories(testDir.resolve("inbox"));
+        var outbox = Files.createDirectories(testDir.resolve("outbox"));
+        var bagPackOutputDir = Files.createDirectories(testDir.resolve("bagpacks"));
+        var workDir = Files.createDirectories(testDir.resolve("work"));
+        var config = new DiskSpaceConfig();
+        config.setOverheadFactor(1.0);
+        config.setMinimumFreeSpace(DataSize.bytes(Files.getFileStore(testDir).getUsableSpace() - headroom));
+        return new DiskSpaceAdmissionControl(inbox, outbox, bagPackOutputDir, workDir, false, config, new MetricRegistry());
+    }
+
+    static class Deposit implements Runnable, Schedulable {
+        private final long payloadSize;
+
+        Deposit(long payloadSize) {
+            this.payloadSize = payloadSize;
+        }
+
+        @Override
+        public long getPayloadSize() {
+            return payloadSize;
+        }
+
+        @Override
+        public String getDepositorId() {
+            return null;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.diskspace;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.core.diskspace.DiskSpaceAdmissionControlTest.Deposit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static nl.knaw.dans.vaultingest.core.diskspace.DiskSpaceAdmissionControlTest.MB;
+import static nl.knaw.dans.vaultingest.core.diskspace.DiskSpaceAdmissionControlTest.createAdmissionControl;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskSpaceHealthCheckTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void check_should_be_healthy_while_deposits_fit() throws Exception {
+        var admissionControl = createAdmissionControl(testDir, 100 * MB);
+        admissionControl.tryAdmit(new Deposit(40 * MB));
+
+        var result = new DiskSpaceHealthCheck(admissionControl).execute();
+
+        assertThat(result.isHealthy()).isTrue();
+        assertThat(result.getMessage()).startsWith("Headroom per volume: inbox: ");
+    }
+
+    @Test
+    void check_should_be_unhealthy_when_free_space_is_below_minimum() throws Exception {
+        var admissionControl = createAdmissionControl(testDir, -100 * MB);
+
+        var result = new DiskSpaceHealthCheck(admissionControl).execute();
+
+        assertThat(result.isHealthy()).isFalse();
+        assertThat(result.getMessage()).startsWith("Free space below minimum");
+    }
+
+    @Test
+    void check_should_be_unhealthy_while_a_deposit_can_never_fit() throws Exception {
+        var admissionControl = createAdmissionControl(testDir, 100 * MB);
+        var tooLarge = new Deposit(1000 * MB);
+        admissionControl.tryAdmit(tooLarge);
+        admissionControl.mayBeOvertaken(tooLarge);
+
+        var result = new DiskSpaceHealthCheck(admissionControl).execute();
+
+        assertThat(result.isHealthy()).isFalse();
+        assertThat(result.getMessage()).startsWith("1 deposit(s) need more space than available");
+    }
+}
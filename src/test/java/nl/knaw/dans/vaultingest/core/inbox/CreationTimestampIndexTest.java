@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CreationTimestampIndexTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void pollOldest_should_return_deposits_in_creation_timestamp_order() throws Exception {
+        var index = new CreationTimestampIndex(new MetricRegistry());
+        var second = createDeposit("b", "2023-02-21T17:23:51.533954576+01:00");
+        var third = createDeposit("a", "2023-02-22T10:00:00Z");
+        var first = createDeposit("c", "2023-02-21T15:00:00Z");
+
+        index.add(second);
+        index.add(third);
+        index.add(first);
+
+        assertThat(index.pollOldest()).contains(first);
+        assertThat(index.pollOldest()).contains(second);
+        assertThat(index.pollOldest()).contains(third);
+        assertThat(index.pollOldest()).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void add_should_not_hand_out_a_deposit_twice() throws Exception {
+        var index = new CreationTimestampIndex(new MetricRegistry());
+        var deposit = createDeposit("a", "2023-02-22T10:00:00Z");
+
+        assertThat(index.add(deposit)).isTrue();
+        assertThat(index.pollOldest()).contains(deposit);
+        assertThat(index.add(deposit)).isFalse();
+        assertThat(index.pollOldest()).isEmpty();
+    }
+
+    @Test
+    void rebuild_should_remove_deposits_that_are_gone_and_add_new_ones() throws Exception {
+        var index = new CreationTimestampIndex(new MetricRegistry());
+        var gone = createDeposit("a", "2023-02-21T15:00:00Z");
+        var stays = createDeposit("b", "2023-02-22T10:00:00Z");
+        var added = createDeposit("c", "2023-02-23T10:00:00Z");
+        index.add(gone);
+        index.add(stays);
+
+        index.rebuild(List.of(stays, added));
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.pollOldest()).contains(stays);
+        assertThat(index.pollOldest()).contains(added);
+    }
+
+    @Test
+    void add_should_order_deposits_without_readable_timestamp_last() throws Exception {
+        var index = new CreationTimestampIndex(new MetricRegistry());
+        var invalid = createDeposit("a", "not a timestamp");
+        var valid = createDeposit("b", "2023-02-22T10:00:00Z");
+
+        index.add(invalid);
+        index.add(valid);
+
+        assertThat(index.pollOldest()).contains(valid);
+        assertThat(index.pollOldest()).contains(invalid);
+    }
+
+    private Path createDeposit(String name, String creationTimestamp) throws IOException {
+        var depositDir = Files.createDirectories(testDir.resolve(name));
+        Files.writeString(depositDir.resolve("deposit.properties"), "creation.timestamp=" + creationTimestamp + "\n");
+        return depositDir;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import nl.knaw.dans.lib.util.inbox.InboxTaskFactory;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.config.InboxConfig;
+import nl.knaw.dans.vaultingest.core.concurrent.DatasetKeyed;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.Watchable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepositInboxTest extends AbstractTestWithTestDir {
+    // Long enough that a deposit picked up during a test was not found by a periodic rescan
+    private static final Duration RESCAN_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration POLLING_INTERVAL = Duration.ofMillis(100);
+
+    private final BlockingQueue<Path> submitted = new LinkedBlockingQueue<>();
+    private final InboxTaskFactory taskFactory = path -> new RecordingTask(path, submitted);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private Path inboxDir;
+    private DepositInbox depositInbox;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        inboxDir = Files.createDirectories(testDir.resolve("inbox"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (depositInbox != null) {
+            depositInbox.stop();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void start_should_submit_deposits_already_in_the_inbox() throws Exception {
+        var deposit = createDeposit(inboxDir, "deposit-1");
+        depositInbox = createInbox(InboxConfig.Mode.WATCH);
+
+        depositInbox.start();
+
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit);
+    }
+
+    @Test
+    void watch_should_submit_deposit_moved_into_the_inbox() throws Exception {
+        depositInbox = createInbox(InboxConfig.Mode.WATCH);
+        depositInbox.start();
+
+        var staged = createDeposit(Files.createDirectories(testDir.resolve("staging")), "deposit-1");
+        var deposit = Files.move(staged, inboxDir.resolve("deposit-1"));
+
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit);
+    }
+
+    @Test
+    void watch_should_retry_deposit_directory_until_its_deposit_properties_appears() throws Exception {
+        depositInbox = createInbox(InboxConfig.Mode.WATCH);
+        depositInbox.start();
+
+        var depositDir = Files.createDirectories(inboxDir.resolve("deposit-1"));
+        assertThat(submitted.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        writeDepositProperties(depositDir);
+
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(depositDir);
+    }
+
+    @Test
+    void watch_should_rescan_the_inbox_when_events_are_lost() throws Exception {
+        var watchService = new FakeWatchService();
+        depositInbox = createInbox(watchService);
+        depositInbox.start();
+
+        // The fake watch service does not report it
+        var deposit = createDeposit(inboxDir, "deposit-1");
+        assertThat(submitted.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        watchService.keys.add(new FakeWatchKey(inboxDir, true, StandardWatchEventKinds.OVERFLOW));
+
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit);
+        assertThat(depositInbox.isWatching()).isTrue();
+    }
+
+    @Test
+    void watch_should_fall_back_to_polling_when_the_inbox_can_no_longer_be_watched() throws Exception {
+        var watchService = new FakeWatchService();
+        depositInbox = createInbox(watchService);
+        depositInbox.start();
+
+        watchService.keys.add(new FakeWatchKey(inboxDir, false));
+
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (depositInbox.isWatching() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(depositInbox.isWatching()).isFalse();
+    }
+
+    @Test
+    void poll_should_submit_deposits_oldest_first() throws Exception {
+        var newer = createDeposit(inboxDir, "deposit-1", "2023-02-22T10:00:00Z");
+        var older = createDeposit(inboxDir, "deposit-2", "2023-02-21T10:00:00Z");
+        depositInbox = new DepositInbox(inboxDir, InboxConfig.Mode.POLLING, POLLING_INTERVAL, new CreationTimestampIndex(new MetricRegistry()), taskFactory, executor, null);
+
+        depositInbox.start();
+        var newest = createDeposit(inboxDir, "deposit-0", "2023-02-23T10:00:00Z");
+
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(older);
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(newer);
+        assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(newest);
+        assertThat(depositInbox.isWatching()).isFalse();
+    }
+
+    @Test
+    void poll_should_offer_deposit_again_after_another_instance_released_its_dataset() throws Exception {
+        var leaseDir = testDir.resolve("leases");
+        var leases = new DepositLeases(leaseDir, "node-1", Duration.ofMinutes(5), Duration.ofMinutes(1), new MetricRegistry());
+        var otherInstance = new DepositLeases(leaseDir, "node-2", Duration.ofMinutes(5), Duration.ofMinutes(1), new MetricRegistry());
+        leases.start();
+        var deposit = createDeposit(inboxDir, "deposit-1");
+        assertThat(otherInstance.tryClaim("sword:deposit-1", deposit)).isTrue();
+        depositInbox = new DepositInbox(inboxDir, InboxConfig.Mode.POLLING, POLLING_INTERVAL, new CreationTimestampIndex(new MetricRegistry()), taskFactory, executor, leases);
+
+        try {
+            depositInbox.start();
+            assertThat(submitted.poll(1, TimeUnit.SECONDS)).isNull();
+
+            otherInstance.release("sword:deposit-1");
+
+            assertThat(submitted.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit);
+        }
+        finally {
+            leases.stop();
+        }
+    }
+
+    private DepositInbox createInbox(InboxConfig.Mode mode) {
+        return new DepositInbox(inboxDir, mode, RESCAN_INTERVAL, new CreationTimestampIndex(new MetricRegistry()), taskFactory, executor, null);
+    }
+
+    private DepositInbox createInbox(WatchService watchService) {
+        return new DepositInbox(inboxDir, InboxConfig.Mode.WATCH, RESCAN_INTERVAL, new CreationTimestampIndex(new MetricRegistry()), taskFactory, executor, null) {
+
+            @Override
+            WatchService createWatchService() {
+                return watchService;
+            }
+        };
+    }
+
+    private static Path createDeposit(Path parent, String name) throws Exception {
+        return createDeposit(parent, name, "2023-02-21T17:23:51.533954576+01:00");
+    }
+
+    private static Path createDeposit(Path parent, String name, String creationTimestamp) throws Exception {
+        var depositDir = Files.createDirectories(parent.resolve(name));
+        writeDepositProperties(depositDir, creationTimestamp);
+        return depositDir;
+    }
+
+    private static void writeDepositProperties(Path depositDir) throws Exception {
+        writeDepositProperties(depositDir, "2023-02-21T17:23:51.533954576+01:00");
+    }
+
+    private static void writeDepositProperties(Path depositDir, String creationTimestamp) throws Exception {
+        Files.writeString(depositDir.resolve("deposit.properties"), "creation.timestamp=" + creationTimestamp + "\n");
+    }
+
+    private static class RecordingTask implements Runnable, DatasetKeyed {
+        private final Path depositDir;
+        private final BlockingQueue<Path> submitted;
+
+        private RecordingTask(Path depositDir, BlockingQueue<Path> submitted) {
+            this.depositDir = depositDir;
+            this.submitted = submitted;
+        }
+
+        @Override
+        public String getDatasetKey() {
+            return "sword:" + depositDir.getFileName();
+        }
+
+        @Override
+        public void run() {
+            submitted.add(depositDir);
+        }
+    }
+
+    private static class FakeWatchService implements WatchService {
+        private final BlockingQueue<WatchKey> keys = new LinkedBlockingQueue<>();
+
+        @Override
+        public WatchKey poll() {
+            return keys.poll();
+        }
+
+        @Override
+        public WatchKey poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return keys.poll(timeout, unit);
+        }
+
+        @Override
+        public WatchKey take() throws InterruptedException {
+            return keys.take();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FakeWatchKey implements WatchKey {
+        private final Path dir;
+        private final boolean valid;
+        private final List<WatchEvent<?>> events;
+
+        private FakeWatchKey(Path dir, boolean valid, WatchEvent.Kind<?>... kinds) {
+            this.dir = dir;
+            this.valid = valid;
+            this.events = List.of(kinds).stream().<WatchEvent<?>> map(FakeWatchEvent::new).toList();
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents() {
+            return events;
+        }
+
+        @Override
+        public boolean reset() {
+            return valid;
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public Watchable watchable() {
+            return dir;
+        }
+    }
+
+    private static class FakeWatchEvent implements WatchEvent<Object> {
+        private final Kind<?> kind;
+
+        private FakeWatchEvent(Kind<?> kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Kind<Object> kind() {
+            return (Kind<Object>) kind;
+        }
+
+        @Override
+        public int count() {
+            return 1;
+        }
+
+        @Override
+        public Object context() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepositLeasesTest extends AbstractTestWithTestDir {
+    private static final String DATASET = "sword:6a9fd5a4-0b2a-4e1c-8a5e-5a4f1a3c2b10";
+
+    private Path leaseDir;
+    private Path depositDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        leaseDir = Files.createDirectories(testDir.resolve("leases"));
+        depositDir = Files.createDirectories(testDir.resolve("inbox/deposit-1"));
+    }
+
+    @Test
+    void tryClaim_should_fail_while_another_instance_holds_the_lease() {
+        var first = createLeases("node-1");
+        var second = createLeases("node-2");
+        var conflicts = new ArrayList<Path>();
+        second.addConflictListener(conflicts::add);
+
+        assertThat(first.tryClaim(DATASET, depositDir)).isTrue();
+        assertThat(second.tryClaim(DATASET, depositDir)).isFalse();
+        assertThat(second.isLeasedElsewhere(DATASET)).isTrue();
+        assertThat(first.isLeasedElsewhere(DATASET)).isFalse();
+        assertThat(conflicts).containsExactly(depositDir);
+    }
+
+    @Test
+    void tryClaim_should_succeed_after_the_lease_is_released() {
+        var first = createLeases("node-1");
+        var second = createLeases("node-2");
+
+        assertThat(first.tryClaim(DATASET, depositDir)).isTrue();
+        first.release(DATASET);
+
+        assertThat(second.tryClaim(DATASET, depositDir)).isTrue();
+        assertThat(first.isLeasedElsewhere(DATASET)).isTrue();
+    }
+
+    @Test
+    void tryClaim_should_take_over_an_expired_lease() throws Exception {
+        var crashed = createLeases("node-1");
+        var survivor = createLeases("node-2");
+        assertThat(crashed.tryClaim(DATASET, depositDir)).isTrue();
+        Files.setLastModifiedTime(getLeaseFile(), FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+
+        assertThat(survivor.isLeasedElsewhere(DATASET)).isFalse();
+        assertThat(survivor.tryClaim(DATASET, depositDir)).isTrue();
+        assertThat(Files.readAllLines(getLeaseFile())).containsExactly("node-2", "deposit-1");
+        try (var list = Files.list(leaseDir)) {
+            assertThat(list).hasSize(1);
+        }
+    }
+
+    @Test
+    void tryClaim_should_take_back_a_lease_of_the_same_instance_after_a_restart() {
+        assertThat(createLeases("node-1").tryClaim(DATASET, depositDir)).isTrue();
+
+        var restarted = createLeases("node-1");
+
+        assertThat(restarted.isLeasedElsewhere(DATASET)).isFalse();
+        assertThat(restarted.tryClaim(DATASET, depositDir)).isTrue();
+        assertThat(restarted.getHeldDepositDirs()).containsExactly(depositDir);
+    }
+
+    @Test
+    void tryClaim_should_fail_for_another_deposit_of_a_dataset_held_by_another_instance() throws Exception {
+        var otherDepositDir = Files.createDirectories(testDir.resolve("inbox/deposit-2"));
+        var first = createLeases("node-1");
+        var second = createLeases("node-2");
+
+        assertThat(first.tryClaim(DATASET, depositDir)).isTrue();
+        assertThat(second.isLeasedElsewhere(DATASET)).isTrue();
+        assertThat(second.tryClaim(DATASET, otherDepositDir)).isFalse();
+        assertThat(second.tryClaim("sword:other-dataset", otherDepositDir)).isTrue();
+
+        first.release(DATASET);
+        second.release("sword:other-dataset");
+        assertThat(second.tryClaim(DATASET, otherDepositDir)).isTrue();
+        assertThat(second.getHeldDepositDirs()).containsExactly(otherDepositDir);
+    }
+
+    private Path getLeaseFile() {
+        return leaseDir.resolve("sword%3A6a9fd5a4-0b2a-4e1c-8a5e-5a4f1a3c2b10");
+    }
+
+    private DepositLeases createLeases(String instanceId) {
+        return new DepositLeases(leaseDir, instanceId, Duration.ofMinutes(5), Duration.ofMinutes(1), new MetricRegistry());
+    }
+}
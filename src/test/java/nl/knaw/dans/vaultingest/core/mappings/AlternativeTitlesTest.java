@@ -30,7 +30,7 @@ class AlternativeTitlesTest {
         var resource = model.createResource();
 
         var deposit = Deposit.builder()
-            .ddm(Util.readXml("<ddm:DDM\n"
+            .ddm(Util.readDdm("<ddm:DDM\n"
                 + "        xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
                 + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
                 + "        xmlns:dcterms=\"http://purl.org/dc/terms/\"\n"
@@ -63,7 +63,7 @@ class AlternativeTitlesTest {
         var resource = model.createResource();
 
         var deposit = Deposit.builder()
-            .ddm(Util.readXml("<ddm:DDM\n"
+            .ddm(Util.readDdm("<ddm:DDM\n"
                 + "        xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
                 + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
                 + "        xmlns:dcterms=\"http://purl.org/dc/terms/\"\n"
@@ -94,7 +94,7 @@ class AlternativeTitlesTest {
         var resource = model.createResource();
 
         var deposit = Deposit.builder()
-            .ddm(Util.readXml("<ddm:DDM\n"
+            .ddm(Util.readDdm("<ddm:DDM\n"
                 + "        xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
                 + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
                 + "        xmlns:dcterms=\"http://purl.org/dc/terms/\"\n"
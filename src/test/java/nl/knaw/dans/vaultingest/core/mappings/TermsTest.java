@@ -15,11 +15,11 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
+import nl.knaw.dans.vaultingest.core.deposit.FilesXmlTable;
 import nl.knaw.dans.vaultingest.core.deposit.PayloadFile;
-import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.junit.jupiter.api.Test;
-import org.w3c.dom.Node;
 
 import java.util.List;
 
@@ -30,87 +30,82 @@ class TermsTest {
     @Test
     void isRequestAccess_should_return_true_when_no_information_is_available() throws Exception {
         var depositFile = PayloadFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filesXml(getFilesXml("data/invalid/characters/here:*?\"<>|;#.txt"))
+            .ddm(getDdmWithAccessRights(null))
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(depositFile.getDdm(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_false_when_getAccessRights_equals_OPEN_ACCESS() throws Exception {
         var depositFile = PayloadFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights("OPEN_ACCESS"))
+            .filesXml(getFilesXml("data/invalid/characters/here:*?\"<>|;#.txt"))
+            .ddm(getDdmWithAccessRights("OPEN_ACCESS"))
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(depositFile.getDdm(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_true_when_getAccessRights_equals_RANDOM_VALUE() throws Exception {
         var depositFile = PayloadFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights("RANDOM_VALUE"))
+            .filesXml(getFilesXml("data/invalid/characters/here:*?\"<>|;#.txt"))
+            .ddm(getDdmWithAccessRights("RANDOM_VALUE"))
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(depositFile.getDdm(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_true_when_getAccessibleToRights_is_empty() throws Exception {
         var depositFile = PayloadFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights(""))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filesXml(getFilesXmlWithAccessibleToRights(""))
+            .ddm(getDdmWithAccessRights(null))
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(depositFile.getDdm(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_true_when_getAccessibleToRights_equals_ANYTHING() throws Exception {
         var depositFile = PayloadFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights("ANYTHING"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filesXml(getFilesXmlWithAccessibleToRights("ANYTHING"))
+            .ddm(getDdmWithAccessRights(null))
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(depositFile.getDdm(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_false_when_getAccessibleToRights_equals_NONE() throws Exception {
         var depositFile = PayloadFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights("NONE"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filesXml(getFilesXmlWithAccessibleToRights("NONE"))
+            .ddm(getDdmWithAccessRights(null))
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(depositFile.getDdm(), List.of(depositFile));
         assertThat(result).isFalse();
     }
 
-    Node getFilesXmlNode(String path) throws Exception {
-        var node = new XmlReader().readXmlString("<file  xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", path);
-
-        return node.getDocumentElement();
+    FilesXmlTable getFilesXml(String path) {
+        var filesXml = new FilesXmlTable();
+        filesXml.add(path, null, null, null);
+        return filesXml;
     }
 
-    Node getFilesXmlNodeWithAccessibleToRights(String accessibleToRights) throws Exception {
-        var node = new XmlReader().readXmlString("<file xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", "path/to/file.txt");
-
-        var acc = node.createElementNS(XmlNamespaces.NAMESPACE_FILES_XML, "accessibleToRights");
-        acc.setTextContent(accessibleToRights);
-        node.getDocumentElement().appendChild(acc);
-        return node.getDocumentElement();
+    FilesXmlTable getFilesXmlWithAccessibleToRights(String accessibleToRights) {
+        var filesXml = new FilesXmlTable();
+        filesXml.add("path/to/file.txt", null, accessibleToRights, null);
+        return filesXml;
     }
 
-    Node getDdmNodeWithAccessRights(String mode) throws Exception {
+    DdmModel getDdmWithAccessRights(String mode) throws Exception {
         var accessRights = mode != null ? "<ddm:accessRights>" + mode + "</ddm:accessRights>" : "";
         var str = "<ddm:DDM xmlns:ddm='http://schemas.dans.knaw.nl/dataset/ddm-v2/'>"
             + "    <ddm:profile>"
@@ -118,7 +113,6 @@ class TermsTest {
             + "    </ddm:profile>"
             + "</ddm:DDM>";
 
-        var node = new XmlReader().readXmlString(str);
-        return node.getDocumentElement();
+        return DdmModel.read(new XmlReader().readXmlString(str));
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.vaultingest.core.mappings;
 
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.w3c.dom.Document;
 
@@ -24,4 +25,8 @@ public class Util {
     public static Document readXml(String ddm) throws Exception {
         return xmlReader.readXmlString(ddm);
     }
+
+    public static DdmModel readDdm(String ddm) throws Exception {
+        return DdmModel.read(readXml(ddm));
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings;
+
+import nl.knaw.dans.vaultingest.core.ddm.DdmModel;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.deposit.PayloadFile;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetAuthor;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Distributor;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.GrantNumber;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the values the mappings read from the DDM through {@link DdmModel} with the values the former XPath queries ({@link XPathMappings}) read, for every DDM of the test deposits and for a
+ * DDM with the edge cases of the translations that are easy to get wrong. The RDF and datacite.xml are generated from these values by code that did not change, so equal values give equal
+ * output. Exceptions count as values, so that a DDM that the former code rejected is still rejected.
+ */
+class XPathEquivalenceTest {
+    private final XmlReader xmlReader = new XmlReader();
+
+    private static final String EDGE_CASES = "<ddm:DDM\n"
+        + "        xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
+        + "        xmlns:dcx-dai=\"http://easy.dans.knaw.nl/schemas/dcx/dai/\"\n"
+        + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
+        + "        xmlns:dcterms=\"http://purl.org/dc/terms/\"\n"
+        + "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+        + "        xmlns:ids=\"http://easy.dans.knaw.nl/schemas/vocab/identifier-type/\">\n"
+        + "    <ddm:profile>\n"
+        + "        <dcx-dai:creatorDetails>\n"
+        + "            <dcx-dai:author>\n"
+        + "                <dcx-dai:surname>Two organizations</dcx-dai:surname>\n"
+        + "                <dcx-dai:organization><dcx-dai:role>ContactPerson</dcx-dai:role></dcx-dai:organization>\n"
+        + "                <dcx-dai:organization><dcx-dai:name> Second Org </dcx-dai:name><dcx-dai:name>Third Org</dcx-dai:name></dcx-dai:organization>\n"
+        + "            </dcx-dai:author>\n"
+        + "            <dcx-dai:author>\n"
+        + "                <dcx-dai:surname>No organization</dcx-dai:surname>\n"
+        + "                <dcx-dai:name>Not an organization</dcx-dai:name>\n"
+        + "            </dcx-dai:author>\n"
+        + "        </dcx-dai:creatorDetails>\n"
+        + "    </ddm:profile>\n"
+        + "    <ddm:dcmiMetadata>\n"
+        + "        <dc:publisher>DC publisher first</dc:publisher>\n"
+        + "        <dcterms:publisher>DANS</dcterms:publisher>\n"
+        + "        <dcterms:publisher> DANS </dcterms:publisher>\n"
+        + "        <dcterms:publisher>DANS<!-- split -->Publisher</dcterms:publisher>\n"
+        + "        <dcterms:publisher>DANS-KNAW<!-- split -->DANS-KNAW</dcterms:publisher>\n"
+        + "        <dcterms:publisher><dc:title>DANS/KNAW</dc:title></dcterms:publisher>\n"
+        + "        <dcterms:publisher>Mixed <dc:title>content</dc:title></dcterms:publisher>\n"
+        + "        <dcterms:publisher/>\n"
+        + "        <dcterms:identifier xsi:type=\"ids:NWO-PROJECTNR\">12345</dcterms:identifier>\n"
+        + "        <dcterms:identifier xsi:type=\"id-type:NWO-PROJECTNR\">Other prefix</dcterms:identifier>\n"
+        + "        <dc:identifier xsi:type=\"ids:NWO-PROJECTNR\">Not dcterms</dc:identifier>\n"
+        + "        <dcterms:identifier>67890</dcterms:identifier>\n"
+        + "    </ddm:dcmiMetadata>\n"
+        + "</ddm:DDM>";
+
+    @FunctionalInterface
+    interface Getter<S, T> {
+        T get(S source) throws Exception;
+    }
+
+    @Test
+    void titles_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getTitle, Titles::getTitle);
+        assertSameValues(XPathMappings::getAlternativeTitles, AlternativeTitles::getAlternativeTitles);
+        assertSameValues(XPathMappings::getDescriptions, Descriptions::getDescriptions);
+    }
+
+    @Test
+    void audiences_and_subjects_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getAudiences, Audiences::getAudiences);
+        assertSameValues(XPathMappings::getSubjects, Subjects::getSubjects);
+    }
+
+    @Test
+    void authors_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getCreators, Authors::getCreators);
+        assertSameValues(XPathMappings::getAuthors, Authors::getAuthors);
+        assertSameValues(XPathMappings::getOrganizations, Authors::getOrganizations);
+        assertSameValues(XPathMappings::getContributors, Contributors::getContributors);
+        assertSameValues(XPathMappings::getRightsHolders, RightsHolders::getOtherIds);
+    }
+
+    @Test
+    void dates_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getAvailableDate, Available::getAvailableDate);
+        assertSameValues(XPathMappings::getProductionDate, ProductionDate::getProductionDate);
+        assertSameValues(XPathMappings::getCollectionDates, CollectionDates::getCollectionDates);
+        assertSameValues(XPathMappings::getTemporalCoverages, TemporalCoverage::getTemporalCoverages);
+    }
+
+    @Test
+    void relations_and_identifiers_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getDansRelations, DansRelations::getDansRelations);
+        assertSameValues(XPathMappings::getInCollections, InCollection::getInCollections);
+        assertSameValues(XPathMappings::getPublications, Publications::getPublications);
+        assertSameValues(XPathMappings::getSources, Sources::getSources);
+        assertSameValues(XPathMappings::getDoi, ddm -> Deposit.builder().ddm(ddm).build().getDoi());
+        for (var organizationIdentifiers : List.of(List.<String> of(), List.of("org:id-1", "org:id-2"))) {
+            assertSameValues(document -> XPathMappings.getOtherIds(document, organizationIdentifiers), ddm -> OtherIds.getOtherIds(ddm, organizationIdentifiers));
+        }
+    }
+
+    @Test
+    void distributors_and_grant_numbers_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getDistributors, Distributors::getDistributors);
+        assertSameValues(XPathMappings::getFunders, GrantNumbers::getFunders);
+        assertSameValues(XPathMappings::getGrantNumbers, GrantNumbers::getGrantNumbers);
+    }
+
+    @Test
+    void keywords_and_languages_should_be_the_same_as_with_xpath() throws Exception {
+        var languageResolver = TestLanguageResolverSingleton.getInstance();
+        var countryResolver = TestCountryResolverSingleton.getInstance();
+
+        assertSameValues(XPathMappings::getKeywords, Keywords::getKeywords);
+        assertSameValues(document -> XPathMappings.getLanguages(document, languageResolver), ddm -> Languages.getLanguages(ddm, languageResolver));
+        assertSameValues(document -> XPathMappings.getMetadataLanguages(document, languageResolver), ddm -> MetadataLanguages.getMetadataLanguages(ddm, languageResolver));
+        assertSameValues(document -> XPathMappings.getSpatialCoveragesControlled(document, countryResolver), ddm -> SpatialCoverage.getSpatialCoveragesControlled(ddm, countryResolver));
+        assertSameValues(document -> XPathMappings.getSpatialCoveragesText(document, countryResolver), ddm -> SpatialCoverage.getSpatialCoveragesText(ddm, countryResolver));
+    }
+
+    @Test
+    void rights_should_be_the_same_as_with_xpath() throws Exception {
+        assertSameValues(XPathMappings::getLicense, License::getLicense);
+        assertSameValues(XPathMappings::isPersonalDataPresent, PersonalData::isPersonalDataPresent);
+        assertSameValues(XPathMappings::getAccessRights, DataFile::getAccessRights);
+        for (var accessibleToRights : new String[] { null, "ANONYMOUS", "RESTRICTED_REQUEST", "NONE" }) {
+            assertSameValues(document -> XPathMappings.isRestricted(accessibleToRights, document), ddm -> DataFile.isRestricted(accessibleToRights, ddm));
+        }
+        assertSameValues(document -> XPathMappings.isRequestAccess(document, List.of()), ddm -> Terms.isRequestAccess(ddm, List.of()));
+        assertSameValues(document -> XPathMappings.getTermsOfAccess(document, List.of()), ddm -> Terms.getTermsOfAccess(ddm, List.of()));
+    }
+
+    @Test
+    void terms_should_be_the_same_as_with_xpath_for_the_payload_files_of_a_deposit() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), "Name of user");
+        var document = xmlReader.readXmlFile(deposit.getBagDir().resolve("metadata/dataset.xml"));
+        List<PayloadFile> files = deposit.getPayloadFiles();
+        assertThat(files).isNotEmpty();
+
+        assertSameOutcome(document, deposit.getDdm(), ddm -> XPathMappings.isRequestAccess(document, files), ddm -> Terms.isRequestAccess(ddm, files));
+        assertSameOutcome(document, deposit.getDdm(), ddm -> XPathMappings.getTermsOfAccess(document, files), ddm -> Terms.getTermsOfAccess(ddm, files));
+        for (var file : files) {
+            assertSameOutcome(document, deposit.getDdm(), ddm -> XPathMappings.isRestricted(file.getAccessibleToRights(), document),
+                ddm -> DataFile.isRestricted(file.getAccessibleToRights(), ddm));
+        }
+    }
+
+    @Test
+    void edge_cases_should_give_the_expected_values() throws Exception {
+        var ddm = DdmModel.read(xmlReader.readXmlString(EDGE_CASES));
+
+        assertThat(Authors.getAuthors(ddm)).extracting(DatasetAuthor::getAffiliation).containsExactly("Second Org", null);
+        assertThat(Distributors.getDistributors(ddm)).extracting(Distributor::getName)
+            .containsExactly("DC publisher first", " DANS ", "DANSPublisher", "Mixed content");
+        assertThat(GrantNumbers.getGrantNumbers(ddm)).extracting(GrantNumber::getValue).containsExactly("12345");
+    }
+
+    private <T> void assertSameValues(Getter<Document, T> xpath, Getter<DdmModel, T> mapping) throws Exception {
+        for (var document : getDocuments()) {
+            assertSameOutcome(document, DdmModel.read(document), ignored -> xpath.get(document), mapping);
+        }
+    }
+
+    private <T> void assertSameOutcome(Document document, DdmModel ddm, Getter<DdmModel, T> xpath, Getter<DdmModel, T> mapping) {
+        var expected = getOutcome(xpath, ddm);
+        var actual = getOutcome(mapping, ddm);
+
+        assertThat(actual).as(String.valueOf(document.getDocumentURI())).usingRecursiveComparison().isEqualTo(expected);
+    }
+
+    private <T> Object getOutcome(Getter<DdmModel, T> getter, DdmModel ddm) {
+        try {
+            return getter.get(ddm);
+        }
+        catch (Exception e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private List<Document> getDocuments() throws Exception {
+        var documents = new ArrayList<Document>();
+        var files = new ArrayList<Path>();
+        try (var walk = Files.walk(Path.of("src/test/resources/input"))) {
+            walk.filter(path -> path.getFileName().toString().equals("dataset.xml")).sorted().forEach(files::add);
+        }
+        files.add(Path.of("src/test/resources/xml/example-ddm.xml"));
+        for (var file : files) {
+            documents.add(xmlReader.readXmlFile(file));
+        }
+        assertThat(documents).hasSizeGreaterThan(1);
+        documents.add(xmlReader.readXmlString(EDGE_CASES));
+        return documents;
+    }
+}
@@ -0,0 +1,652 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings;
+
+import com.google.common.collect.Comparators;
+import nl.knaw.dans.vaultingest.core.deposit.CountryResolver;
+import nl.knaw.dans.vaultingest.core.deposit.LanguageResolver;
+import nl.knaw.dans.vaultingest.core.deposit.PayloadFile;
+import nl.knaw.dans.vaultingest.core.mappings.ids.DAI;
+import nl.knaw.dans.vaultingest.core.mappings.ids.ISNI;
+import nl.knaw.dans.vaultingest.core.mappings.ids.ORCID;
+import nl.knaw.dans.vaultingest.core.mappings.ids.VIAF;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.CollectionDate;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Contributor;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DansRelation;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetAuthor;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetCreator;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetOrganization;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Description;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Distributor;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Funder;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.GrantNumber;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Keyword;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.NWOGrantNumber;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.OtherId;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Publication;
+import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The DDM getters of the mappings as they were before the mappings read the DDM through the DDM model: one XPath query per value, against the DOM of dataset.xml. Kept as the reference that
+ * {@link XPathEquivalenceTest} compares the mappings with. Only the Document and Node parameters are kept; the files.xml side of the access mappings takes its values from the payload files.
+ */
+class XPathMappings {
+    private static final Pattern DATES_OF_COLLECTION_PATTERN = Pattern.compile("^(.*)/(.*)$");
+    private static final Map<String, String> dansRelationLabelToType = Map.ofEntries(
+        Map.entry("relation", "relation"),
+        Map.entry("conformsTo", "conforms_to"),
+        Map.entry("hasFormat", "has_format"),
+        Map.entry("hasPart", "has_part"),
+        Map.entry("references", "references"),
+        Map.entry("replaces", "replaces"),
+        Map.entry("requires", "requires"),
+        Map.entry("hasVersion", "has_version"),
+        Map.entry("isFormatOf", "is_format_of"),
+        Map.entry("isPartOf", "is_part_of"),
+        Map.entry("isReferencedBy", "is_referenced_by"),
+        Map.entry("isReplacedBy", "is_replaced_by"),
+        Map.entry("isRequiredBy", "is_required_by"),
+        Map.entry("isVersionOf", "is_version_of"));
+
+    private static final Map<String, String> narcisToSubject = Map.ofEntries(
+        Map.entry("D11", "Mathematical Sciences"),
+        Map.entry("D12", "Physics"),
+        Map.entry("D13", "Chemistry"),
+        Map.entry("D14", "Engineering"),
+        Map.entry("D15", "Earth and Environmental Sciences"),
+        Map.entry("D16", "Computer and Information Science"),
+        Map.entry("D17", "Astronomy and Astrophysics"),
+        Map.entry("D18", "Agricultural Sciences"),
+        Map.entry("D2", "Medicine, Health and Life Sciences"),
+        Map.entry("D3", "Arts and Humanities"),
+        Map.entry("D40", "Law"),
+        Map.entry("D41", "Law"),
+        Map.entry("D42", "Social Sciences"),
+        Map.entry("D5", "Social Sciences"),
+        Map.entry("D6", "Social Sciences"),
+        Map.entry("D7", "Business and Management"),
+        Map.entry("E13", "Social Sciences"),
+        Map.entry("E14", "Social Sciences"),
+        Map.entry("E15", "Earth and Environmental Sciences"));
+
+    // Base
+
+    static String getFirstValue(Node node, String expression) {
+        return XPathEvaluator.strings(node, expression).map(String::trim).findFirst().orElse(null);
+    }
+
+    static DAI getDAI(Node node) {
+        return XPathEvaluator.strings(node, "dcx-dai:DAI").map(DAI::new).findFirst().orElse(null);
+    }
+
+    static ISNI getISNI(Node node) {
+        return XPathEvaluator.strings(node, "dcx-dai:ISNI").map(ISNI::new).findFirst().orElse(null);
+    }
+
+    static ORCID getORCID(Node node) {
+        return XPathEvaluator.strings(node, "dcx-dai:ORCID").map(ORCID::new).findFirst().orElse(null);
+    }
+
+    static VIAF getVIAF(Node node) {
+        return XPathEvaluator.strings(node, "dcx-dai:identifier[@scheme='VIAF']/@value")
+            .map(VIAF::new).findFirst().orElse(null);
+    }
+
+    static String getIdTypeNamespace(Document document) {
+        return document.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE);
+    }
+
+    // Titles, AlternativeTitles
+
+    static String getTitle(Document ddm) {
+        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/dc:title", "ddm:DDM/ddm:profile/dcterms:title")
+            .map(String::trim)
+            .findFirst()
+            .orElse(null);
+    }
+
+    static List<String> getAlternativeTitles(Document ddm) {
+        return XPathEvaluator.strings(ddm,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:title",
+                "/ddm:DDM/ddm:dcmiMetadata/dc:title",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:alternative")
+            .map(String::trim)
+            .collect(Collectors.toList());
+    }
+
+    // Audiences, Subjects
+
+    static List<String> getAudiences(Document document) {
+        var results = XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:profile/ddm:audience")
+            .map(String::trim)
+            .collect(Collectors.toSet());
+
+        return List.copyOf(results);
+    }
+
+    static List<String> getSubjects(Document document) {
+        var results = XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:profile/ddm:audience")
+            .map(XPathMappings::getSubject)
+            .collect(Collectors.toSet());
+
+        if (results.contains("Other") && results.size() > 1) {
+            results.remove("Other");
+        }
+
+        return List.copyOf(results);
+    }
+
+    private static String getSubject(String code) {
+        return narcisToSubject.keySet().stream()
+            .filter(code::startsWith)
+            .max((a, b) -> Comparators.max(a.length(), b.length()))
+            .map(narcisToSubject::get)
+            .orElse("Other");
+    }
+
+    // Authors
+
+    static List<DatasetAuthor> getAuthors(Document ddm) {
+        return XPathEvaluator.nodes(ddm,
+                "/ddm:DDM/ddm:profile/dcx-dai:creatorDetails/dcx-dai:author")
+            .map(XPathMappings::parseAuthor)
+            .collect(Collectors.toList());
+    }
+
+    static DatasetAuthor parseAuthor(Node node) {
+        return DatasetAuthor.builder()
+            .titles(getFirstValue(node, "dcx-dai:titles"))
+            .initials(getFirstValue(node, "dcx-dai:initials"))
+            .insertions(getFirstValue(node, "dcx-dai:insertions"))
+            .surname(getFirstValue(node, "dcx-dai:surname"))
+            .dai(getDAI(node))
+            .isni(getISNI(node))
+            .orcid(getORCID(node))
+            .role(getFirstValue(node, "dcx-dai:role"))
+            .affiliation(getFirstValue(node, "dcx-dai:organization/dcx-dai:name"))
+            .build();
+    }
+
+    static List<DatasetCreator> getCreators(Document ddm) {
+        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/dc:creator")
+            .map(String::trim)
+            .map(author -> DatasetCreator.builder()
+                .name(author)
+                .build()
+            )
+            .collect(Collectors.toList());
+    }
+
+    static List<DatasetOrganization> getOrganizations(Document ddm) {
+        return XPathEvaluator.nodes(ddm,
+                "/ddm:DDM/ddm:profile/dcx-dai:creatorDetails/dcx-dai:organization")
+            .map(node -> DatasetOrganization.builder()
+                .name(getFirstValue(node, "dcx-dai:name"))
+                .isni(getISNI(node))
+                .viaf(getVIAF(node))
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    // Available
+
+    static LocalDate getAvailableDate(Document document) {
+        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/ddm:available")
+            .findFirst()
+            .map(LocalDate::parse)
+            .orElse(null);
+    }
+
+    // CollectionDates
+
+    static List<CollectionDate> getCollectionDates(Document document) {
+        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:dcmiMetadata/ddm:datesOfCollection")
+            .map(value -> {
+                var matches = DATES_OF_COLLECTION_PATTERN.matcher(value.trim());
+
+                if (matches.matches()) {
+                    return CollectionDate.builder()
+                        .start(matches.group(1))
+                        .end(matches.group(2))
+                        .build();
+                }
+
+                return null;
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    // Contributors
+
+    static List<Contributor> getContributors(Document document) {
+        var authors = XPathEvaluator.nodes(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcx-dai:contributorDetails/" +
+                    "dcx-dai:author[dcx-dai:role != 'RightsHolder']")
+            .map(item -> {
+                var author = parseAuthor(item);
+
+                return Contributor.builder()
+                    .type(author.getRole())
+                    .name(author.getContributorName())
+                    .build();
+            });
+
+        var organizations = XPathEvaluator.nodes(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcx-dai:contributorDetails/" +
+                    "dcx-dai:organization[dcx-dai:role != 'RightsHolder' and dcx-dai:role != 'Funder']")
+            .map(item -> Contributor.builder()
+                .type(getFirstValue(item, "dcx-dai:role"))
+                .name(getFirstValue(item, "dcx-dai:name"))
+                .build());
+
+        return Stream.concat(authors, organizations).collect(Collectors.toList());
+    }
+
+    // DansRelations
+
+    static List<DansRelation> getDansRelations(Document document) {
+        var queries = dansRelationLabelToType.keySet().stream()
+            .map(name -> "/ddm:DDM/ddm:dcmiMetadata/ddm:" + name)
+            .toArray(String[]::new);
+
+        return XPathEvaluator.nodes(document.getDocumentElement(), queries)
+            .map(item -> DansRelation.builder()
+                .type(dansRelationLabelToType.get(item.getLocalName()))
+                .text(item.getTextContent())
+                .uri(XPathEvaluator.strings(item, "@href").findFirst().orElse(null))
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    // DataFile, Terms
+
+    static String getAccessRights(Node ddm) {
+        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/ddm:accessRights")
+            .map(String::trim)
+            .findFirst()
+            .orElse(null);
+    }
+
+    static boolean isRestricted(String accessibleToRights, Node ddm) {
+        var accessRights = getAccessRights(ddm);
+
+        if (accessibleToRights != null) {
+            return !"ANONYMOUS".equals(accessibleToRights);
+        }
+
+        if (accessRights != null) {
+            return !"OPEN_ACCESS".equals(accessRights);
+        }
+
+        return false;
+    }
+
+    static boolean isRequestAccess(Document ddm, Collection<PayloadFile> files) {
+        var containsNone = files.stream().anyMatch(file -> "NONE".equals(file.getAccessibleToRights()));
+
+        if (containsNone) {
+            return false;
+        }
+
+        return !"NO_ACCESS".equals(getAccessRights(ddm));
+    }
+
+    static String getTermsOfAccess(Document ddm, Collection<PayloadFile> files) {
+        var containsNone = files.stream().anyMatch(file -> "NONE".equals(file.getAccessibleToRights()));
+
+        var accessRights = XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:accessRights")
+            .map(String::trim)
+            .findFirst()
+            .orElse(null);
+
+        if (containsNone) {
+            return accessRights != null ? accessRights : "N/a";
+        }
+
+        var knownOrRestrictive = Set.of("RESTRICTED_REQUEST", "KNOWN");
+
+        var accessibleToRights = files.stream()
+            .map(PayloadFile::getAccessibleToRights)
+            .filter(Objects::nonNull)
+            .anyMatch(knownOrRestrictive::contains);
+
+        if (accessibleToRights) {
+            return accessRights != null ? accessRights : "";
+        }
+
+        return null;
+    }
+
+    // Descriptions
+
+    static List<Description> getDescriptions(Document document) {
+        var profileDescriptions = XPathEvaluator.strings(document,
+            "/ddm:DDM/ddm:profile/dc:description",
+            "/ddm:DDM/ddm:profile/dcterms:description"
+        ).map(value -> Description.builder()
+            .value(value.trim())
+            .build()
+        );
+
+        var titles = getAlternativeTitles(document)
+            .stream().skip(1)
+            .map(s -> Description.builder()
+                .value(s)
+                .build()
+            )
+            .collect(Collectors.toList());
+
+        var dcmiDescriptions = XPathEvaluator.nodes(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:date",
+                "/ddm:DDM/ddm:dcmiMetadata/dc:date",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateAccepted",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateCopyrighted",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateSubmitted",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:modified",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:issued",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:valid",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:coverage")
+            .map(node -> Description.builder()
+                .type(node.getLocalName())
+                .value(node.getTextContent().trim())
+                .build()
+            );
+
+        var dcmiDescription = XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:description")
+            .map(value -> Description.builder()
+                .value(value.trim())
+                .build()
+            );
+
+        var result = Stream.concat(profileDescriptions,
+            Stream.concat(dcmiDescriptions, dcmiDescription)
+        ).collect(Collectors.toList());
+
+        result.addAll(titles);
+
+        return result;
+    }
+
+    // Distributors
+
+    static List<Distributor> getDistributors(Document document) {
+        var filter = "[text() != 'DANS' and text() != 'DANS/KNAW' and text() != 'DANS-KNAW']";
+
+        return XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:publisher" + filter,
+                "/ddm:DDM/ddm:dcmiMetadata/dc:publisher" + filter)
+            .map(value -> Distributor.builder()
+                .name(value)
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    // GrantNumbers
+
+    static List<GrantNumber> getFunders(Document document) {
+        return XPathEvaluator.nodes(document, "/ddm:DDM/ddm:dcmiMetadata/ddm:funding")
+            .map(node -> Funder.builder()
+                .funderName(getFirstValue(node, "ddm:funderName"))
+                .fundingProgramme(getFirstValue(node, "ddm:fundingProgramme"))
+                .awardNumber(getFirstValue(node, "ddm:awardNumber"))
+                .awardTitle(getFirstValue(node, "ddm:awardTitle"))
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    static List<GrantNumber> getGrantNumbers(Document document) {
+        var idType = getIdTypeNamespace(document);
+
+        return XPathEvaluator.strings(document,
+                String.format(
+                    "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type = '%s:NWO-PROJECTNR']", idType)
+            )
+            .map(value -> NWOGrantNumber.builder()
+                .value(value)
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    // InCollection
+
+    static List<String> getInCollections(Document document) {
+        return XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/ddm:inCollection" +
+                    "[@subjectScheme = 'DANS Collection' and @schemeURI = 'https://vocabularies.dans.knaw.nl/collections']" +
+                    "/@valueURI")
+            .map(String::trim)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    // Keywords
+
+    static List<Keyword> getKeywords(Document document) {
+        var results = new ArrayList<Keyword>();
+
+        XPathEvaluator.nodes(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:subject[not(@schemeURI) and not(@subjectScheme)]",
+                "/ddm:DDM/ddm:dcmiMetadata/dc:subject[not(@schemeURI) and not(@subjectScheme)]")
+            .map(node -> Keyword.builder().text(node.getTextContent().trim()).build())
+            .forEach(results::add);
+
+        var expr = "/ddm:DDM/ddm:dcmiMetadata/ddm:subject[" +
+            String.format("(@schemeURI = '%s' and @subjectScheme = '%s')", Keywords.SCHEME_URI_PAN, Keywords.SCHEME_PAN) +
+            " or " +
+            String.format("(@schemeURI = '%s' and @subjectScheme = '%s')", Keywords.SCHEME_URI_AAT, Keywords.SCHEME_AAT) +
+            "]";
+        XPathEvaluator.nodes(document, expr)
+            .map(node -> Keyword.builder()
+                .text(node.getTextContent().trim())
+                .vocabulary(node.getAttributes().getNamedItem("subjectScheme").getTextContent())
+                .vocabularyUri(node.getAttributes().getNamedItem("schemeURI").getTextContent())
+                .build())
+            .forEach(results::add);
+
+        XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:language")
+            .map(value -> Keyword.builder()
+                .text(value.trim())
+                .build())
+            .forEach(results::add);
+
+        return results;
+    }
+
+    // Languages, MetadataLanguages
+
+    static List<String> getLanguages(Document document, LanguageResolver languageResolver) {
+        return XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/ddm:language[" +
+                    "@encodingScheme='ISO639-1' or " +
+                    "@encodingScheme='ISO639-2']/@code"
+            )
+            .map(languageResolver::resolve)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    static List<String> getMetadataLanguages(Document document, LanguageResolver languageResolver) {
+        return XPathEvaluator.strings(document, "//@xml:lang")
+            .distinct()
+            .map(languageResolver::resolve)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    // License
+
+    static String getLicense(Document document) {
+        var dctermsNamespace = document.lookupPrefix(XmlNamespaces.NAMESPACE_DCTERMS);
+
+        return XPathEvaluator.strings(document,
+                String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:license[@xsi:type='%s:URI']", dctermsNamespace)
+            )
+            .map(String::trim)
+            .findFirst()
+            .orElse(null);
+    }
+
+    // OtherIds
+
+    static List<OtherId> getOtherIds(Document document, List<String> organizationIdentifiers) {
+        var results = new ArrayList<OtherId>();
+
+        organizationIdentifiers
+            .stream()
+            .filter(value -> {
+                var parts = value.split(":", 2);
+                return parts.length == 2 && StringUtils.isNotBlank(parts[0]) && StringUtils.isNotBlank(parts[1]);
+            })
+            .map(value -> {
+                var parts = value.split(":", 2);
+                return OtherId.builder()
+                    .agency(parts[0])
+                    .value(parts[1])
+                    .build();
+            })
+            .findFirst()
+            .ifPresent(results::add);
+
+        XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/ddm:identifier[not(@xsi:type)]",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[not(@xsi:type)]")
+            .map(identifier -> OtherId.builder()
+                .value(identifier)
+                .build()
+            )
+            .forEach(results::add);
+
+        return results;
+    }
+
+    // PersonalData
+
+    static boolean isPersonalDataPresent(Document document) {
+        return XPathEvaluator.nodes(document, "/ddm:DDM/ddm:profile/ddm:personalData[@present = 'Yes']")
+            .findAny().isPresent();
+    }
+
+    // ProductionDate
+
+    static String getProductionDate(Document document) {
+        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/ddm:created")
+            .findFirst()
+            .map(text -> DateTimeFormat.forPattern("YYYY-MM-dd").print(DateTime.parse(text)))
+            .orElse(null);
+    }
+
+    // Publications
+
+    static List<Publication> getPublications(Document document) {
+        var idType = getIdTypeNamespace(document);
+
+        var queries = Set.of("dcterms", "dc").stream().map(prefix ->
+                String.format("/ddm:DDM/ddm:dcmiMetadata/%s:identifier[" +
+                    "@xsi:type = '%s:ISSN' or @xsi:type = '%s:ISBN'" +
+                    "]", prefix, idType, idType))
+            .toArray(String[]::new);
+
+        return XPathEvaluator.nodes(document, queries)
+            .map(node -> Publication.builder()
+                .idType(node.getAttributes()
+                    .getNamedItem("xsi:type").getTextContent()
+                    .trim()
+                    .replaceAll("id-type:", ""))
+                .idNumber(node.getTextContent().trim())
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    // RightsHolders
+
+    static List<String> getRightsHolders(Document document) {
+        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:dcmiMetadata/dcterms:rightsHolder")
+            .collect(Collectors.toList());
+    }
+
+    // Sources
+
+    static List<String> getSources(Document document) {
+        return XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:source")
+            .map(String::trim)
+            .collect(Collectors.toList());
+    }
+
+    // SpatialCoverage
+
+    static List<String> getSpatialCoveragesControlled(Document ddm, CountryResolver countryResolver) {
+        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:spatial")
+            .map(String::trim)
+            .distinct()
+            .filter(countryResolver::isControlledValue)
+            .collect(Collectors.toList());
+    }
+
+    static List<String> getSpatialCoveragesText(Document ddm, CountryResolver countryResolver) {
+        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:spatial")
+            .map(String::trim)
+            .distinct()
+            .filter(c -> !countryResolver.isControlledValue(c))
+            .collect(Collectors.toList());
+    }
+
+    // TemporalCoverage
+
+    static List<String> getTemporalCoverages(Document ddm) {
+        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:temporal")
+            .map(String::trim)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    // Deposit
+
+    static String getDoi(Document ddm) {
+        var prefix = ddm.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE);
+        var dois = XPathEvaluator.strings(ddm,
+                String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type='%s:DOI']", prefix),
+                String.format("/ddm:DDM/ddm:dcmiMetadata/dc:identifier[@xsi:type='%s:DOI']", prefix))
+            .toList();
+
+        if (dois.size() > 1) {
+            throw new IllegalStateException("There should be at most one DOI in the DDM, but found " + dois.size() + " DOIs");
+        }
+        return dois.isEmpty() ? null : dois.get(0);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OaiOreConverterTest {
+
+    @Test
+    void createAggregation_should_give_the_same_graph_regardless_of_chunk_size() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), "Name of user");
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+        var embargoDate = LocalDate.of(2100, 1, 1);
+
+        var oneChunk = ModelFactory.createDefaultModel();
+        var oneChunkResource = new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance())
+            .createAggregation(deposit, oneChunk, embargoDate);
+        var chunkPerFile = ModelFactory.createDefaultModel();
+        new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance(), 1)
+            .createAggregation(deposit, chunkPerFile, embargoDate);
+
+        assertThat(deposit.getPayloadFiles()).hasSizeGreaterThan(1);
+        assertThat(oneChunk.listObjectsOfProperty(oneChunkResource, ORE.aggregates).toList()).hasSize(deposit.getPayloadFiles().size());
+        assertThat(chunkPerFile.isIsomorphicWith(oneChunk)).isTrue();
+    }
+}
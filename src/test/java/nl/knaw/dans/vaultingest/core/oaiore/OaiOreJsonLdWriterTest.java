@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import com.apicatalog.jsonld.JsonLd;
+import com.apicatalog.jsonld.JsonLdOptions;
+import com.apicatalog.jsonld.document.JsonDocument;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.json.Json;
+import nl.knaw.dans.vaultingest.config.ContactPersonConfig;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OaiOreJsonLdWriterTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OaiOreSerializer serializer = new OaiOreSerializer(objectMapper);
+
+    @Test
+    void write_should_give_the_same_document_as_framing_the_whole_graph() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), "Name of user");
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+        var contactPerson = new ContactPersonConfig();
+        contactPerson.setName("I Lastname");
+        contactPerson.setEmail("test@example.com");
+        contactPerson.setAffiliation("Example Org");
+
+        var converter = new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance(), 1);
+        var model = ModelFactory.createDefaultModel();
+        var output = new ByteArrayOutputStream();
+        try (var writer = serializer.createJsonLdWriter(output)) {
+            converter.convert(deposit, contactPerson, part -> {
+                writer.write(part);
+                model.add(part);
+            });
+        }
+
+        var actual = objectMapper.readTree(output.toByteArray());
+        var expected = objectMapper.readTree(frame(model));
+
+        // Same graph
+        assertThat(read(actual.toString()).isIsomorphicWith(read(expected.toString()))).isTrue();
+        assertThat(read(actual.toString()).isIsomorphicWith(model)).isTrue();
+
+        // Same shape: the resource map embeds the aggregation, which embeds the aggregated resources
+        assertThat(fieldNames(actual)).isEqualTo(fieldNames(expected));
+        assertThat(actual.get("@type").asText()).isEqualTo("ore:ResourceMap");
+        var actualAggregation = actual.get("ore:describes");
+        var expectedAggregation = expected.get("ore:describes");
+        assertThat(fieldNames(actualAggregation)).isEqualTo(fieldNames(expectedAggregation));
+        assertThat(actualAggregation.get("ore:aggregates").size()).isEqualTo(expectedAggregation.get("ore:aggregates").size());
+        assertThat(actualAggregation.get("ore:aggregates").get(0).has("schema:name")).isTrue();
+
+        // The context has all known prefixes, including the ones the framing left out
+        assertThat(fieldNames(actual.get("@context"))).containsAll(fieldNames(expected.get("@context")));
+        assertThat(fieldNames(actual.get("@context"))).isEqualTo(serializer.getNamespaces().keySet());
+    }
+
+    // How the JSON-LD was produced before: written by Jena, read back and framed by Titanium
+    private String frame(Model model) throws Exception {
+        var usedNamespaces = new HashSet<String>();
+        model.listNameSpaces().forEachRemaining(usedNamespaces::add);
+        var context = serializer.getNamespaces().entrySet().stream()
+            .filter(e -> usedNamespaces.contains(e.getValue()))
+            .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue()));
+        var frame = String.format("{\"@context\": %s, \"@type\": \"ore:ResourceMap\"}", objectMapper.writeValueAsString(context));
+
+        var jsonLd = RDFWriter.create()
+            .source(model)
+            .format(RDFFormat.JSONLD11_PRETTY)
+            .asString();
+
+        var options = new JsonLdOptions();
+        options.setOmitGraph(true);
+        var framed = JsonLd.frame(
+                JsonDocument.of(Json.createReader(new StringReader(jsonLd)).read()),
+                JsonDocument.of(Json.createReader(new StringReader(frame)).read()))
+            .options(options)
+            .get();
+
+        var out = new StringWriter();
+        Json.createWriter(out).write(framed);
+        return out.toString();
+    }
+
+    private Model read(String jsonLd) {
+        return ModelFactory.createDefaultModel().read(new StringReader(jsonLd), null, "JSON-LD");
+    }
+
+    private Set<String> fieldNames(JsonNode node) {
+        var names = new HashSet<String>();
+        node.fieldNames().forEachRemaining(names::add);
+        names.remove("@context");
+        return names;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.config.ContactPersonConfig;
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OaiOreRdfXmlWriterTest {
+    private final OaiOreSerializer serializer = new OaiOreSerializer(new ObjectMapper());
+
+    @Test
+    void write_should_produce_rdf_xml_that_reads_back_into_the_same_graph() throws Exception {
+        var first = ModelFactory.createDefaultModel();
+        var aggregation = first.createResource("urn:nbn:nl:ui:13-test");
+        first.add(aggregation, RDF.type, ORE.Aggregation);
+        first.add(aggregation, DCTerms.title, "A title", "en");
+        first.add(aggregation, first.createProperty("http://example.org/unknown#", "value"), first.createTypedLiteral(true));
+        var element = first.createResource();
+        first.add(aggregation, DCTerms.rightsHolder, element);
+        first.add(element, DCTerms.description, "nested <&> text");
+
+        var second = ModelFactory.createDefaultModel();
+        var file = second.createResource("urn:uuid:file-1");
+        second.add(file, RDF.type, ORE.AggregatedResource);
+        second.add(aggregation, ORE.aggregates, file);
+        var shared = second.createResource();
+        second.add(file, DCTerms.relation, shared);
+        second.add(aggregation, DCTerms.relation, shared);
+
+        var output = new ByteArrayOutputStream();
+        try (var writer = serializer.createRdfWriter(output)) {
+            writer.write(first);
+            writer.write(second);
+        }
+
+        var expected = ModelFactory.createDefaultModel().add(first).add(second);
+        assertThat(read(output.toByteArray()).isIsomorphicWith(expected)).isTrue();
+        assertThat(output.toString()).startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    }
+
+    @Test
+    void write_should_keep_blank_nodes_of_different_parts_apart() throws Exception {
+        var aggregation = ModelFactory.createDefaultModel().createResource("urn:nbn:nl:ui:13-test");
+        var expected = ModelFactory.createDefaultModel();
+        var output = new ByteArrayOutputStream();
+        try (var writer = serializer.createRdfWriter(output)) {
+            for (var i = 0; i < 2; i++) {
+                // Referred to twice, so by node ID rather than nested
+                var part = ModelFactory.createDefaultModel();
+                var file = part.createResource("urn:uuid:file-" + i);
+                var shared = part.createResource();
+                part.add(file, DCTerms.relation, shared);
+                part.add(aggregation, DCTerms.relation, shared);
+                part.add(shared, DCTerms.description, "part " + i);
+                writer.write(part);
+                expected.add(part);
+            }
+        }
+
+        var actual = read(output.toByteArray());
+        assertThat(actual.isIsomorphicWith(expected)).isTrue();
+        assertThat(actual.listSubjectsWithProperty(DCTerms.description).toList()).hasSize(2);
+    }
+
+    @Test
+    void write_should_stream_the_oai_ore_of_a_deposit_part_by_part() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), "Name of user");
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+        var contactPerson = new ContactPersonConfig();
+        contactPerson.setName("I Lastname");
+        contactPerson.setEmail("test@example.com");
+        contactPerson.setAffiliation("Example Org");
+
+        var converter = new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance(), 1);
+        var expected = ModelFactory.createDefaultModel();
+        var output = new ByteArrayOutputStream();
+        try (var writer = serializer.createRdfWriter(output)) {
+            converter.convert(deposit, contactPerson, part -> {
+                writer.write(part);
+                expected.add(part);
+            });
+        }
+
+        assertThat(read(output.toByteArray()).isIsomorphicWith(expected)).isTrue();
+    }
+
+    private Model read(byte[] rdfXml) {
+        return ModelFactory.createDefaultModel().read(new ByteArrayInputStream(rdfXml), null, "RDF/XML");
+    }
+}
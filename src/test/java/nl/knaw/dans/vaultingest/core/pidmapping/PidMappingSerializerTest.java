@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.pidmapping;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PidMappingSerializerTest {
+
+    @Test
+    void serialize_should_write_one_utf8_line_per_mapping() throws Exception {
+        var mappings = new PidMappings();
+        mappings.addMapping("urn:nbn:nl:ui:13-test", "data/");
+        mappings.addMapping("urn:uuid:1", "data/ë.txt");
+        var output = new ByteArrayOutputStream();
+
+        new PidMappingSerializer().serialize(mappings, output);
+
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("urn:nbn:nl:ui:13-test data/\nurn:uuid:1 data/ë.txt\n");
+    }
+}
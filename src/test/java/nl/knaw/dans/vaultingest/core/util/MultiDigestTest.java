@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import nl.knaw.dans.bagit.hash.StandardSupportedAlgorithms;
+import nl.knaw.dans.bagit.hash.SupportedAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiDigestTest {
+    private static final List<SupportedAlgorithm> algorithms = List.of(
+        StandardSupportedAlgorithms.MD5, StandardSupportedAlgorithms.SHA1, StandardSupportedAlgorithms.SHA256, StandardSupportedAlgorithms.SHA512);
+
+    @Test
+    void getChecksums_should_equal_those_of_message_digests_for_any_number_of_chunks() throws Exception {
+        var random = new Random(42);
+        for (var size : List.of(0, 1, MultiDigest.CHUNK_SIZE - 1, MultiDigest.CHUNK_SIZE, 3 * MultiDigest.CHUNK_SIZE + 17)) {
+            var bytes = new byte[size];
+            random.nextBytes(bytes);
+
+            var multiDigest = new MultiDigest(algorithms);
+            // Buffers of varying length, and a single byte now and then, as a stream would pass them
+            var off = 0;
+            while (off < size) {
+                if (off % 3 == 0) {
+                    multiDigest.update(bytes[off++]);
+                }
+                else {
+                    var len = Math.min(size - off, random.nextInt(100_000));
+                    multiDigest.update(bytes, off, len);
+                    off += len;
+                }
+            }
+
+            assertThat(multiDigest.getChecksums()).as("size %d", size).isEqualTo(expectedChecksums(bytes));
+        }
+    }
+
+    @Test
+    void getChecksums_should_digest_on_calling_thread_for_single_algorithm() throws Exception {
+        var bytes = new byte[2 * MultiDigest.CHUNK_SIZE];
+        new Random(42).nextBytes(bytes);
+        var multiDigest = new MultiDigest(List.of(StandardSupportedAlgorithms.SHA1), command -> {
+            throw new AssertionError("No worker expected");
+        });
+
+        multiDigest.update(bytes, 0, bytes.length);
+
+        assertThat(multiDigest.getChecksums().get(StandardSupportedAlgorithms.SHA1)).isEqualTo(expectedChecksums(bytes).get(StandardSupportedAlgorithms.SHA1));
+    }
+
+    @Test
+    void getChecksums_should_digest_small_inputs_on_calling_thread() throws Exception {
+        var random = new Random(42);
+        var multiDigest = new MultiDigest(algorithms, command -> {
+            throw new AssertionError("No worker expected");
+        });
+
+        // Many small inputs, such as tag files, each well below a chunk
+        for (var i = 0; i < 1000; i++) {
+            var bytes = new byte[random.nextInt(10_000)];
+            random.nextBytes(bytes);
+            multiDigest.update(bytes, 0, bytes.length / 2);
+            for (var j = bytes.length / 2; j < bytes.length; j++) {
+                multiDigest.update(bytes[j]);
+            }
+
+            assertThat(multiDigest.getChecksums()).as("input %d", i).isEqualTo(expectedChecksums(bytes));
+        }
+    }
+
+    @Test
+    void getChecksums_should_start_anew_after_input_larger_than_a_chunk() throws Exception {
+        var random = new Random(42);
+        var multiDigest = new MultiDigest(algorithms);
+        for (var size : List.of(100, 2 * MultiDigest.CHUNK_SIZE + 1, 100, MultiDigest.CHUNK_SIZE, MultiDigest.CHUNK_SIZE + 1, 0)) {
+            var bytes = new byte[size];
+            random.nextBytes(bytes);
+            var off = 0;
+            while (off < size) {
+                var len = Math.min(size - off, 8192);
+                multiDigest.update(bytes, off, len);
+                off += len;
+            }
+
+            assertThat(multiDigest.getChecksums()).as("size %d", size).isEqualTo(expectedChecksums(bytes));
+        }
+    }
+
+    @Test
+    void streams_should_compute_the_checksums_of_the_bytes_passing_through() throws Exception {
+        var bytes = new byte[MultiDigest.CHUNK_SIZE + 1000];
+        new Random(42).nextBytes(bytes);
+
+        var output = new ByteArrayOutputStream();
+        try (var digestOutput = new MultiDigestOutputStream(output, algorithms)) {
+            digestOutput.write(bytes);
+            assertThat(digestOutput.getChecksums()).isEqualTo(expectedChecksums(bytes));
+        }
+        assertThat(output.toByteArray()).isEqualTo(bytes);
+
+        try (var digestInput = new MultiDigestInputStream(new ByteArrayInputStream(bytes), algorithms)) {
+            assertThat(digestInput.readAllBytes()).isEqualTo(bytes);
+            assertThat(digestInput.getChecksums()).isEqualTo(expectedChecksums(bytes));
+        }
+    }
+
+    @Test
+    void toHex_should_give_lowercase_hex_with_leading_zeros() {
+        assertThat(MultiDigest.toHex(new byte[] { 0x00, 0x0f, (byte) 0xab, (byte) 0xff })).isEqualTo("000fabff");
+    }
+
+    private Map<SupportedAlgorithm, String> expectedChecksums(byte[] bytes) throws Exception {
+        var result = new HashMap<SupportedAlgorithm, String>();
+        for (var alg : algorithms) {
+            result.put(alg, HexFormat.of().formatHex(MessageDigest.getInstance(alg.getMessageDigestName()).digest(bytes)));
+        }
+        return result;
+    }
+}
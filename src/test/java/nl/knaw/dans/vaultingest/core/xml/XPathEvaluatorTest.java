@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XPathEvaluatorTest {
+
+    private static final String DDM = "<ddm:DDM xmlns:ddm='http://schemas.dans.knaw.nl/dataset/ddm-v2/' xmlns:dc='http://purl.org/dc/elements/1.1/'>"
+        + "<ddm:profile><dc:title>Title</dc:title><ddm:accessRights>OPEN_ACCESS</ddm:accessRights></ddm:profile>"
+        + "</ddm:DDM>";
+
+    @Test
+    void strings_should_give_same_results_when_evaluated_concurrently() throws Exception {
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 200; i++) {
+                var expression = i % 2 == 0 ? "/ddm:DDM/ddm:profile/dc:title" : "/ddm:DDM/ddm:profile/ddm:accessRights";
+                futures.add(executor.submit((Callable<String>) () -> {
+                    // DOM documents are not thread-safe, so each task has its own
+                    var document = new XmlReader().readXmlString(DDM);
+                    return XPathEvaluator.strings(document, expression).findFirst().orElse(null);
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertThat(futures.get(i).get()).isEqualTo(i % 2 == 0 ? "Title" : "OPEN_ACCESS");
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void registerMetrics_should_expose_cache_hits_compilations_and_evaluation_times() throws Exception {
+        var registry = new MetricRegistry();
+        XPathEvaluator.registerMetrics(registry);
+        var document = new XmlReader().readXmlString(DDM);
+        var expression = "/ddm:DDM/ddm:profile/dc:title | /ddm:DDM/ddm:profile/dc:creator";
+        var hitsBefore = registry.counter("nl.knaw.dans.vaultingest.core.xml.XPathEvaluator.cache-hits").getCount();
+
+        XPathEvaluator.strings(document, expression).findFirst();
+        XPathEvaluator.strings(document, expression).findFirst();
+
+        assertThat(registry.counter("nl.knaw.dans.vaultingest.core.xml.XPathEvaluator.cache-hits").getCount()).isEqualTo(hitsBefore + 1);
+        assertThat(registry.counter("nl.knaw.dans.vaultingest.core.xml.XPathEvaluator.compilations").getCount()).isPositive();
+        assertThat(registry.timer("nl.knaw.dans.vaultingest.core.xml.XPathEvaluator.evaluation." + expression).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void registerMetrics_should_be_idempotent() {
+        var registry = new MetricRegistry();
+
+        XPathEvaluator.registerMetrics(registry);
+        XPathEvaluator.registerMetrics(registry);
+
+        assertThat(registry.getCounters()).containsKeys(
+            "nl.knaw.dans.vaultingest.core.xml.XPathEvaluator.cache-hits",
+            "nl.knaw.dans.vaultingest.core.xml.XPathEvaluator.compilations");
+    }
+}